@@ -1,17 +1,62 @@
 import controller.Controller;
+import viewer.BatchRunner;
+import viewer.BookingHttpServer;
+import viewer.BookingNioServer;
 import viewer.Menu;
 
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Класс для запуска программы.
+ * Без аргументов запускается меню, с аргументами 'http [порт]' - HTTP API (по умолчанию порт 8080),
+ * с аргументами 'nio [порт]' - сервер двоичного протокола (по умолчанию порт 8090).
+ * Серверы слушают адрес 127.0.0.1, другой адрес задается свойством 'booking.http.host'.
+ * С аргументами 'batch [файл]' выполняются команды из файла или из стандартного ввода (см. BatchRunner).
  */
 
 public class HotelSystem {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
       Controller controller = new Controller ();
+      if (args.length > 0 && args[0].equals("http")) {
+          int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+          String host = System.getProperty("booking.http.host", "127.0.0.1");
+          BookingHttpServer server = new BookingHttpServer(controller, new InetSocketAddress(host, port));
+          Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+              server.stop();
+              controller.whenPersisted().join();
+          }));
+          server.start();
+          System.out.println("HTTP API is listening on " + server.getAddress());
+          return;
+      }
+      if (args.length > 0 && args[0].equals("nio")) {
+          int port = args.length > 1 ? Integer.parseInt(args[1]) : 8090;
+          String host = System.getProperty("booking.http.host", "127.0.0.1");
+          BookingNioServer server = new BookingNioServer(controller, new InetSocketAddress(host, port));
+          Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+              server.stop();
+              controller.whenPersisted().join();
+          }));
+          server.start();
+          System.out.println("Binary protocol server is listening on " + server.getAddress());
+          return;
+      }
+      if (args.length > 0 && args[0].equals("batch")) {
+          try (InputStream in = args.length > 1 ? new FileInputStream(args[1]) : System.in) {
+              new BatchRunner(controller).run(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+          }
+          return;
+      }
       Menu menu = new Menu(controller);
       menu.run ();
 
     }
 
-}
\ No newline at end of file
+}
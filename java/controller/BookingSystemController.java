@@ -2,19 +2,25 @@ package controller;
 
 import dao.BookingSystemDAO;
 import dao.BookingSystemDAOImpl;
+import dao.MappedBookingSystemDAO;
+import domain.AvailableRoom;
 import domain.BookingInfo;
 import domain.Hotel;
 import domain.Room;
+import domain.UserBooking;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Класс, который содержит методы:
  * для работы с данными отелей через вызов методов BookingSystemDAOImpl;
  * поиска отеля по городу, поиска отеля по имени, поиск отеля по номеру в регистре города,
- * бронирования комнаты пользователем, отмены бронирования пользователем.
+ * поиска свободных комнат по городу, датам, количеству мест и цене,
+ * бронирования комнаты пользователем, отмены бронирования пользователем, получения броней пользователя.
  */
 
 public final class BookingSystemController {
@@ -22,7 +28,9 @@ public final class BookingSystemController {
     private final BookingSystemDAO bookSysDAO;
 
     public BookingSystemController() {
-        this.bookSysDAO = new BookingSystemDAOImpl();
+        this.bookSysDAO = "mapped".equals(System.getProperty(BookingSystemDAOImpl.STORAGE_PROPERTY))
+                ? new MappedBookingSystemDAO()
+                : new BookingSystemDAOImpl();
     }
 
     /**
@@ -36,6 +44,17 @@ public final class BookingSystemController {
         return bookSysDAO.addHotel(hotel);
     }
 
+    /**
+     * Вызывает метод добавления нескольких отелей, которые сохраняются одной записью.
+     *
+     * @param hotels отели, которые нужно добавить в базу данных
+     * @return количество добавленных отелей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public int addHotels(Collection<Hotel> hotels) throws IOException {
+        return bookSysDAO.addHotels(hotels);
+    }
+
     /**
      * Вызывает метод изменения свойства отеля.
      *
@@ -59,6 +78,18 @@ public final class BookingSystemController {
         return bookSysDAO.addRoomToHotel(hotel, room);
     }
 
+    /**
+     * Вызывает метод добавления нескольких комнат в отель, которые сохраняются одной записью.
+     *
+     * @param hotel отель, в который нужно добавить комнаты
+     * @param rooms комнаты, которые нужно добавить
+     * @return количество добавленных комнат
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public int addRooms(Hotel hotel, Collection<Room> rooms) throws IOException {
+        return bookSysDAO.addRooms(hotel, rooms);
+    }
+
     /**
      * Вызывает метод изменения свойств комнаты в отеле.
      *
@@ -101,9 +132,29 @@ public final class BookingSystemController {
      * @return List<Hotel> список отелей с заданым в параметере именем
      */
     public List<Hotel> searchHotelByName(String hotelName) {
-        return getAllHotels().stream()
-                .filter(hotel -> hotel.getName().equalsIgnoreCase(hotelName))
-                .collect(Collectors.toList());
+        return bookSysDAO.findHotelsByName(hotelName);
+    }
+
+    /**
+     * Ищет отели, имя которых начинается с заданной строки (автодополнение).
+     *
+     * @param prefix начало имени отеля
+     * @param limit  максимальное количество отелей
+     * @return List<Hotel> список отелей в алфавитном порядке имен
+     */
+    public List<Hotel> searchHotelByNamePrefix(String prefix, int limit) {
+        return bookSysDAO.findHotelsByNamePrefix(prefix, limit);
+    }
+
+    /**
+     * Ищет отели с похожими именами, допуская опечатки (например, "Hyat" находит "Hayat").
+     *
+     * @param hotelName имя отеля, возможно с опечатками
+     * @param limit     максимальное количество отелей
+     * @return List<Hotel> список отелей от самого похожего имени к наименее похожему
+     */
+    public List<Hotel> searchHotelByNameFuzzy(String hotelName, int limit) {
+        return bookSysDAO.findHotelsByNameFuzzy(hotelName, limit);
     }
 
     /**
@@ -113,9 +164,25 @@ public final class BookingSystemController {
      * @return List<Hotel> список отелей в заданом городе
      */
     public List<Hotel> searchHotelByCity(String cityName) {
-        return getAllHotels().stream()
-                .filter(hotel -> hotel.getCity().equalsIgnoreCase(cityName))
-                .collect(Collectors.toList());
+        return bookSysDAO.findHotelsByCity(cityName);
+    }
+
+    /**
+     * Ищет свободные на заданные даты комнаты по городу, количеству мест и цене.
+     *
+     * @param cityName город или null, если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями
+     * @throws IllegalArgumentException если дата заезда не раньше даты выезда
+     */
+    public List<AvailableRoom> searchFreeRooms(String cityName, Date fromDate, Date toDate, int persons, double maxPrice) {
+        if (!fromDate.before(toDate)) {
+            throw new IllegalArgumentException("Wrong dates");
+        }
+        return bookSysDAO.findFreeRooms(cityName, fromDate, toDate, persons, maxPrice);
     }
 
     /**
@@ -125,14 +192,7 @@ public final class BookingSystemController {
      * @return Hotel искомый отель, если он найден в базе данных, null - если отель в базе данных не найден
      */
     public Hotel getHotelByCityRegister (String cityRegister) {
-        Hotel answer = null;
-        if (getAllHotels().stream().anyMatch(hotelFromDB -> hotelFromDB.getCityRegister().equals(cityRegister))) {
-            answer = getAllHotels().stream()
-                    .filter(hotelFromDB -> hotelFromDB.getCityRegister().equals(cityRegister))
-                    .findFirst()
-                    .get();
-        }
-        return answer;
+        return bookSysDAO.findHotelByCityRegister(cityRegister).orElse(null);
     }
 
     /**
@@ -140,13 +200,10 @@ public final class BookingSystemController {
      *
      * @param room комната, которую нужно забронировать
      * @param bookingInfo информация про бронь
-     * @return <tt>true</tt>  если комната успешно забронирована, <tt>false</tt> - если комнату не удалось забронировать
+     * @return номер брони или 0, если комнату не удалось забронировать
      */
-    public boolean bookRoomByUser(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
-        boolean answer = room.bookTheRoom(bookingInfo);
-        changeRoomData(room, hotel);
-        flush();
-        return answer;
+    public long bookRoomByUser(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+        return bookSysDAO.bookRoom(hotel, room, bookingInfo);
     }
 
     /**
@@ -157,26 +214,33 @@ public final class BookingSystemController {
      * @return <tt>true</tt>  если бронь успешно снята, <tt>false</tt> - если бронь не удалось снять
      */
     public boolean bookingCancellation(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+        return bookSysDAO.cancelBooking(hotel, room, bookingInfo);
+    }
 
-        boolean answer = false;
-
-
-        List<Room> roomList = bookSysDAO.getAllRooms(hotel);
-        int index = roomList.indexOf(room);
-
-        if (!roomList.get(index).isFree(bookingInfo)) {
-            answer = room.getBookingInfoList().remove(bookingInfo);
-            changeRoomData(room, hotel);
-            flush();
-        }
+    /**
+     * Отменяет бронь по ее номеру.
+     *
+     * @param bookingId номер брони
+     * @return <tt>true</tt>  если бронь успешно снята, <tt>false</tt> - если бронь не найдена
+     */
+    public boolean bookingCancellation(long bookingId) throws IOException {
+        return bookSysDAO.cancelBooking(bookingId);
+    }
 
-        return answer;
+    /**
+     * Получение всех броней пользователя.
+     *
+     * @param userLogin логин пользователя
+     * @return List<UserBooking> брони пользователя с отелями и комнатами в порядке даты заезда
+     */
+    public List<UserBooking> getUserBookings(String userLogin) {
+        return bookSysDAO.findBookingsByUser(userLogin);
     }
 
     /**
      * Получение всех отелей.
      *
-     * @return List<Hotel> список со всеми отелями в базе данных
+     * @return List<Hotel> неизменяемый список со всеми отелями в базе данных
      */
     public List<Hotel> getAllHotels() {
         return bookSysDAO.getAllHotels();
@@ -201,4 +265,24 @@ public final class BookingSystemController {
         this.bookSysDAO.saveToFile();
     }
 
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файл 'hotels'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    public CompletableFuture<Void> whenPersisted() {
+        return this.bookSysDAO.whenPersisted();
+    }
+
+    /**
+     * Включает или выключает отложенную запись в файл 'hotels'.
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations.
+     */
+    public void setDeferredWrites(boolean deferred) throws IOException {
+        this.bookSysDAO.setDeferredWrites(deferred);
+    }
+
 }
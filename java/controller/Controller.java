@@ -1,18 +1,25 @@
 package controller;
 
+import domain.AvailableRoom;
 import domain.BookingInfo;
 import domain.Hotel;
 import domain.Room;
 import domain.User;
+import domain.UserBooking;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Класс, который содержит:
- * методы для работы с данными отелей, поиска отеля по городу, поиска отеля по имени,
- * бронирования комнаты пользователем, отмены бронирования пользователем через вызов методов BookingSystemController;
+ * методы для работы с данными отелей, поиска отеля по городу, поиска отеля по имени, поиска свободных комнат,
+ * бронирования комнаты пользователем, отмены бронирования пользователем, получения броней пользователя
+ * через вызов методов BookingSystemController;
  * методы для работы с базой данных пользователей через вызов методов UserController.
  */
 
@@ -37,6 +44,17 @@ public final class Controller {
         return userController.addUser(user);
     }
 
+    /**
+     * Вызывает метод добавления нескольких пользователей, которые сохраняются одной записью.
+     *
+     * @param users пользователи, которых нужно добавить в базу данных
+     * @return количество добавленных пользователей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public int addUsers(Collection<User> users) throws IOException {
+        return userController.addUsers(users);
+    }
+
     /**
      * Метод возвращает лист всех пользователей записанных в БД
      * @return - List<User>
@@ -77,6 +95,26 @@ public final class Controller {
         return userController.containsUser(user);
     }
 
+    /**
+     * Ищет пользователя по логину.
+     *
+     * @param userLogin логин пользователя
+     * @return Optional<User> пользователь из базы данных
+     */
+    public Optional<User> findByLogin(String userLogin) {
+        return userController.findByLogin(userLogin);
+    }
+
+    /**
+     * Проверяет, зарегистрирован ли пользователь с заданным логином.
+     *
+     * @param userLogin логин пользователя
+     * @return <tt>true</tt> если пользователь найден, <tt>false</tt> - если не удалось найти пользователя
+     */
+    public boolean existsByLogin(String userLogin) {
+        return userController.existsByLogin(userLogin);
+    }
+
     /**
      * Вызывает метод добавления отеля.
      *
@@ -88,6 +126,17 @@ public final class Controller {
         return bookingSystemController.addHotel(hotel);
     }
 
+    /**
+     * Вызывает метод добавления нескольких отелей, которые сохраняются одной записью.
+     *
+     * @param hotels отели, которые нужно добавить в базу данных
+     * @return количество добавленных отелей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public int addHotels(Collection<Hotel> hotels) throws IOException {
+        return bookingSystemController.addHotels(hotels);
+    }
+
     /**
      * Вызывает метод изменения свойства отеля.
      *
@@ -111,6 +160,18 @@ public final class Controller {
         return bookingSystemController.addRoomToHotel(hotel, room);
     }
 
+    /**
+     * Вызывает метод добавления нескольких комнат в отель, которые сохраняются одной записью.
+     *
+     * @param hotel отель, в который нужно добавить комнаты
+     * @param rooms комнаты, которые нужно добавить
+     * @return количество добавленных комнат
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public int addRooms(Hotel hotel, Collection<Room> rooms) throws IOException {
+        return bookingSystemController.addRooms(hotel, rooms);
+    }
+
     /**
      * Вызывает метод изменения свойств комнаты в отеле.
      *
@@ -154,6 +215,16 @@ public final class Controller {
         return bookingSystemController.getAllHotels();
     }
 
+    /**
+     * Метод возвращает все комнаты заданного отеля.
+     *
+     * @param hotel отель, список комнат которого нужно получить
+     * @return List<Room> список комнат отеля
+     */
+    public List<Room> getRooms(Hotel hotel) {
+        return bookingSystemController.getAllRooms(hotel);
+    }
+
     /**
      * Вызывает метод поиска отеля по имени.
      *
@@ -164,6 +235,28 @@ public final class Controller {
         return bookingSystemController.searchHotelByName(hotelName);
     }
 
+    /**
+     * Вызывает метод поиска отелей, имя которых начинается с заданной строки.
+     *
+     * @param prefix начало имени отеля
+     * @param limit  максимальное количество отелей
+     * @return List<Hotel> список отелей в алфавитном порядке имен
+     */
+    public List<Hotel> searchHotelByNamePrefix(String prefix, int limit) {
+        return bookingSystemController.searchHotelByNamePrefix(prefix, limit);
+    }
+
+    /**
+     * Вызывает метод поиска отелей с похожими именами.
+     *
+     * @param hotelName имя отеля, возможно с опечатками
+     * @param limit     максимальное количество отелей
+     * @return List<Hotel> список отелей от самого похожего имени к наименее похожему
+     */
+    public List<Hotel> searchHotelByNameFuzzy(String hotelName, int limit) {
+        return bookingSystemController.searchHotelByNameFuzzy(hotelName, limit);
+    }
+
     /**
      * Вызывает метод поиска отеля в городе, указанном в параметрах.
      *
@@ -174,6 +267,20 @@ public final class Controller {
         return bookingSystemController.searchHotelByCity(cityName);
     }
 
+    /**
+     * Вызывает метод поиска свободных комнат по городу, датам, количеству мест и цене.
+     *
+     * @param cityName город или null, если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями
+     */
+    public List<AvailableRoom> searchFreeRooms(String cityName, Date fromDate, Date toDate, int persons, double maxPrice) {
+        return bookingSystemController.searchFreeRooms(cityName, fromDate, toDate, persons, maxPrice);
+    }
+
     /**
      * Вызывает метод поиска отеля по номеру в регистре города.
      *
@@ -189,9 +296,9 @@ public final class Controller {
      *
      * @param room комната, которую нужно забронировать
      * @param bookingInfo информация для бронирования
-     * @return <tt>true</tt>  если комната успешно забронирована, <tt>false</tt> - если комнату не удалось забронировать
+     * @return номер брони или 0, если комнату не удалось забронировать
      */
-    public boolean bookRoomByUser(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+    public long bookRoomByUser(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
         return bookingSystemController.bookRoomByUser(hotel, room, bookingInfo);
     }
 
@@ -206,6 +313,51 @@ public final class Controller {
         return bookingSystemController.bookingCancellation(hotel, room, bookingInfo);
     }
 
+    /**
+     * Отменяет бронь по ее номеру.
+     *
+     * @param bookingId номер брони
+     * @return <tt>true</tt>  если бронь успешно снята, <tt>false</tt> - если бронь не найдена
+     */
+    public boolean bookingCancalation(long bookingId) throws IOException {
+        return bookingSystemController.bookingCancellation(bookingId);
+    }
+
+    /**
+     * Вызывает метод получения всех броней пользователя.
+     *
+     * @param userLogin логин пользователя
+     * @return List<UserBooking> брони пользователя с отелями и комнатами в порядке даты заезда
+     */
+    public List<UserBooking> getUserBookings(String userLogin) {
+        return bookingSystemController.getUserBookings(userLogin);
+    }
+
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файлы 'hotels' и 'users'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последних изменений
+     */
+    public CompletableFuture<Void> whenPersisted() {
+        return CompletableFuture.allOf(bookingSystemController.whenPersisted(), userController.whenPersisted());
+    }
+
+    /**
+     * Включает или выключает отложенную запись в файлы 'hotels' и 'users'. Пока запись отложена,
+     * изменения хранятся только в памяти; при выключении каждый файл записывается один раз.
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public void setDeferredWrites(boolean deferred) throws IOException {
+        try {
+            bookingSystemController.setDeferredWrites(deferred);
+        } finally {
+            userController.setDeferredWrites(deferred);
+        }
+    }
+
     /**
      * Метод обновляет БД до первоначальных, тестовых, значений.
      * 5 юзеров, 3 города, по 2 отебя в городе, по 10 комнта в отеле
@@ -379,15 +531,12 @@ public final class Controller {
         this.userController.getAllUsers().clear();
         this.userController.flush();
 
-        this.bookingSystemController.getAllHotels().clear();
-        this.bookingSystemController.flush();
-        for (User user : userList) {
-            this.userController.addUser(user);
-        }
-
-        for (Hotel hotel : hotelList) {
-            this.bookingSystemController.addHotel(hotel);
+        for (Hotel hotel : this.bookingSystemController.getAllHotels()) {
+            this.bookingSystemController.deleteHotel(hotel);
         }
+        this.bookingSystemController.flush();
+        this.userController.addUsers(userList);
+        this.bookingSystemController.addHotels(hotelList);
 
     }
 
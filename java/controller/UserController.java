@@ -5,7 +5,10 @@ import dao.UserDAOImpl;
 import domain.User;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Класс, который содержит методы:
@@ -32,6 +35,17 @@ public final class UserController {
         return userDAO.addUser(user);
     }
 
+    /**
+     * Вызывает метод добавления нескольких пользователей, которые сохраняются одной записью.
+     *
+     * @param users пользователи, которых нужно добавить в базу данных
+     * @return количество добавленных пользователей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public int addUsers(Collection<User> users) throws IOException {
+        return userDAO.addUsers(users);
+    }
+
     /**
      * Вызывает метод изменения свойств пользователя в базе данных.
      *
@@ -61,7 +75,27 @@ public final class UserController {
      * @return <tt>true</tt> если пользователь найден, <tt>false</tt> - если не удалось найти пользователя
      */
     public boolean containsUser(User user) {
-        return getAllUsers().stream().anyMatch(user::equals);
+        return userDAO.existsByLogin(user.getUserLogin());
+    }
+
+    /**
+     * Ищет пользователя по логину.
+     *
+     * @param userLogin логин пользователя
+     * @return Optional<User> пользователь из базы данных
+     */
+    public Optional<User> findByLogin(String userLogin) {
+        return userDAO.findByLogin(userLogin);
+    }
+
+    /**
+     * Проверяет, зарегистрирован ли пользователь с заданным логином.
+     *
+     * @param userLogin логин пользователя
+     * @return <tt>true</tt> если пользователь найден, <tt>false</tt> - если не удалось найти пользователя
+     */
+    public boolean existsByLogin(String userLogin) {
+        return userDAO.existsByLogin(userLogin);
     }
 
     /**
@@ -82,4 +116,24 @@ public final class UserController {
         this.userDAO.saveToFile();
     }
 
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файл 'users'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    public CompletableFuture<Void> whenPersisted() {
+        return this.userDAO.whenPersisted();
+    }
+
+    /**
+     * Включает или выключает отложенную запись в файл 'users'.
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public void setDeferredWrites(boolean deferred) throws IOException {
+        this.userDAO.setDeferredWrites(deferred);
+    }
+
 }
@@ -0,0 +1,75 @@
+package dao;
+
+import domain.Hotel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Класс имплементирующий интерфейс HotelStorage.
+ * При изменении только отмечает, что список отелей изменился: фоновый поток BackgroundSnapshotWriter
+ * сам сериализует последний опубликованный снимок списка (CatalogSnapshot) без монитора DAO
+ * и записывает файл, поэтому поток, изменяющий данные, не сериализует базу данных и не ждет записи файла.
+ * Изменения, пришедшие пока идет запись, записываются одним следующим снимком.
+ * Файл базы данных отелей заменяется атомарно.
+ *
+ * Имена отелей, цены и количество мест комнат читаются из общих с DAO объектов; если они меняются
+ * во время сериализации, в файл может попасть часть изменения, но само изменение запланирует
+ * следующий снимок, который запишет его полностью.
+ */
+
+public class AsyncSnapshotHotelStorage implements HotelStorage {
+
+    private final String filePath;
+    private final BackgroundSnapshotWriter writer;
+
+    /**
+     * @param filePath путь к файлу базы данных отелей
+     * @param catalog  источник актуального списка отелей; записываются его опубликованные снимки
+     */
+    public AsyncSnapshotHotelStorage(String filePath, Supplier<HotelCatalog> catalog) {
+        this.filePath = filePath;
+        this.writer = new BackgroundSnapshotWriter(filePath, () -> catalog.get().snapshot());
+    }
+
+    /**
+     * Файл в старом формате сразу переписывается в текущем, чтобы брони, получившие номера
+     * при чтении, сохранили их после перезапуска.
+     */
+    @Override
+    public List<Hotel> load() throws IOException, ClassNotFoundException {
+        List<Hotel> hotelList = DataBaseIO.readHotels(filePath);
+        if (DataBaseIO.isOutdatedDB(filePath)) {
+            DataBaseIO.replaceDB(hotelList, filePath);
+        }
+        return hotelList;
+    }
+
+    @Override
+    public void write(CatalogChange change) {
+        writer.submit();
+    }
+
+    /**
+     * Все изменения пакета войдут в один снимок.
+     */
+    @Override
+    public void writeBatch(List<CatalogChange> changes) {
+        writer.submit();
+    }
+
+    /**
+     * Записывает последний опубликованный снимок в вызывающем потоке.
+     */
+    @Override
+    public void writeAll(List<Hotel> hotelList) throws IOException {
+        writer.writeNow();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return writer.lastWrite();
+    }
+}
@@ -0,0 +1,144 @@
+package dao;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Класс записывает снимки базы данных в файл в отдельном потоке.
+ * Вызывающий только отмечает, что данные изменились (submit), и сразу продолжает работу:
+ * поток записи сам берет последний неизменяемый снимок данных, сериализует и записывает его,
+ * поэтому изменения, пришедшие пока идет запись, объединяются в один следующий снимок,
+ * а стоимость сериализации не ложится на изменяющий данные поток.
+ * Снимок записывается во временный файл, который затем атомарно переименовывается в файл базы данных,
+ * поэтому сбой во время записи не повреждает файл базы данных.
+ */
+
+public class BackgroundSnapshotWriter {
+
+    private final String filePath;
+    private final Supplier<?> snapshot;
+    private final Object writeLock = new Object();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CompletableFuture<Void> pendingWrite;
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param filePath путь к файлу базы данных
+     * @param snapshot источник последнего снимка данных; снимок не должен изменяться
+     *                 и должен сериализоваться без блокировок (например, CatalogSnapshot)
+     */
+    public BackgroundSnapshotWriter(String filePath, Supplier<?> snapshot) {
+        this.filePath = filePath;
+        this.snapshot = snapshot;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    /**
+     * Отмечает, что данные изменились. Если запись еще не запланирована, планирует ее;
+     * иначе изменение войдет в уже запланированный снимок.
+     *
+     * @return CompletableFuture, который завершится после записи снимка, содержащего это изменение
+     */
+    public synchronized CompletableFuture<Void> submit() {
+        if (pendingWrite == null) {
+            pendingWrite = new CompletableFuture<>();
+            executor.execute(this::writePending);
+        }
+        lastWrite = pendingWrite;
+        return pendingWrite;
+    }
+
+    /**
+     * Сериализует и записывает последний снимок в вызывающем потоке.
+     *
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public void writeNow() throws IOException {
+        CompletableFuture<Void> write = takePending();
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            if (write != null) {
+                write.completeExceptionally(e);
+            }
+            throw e;
+        }
+        if (write != null) {
+            write.complete(null);
+        }
+    }
+
+    /**
+     * Возвращает CompletableFuture последнего изменения.
+     *
+     * @return CompletableFuture записи последнего снимка
+     */
+    public synchronized CompletableFuture<Void> lastWrite() {
+        return lastWrite;
+    }
+
+    /**
+     * Ожидает записи всех изменений.
+     *
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public void flush() throws IOException {
+        try {
+            lastWrite().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private synchronized CompletableFuture<Void> takePending() {
+        CompletableFuture<Void> write = pendingWrite;
+        pendingWrite = null;
+        return write;
+    }
+
+    private void writePending() {
+        CompletableFuture<Void> write = takePending();
+        if (write == null) {
+            return;
+        }
+        try {
+            writeSnapshot();
+            write.complete(null);
+        } catch (IOException | RuntimeException e) {
+            write.completeExceptionally(e);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Снимок берется под той же блокировкой, что и запись файла, поэтому более старый снимок
+     * не может заменить в файле более новый.
+     */
+    private void writeSnapshot() throws IOException {
+        synchronized (writeLock) {
+            DataBaseIO.replaceBytes(DataBaseIO.toBytes(snapshot.get()), filePath);
+        }
+    }
+}
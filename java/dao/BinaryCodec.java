@@ -0,0 +1,322 @@
+package dao;
+
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.IdGenerator;
+import domain.Room;
+import domain.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Класс содержит методы записи и чтения базы данных в компактном двоичном формате.
+ *
+ * Формат файла: магическое число 'BKDB' (int), версия формата (byte), значение.
+ * Снимок списка отелей (CatalogSnapshot) записывается как LIST отелей с комнатами из снимка.
+ * Значение начинается с тега (byte):
+ * LIST - количество элементов (varint) и сами элементы (каждый со своим тегом);
+ * HOTEL - id (varint), cityRegister, name, city (строки), количество комнат (varint), комнаты;
+ * USER - id (varint), userLogin, userName, userLastName (строки);
+ * CHANGE - тип изменения (byte), cityRegister, далее поля, зависящие от типа изменения.
+ * Комната: id (varint), roomNumber, persons (zigzag varint), price (double),
+ * количество бронирований (varint), бронирования.
+ * Бронирование: номер брони (varint), userLogin, день заезда от 01.01.1970 по локальному календарю (zigzag varint),
+ * миллисекунды от начала дня заезда (varint), количество ночей (varint),
+ * миллисекунды от начала дня выезда (varint). Для дат без времени миллисекунды равны нулю.
+ * Строка: длина в байтах UTF-8 плюс один (varint, 0 - null), байты.
+ * В версии 1 формата номера брони нет; такие брони получают номер при чтении,
+ * а хранилища сразу переписывают такие файлы в текущей версии (DataBaseIO.isOutdatedDB).
+ */
+public final class BinaryCodec {
+
+    public static final int MAGIC = 0x424B4442;
+    public static final byte VERSION = 2;
+
+    private static final byte LIST = 1;
+    private static final byte HOTEL = 2;
+    private static final byte USER = 3;
+    private static final byte CHANGE = 4;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Записывает обьект вместе с заголовком формата.
+     *
+     * @param out    поток, в который производится запись
+     * @param object список отелей или пользователей, отель, пользователь или CatalogChange
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static void write(DataOutput out, Object object) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeValue(out, object);
+    }
+
+    /**
+     * Читает обьект, записанный методом write.
+     *
+     * @param in поток, из которого производится чтение
+     * @return Object прочитанный обьект
+     * @throws IOException когда произошли ошибки/прервались I/O operations или формат не распознан
+     */
+    public static Object read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a booking database file");
+        }
+        byte version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new StreamCorruptedException("Unsupported database format version: " + version);
+        }
+        return readValue(in, version);
+    }
+
+    private static void writeValue(DataOutput out, Object object) throws IOException {
+        if (object instanceof List) {
+            List<?> list = (List<?>) object;
+            out.writeByte(LIST);
+            writeVarLong(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (object instanceof CatalogSnapshot) {
+            CatalogSnapshot snapshot = (CatalogSnapshot) object;
+            List<Hotel> hotels = snapshot.getHotels();
+            out.writeByte(LIST);
+            writeVarLong(out, hotels.size());
+            for (Hotel hotel : hotels) {
+                out.writeByte(HOTEL);
+                writeHotel(out, hotel, snapshot.getRooms(hotel));
+            }
+        } else if (object instanceof Hotel) {
+            out.writeByte(HOTEL);
+            writeHotel(out, (Hotel) object, ((Hotel) object).getRoomList());
+        } else if (object instanceof User) {
+            out.writeByte(USER);
+            writeUser(out, (User) object);
+        } else if (object instanceof CatalogChange) {
+            out.writeByte(CHANGE);
+            writeChange(out, (CatalogChange) object);
+        } else {
+            throw new IllegalArgumentException("Unsupported type: " + object.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInput in, byte version) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case LIST:
+                int size = (int) readVarLong(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, version));
+                }
+                return list;
+            case HOTEL:
+                return readHotel(in, version);
+            case USER:
+                return readUser(in);
+            case CHANGE:
+                return readChange(in, version);
+            default:
+                throw new StreamCorruptedException("Unknown tag: " + tag);
+        }
+    }
+
+    private static void writeHotel(DataOutput out, Hotel hotel, List<Room> roomList) throws IOException {
+        writeVarLong(out, hotel.getId());
+        writeString(out, hotel.getCityRegister());
+        writeString(out, hotel.getName());
+        writeString(out, hotel.getCity());
+        writeVarLong(out, roomList.size());
+        for (Room room : roomList) {
+            writeRoom(out, room);
+        }
+    }
+
+    private static Hotel readHotel(DataInput in, byte version) throws IOException {
+        Hotel hotel = new Hotel(readVarLong(in), readString(in), readString(in), readString(in));
+        int size = (int) readVarLong(in);
+        List<Room> roomList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            roomList.add(readRoom(in, version));
+        }
+        hotel.setRoomList(roomList);
+        return hotel;
+    }
+
+    private static void writeRoom(DataOutput out, Room room) throws IOException {
+        writeVarLong(out, room.getId());
+        writeSignedVarLong(out, room.getRoomNumber());
+        writeSignedVarLong(out, room.getPersons());
+        out.writeDouble(room.getPrice());
+        List<BookingInfo> bookingInfoList = new ArrayList<>(room.getBookingInfoList());
+        writeVarLong(out, bookingInfoList.size());
+        for (BookingInfo bookingInfo : bookingInfoList) {
+            writeBookingInfo(out, bookingInfo);
+        }
+    }
+
+    private static Room readRoom(DataInput in, byte version) throws IOException {
+        Room room = new Room(readVarLong(in), (int) readSignedVarLong(in), (int) readSignedVarLong(in), in.readDouble());
+        int size = (int) readVarLong(in);
+        List<BookingInfo> bookingInfoList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            bookingInfoList.add(readBookingInfo(in, version));
+        }
+        room.setBookingInfoList(bookingInfoList);
+        return room;
+    }
+
+    private static void writeBookingInfo(DataOutput out, BookingInfo bookingInfo) throws IOException {
+        long fromDay = toEpochDay(bookingInfo.getFromDate());
+        long toDay = toEpochDay(bookingInfo.getToDate());
+        writeVarLong(out, bookingInfo.getId());
+        writeString(out, bookingInfo.getUserLogin());
+        writeSignedVarLong(out, fromDay);
+        writeVarLong(out, bookingInfo.getFromDate().getTime() - startOfDay(fromDay));
+        writeVarLong(out, toDay - fromDay);
+        writeVarLong(out, bookingInfo.getToDate().getTime() - startOfDay(toDay));
+    }
+
+    private static BookingInfo readBookingInfo(DataInput in, byte version) throws IOException {
+        long id = version >= 2 ? readVarLong(in) : 0;
+        String userLogin = readString(in);
+        long fromDay = readSignedVarLong(in);
+        Date fromDate = new Date(startOfDay(fromDay) + readVarLong(in));
+        long toDay = fromDay + readVarLong(in);
+        Date toDate = new Date(startOfDay(toDay) + readVarLong(in));
+        BookingInfo bookingInfo;
+        try {
+            bookingInfo = new BookingInfo(userLogin, fromDate, toDate);
+        } catch (Exception e) {
+            throw new StreamCorruptedException("Wrong booking dates: " + fromDate + " - " + toDate);
+        }
+        bookingInfo.setId(id != 0 ? id : IdGenerator.nextOrderId());
+        return bookingInfo;
+    }
+
+    private static void writeUser(DataOutput out, User user) throws IOException {
+        writeVarLong(out, user.getId());
+        writeString(out, user.getUserLogin());
+        writeString(out, user.getUserName());
+        writeString(out, user.getUserLastName());
+    }
+
+    private static User readUser(DataInput in) throws IOException {
+        return new User(readVarLong(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeChange(DataOutput out, CatalogChange change) throws IOException {
+        out.writeByte(change.getType().ordinal());
+        writeString(out, change.getCityRegister());
+        switch (change.getType()) {
+            case ADD_HOTEL:
+                writeHotel(out, change.getHotel(), change.getHotel().getRoomList());
+                break;
+            case CHANGE_HOTEL:
+                writeString(out, change.getName());
+                writeString(out, change.getCity());
+                break;
+            case ADD_ROOM:
+            case CHANGE_ROOM:
+                writeRoom(out, change.getRoom());
+                break;
+            case DELETE_ROOM:
+                writeSignedVarLong(out, change.getRoomNumber());
+                break;
+            case DELETE_HOTEL:
+                break;
+        }
+    }
+
+    private static CatalogChange readChange(DataInput in, byte version) throws IOException {
+        CatalogChange.Type[] types = CatalogChange.Type.values();
+        byte ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= types.length) {
+            throw new StreamCorruptedException("Unknown change type: " + ordinal);
+        }
+        CatalogChange.Type type = types[ordinal];
+        String cityRegister = readString(in);
+        switch (type) {
+            case ADD_HOTEL:
+                return new CatalogChange(type, cityRegister, readHotel(in, version), null, 0, null, null);
+            case CHANGE_HOTEL:
+                return new CatalogChange(type, cityRegister, null, null, 0, readString(in), readString(in));
+            case ADD_ROOM:
+            case CHANGE_ROOM:
+                Room room = readRoom(in, version);
+                return new CatalogChange(type, cityRegister, null, room, room.getRoomNumber(), null, null);
+            case DELETE_ROOM:
+                return new CatalogChange(type, cityRegister, null, null, (int) readSignedVarLong(in), null, null);
+            default:
+                return new CatalogChange(type, cityRegister, null, null, 0, null, null);
+        }
+    }
+
+    private static long toEpochDay(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    private static long startOfDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static long readSignedVarLong(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
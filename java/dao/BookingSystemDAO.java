@@ -1,10 +1,17 @@
 package dao;
 
+import domain.AvailableRoom;
+import domain.BookingInfo;
 import domain.Hotel;
 import domain.Room;
+import domain.UserBooking;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Интерфейс содержит в себе методы по работе с базой данных отелей и комнат.
@@ -21,6 +28,16 @@ public interface BookingSystemDAO {
      */
     boolean addHotel(Hotel hotel) throws IOException;
 
+    /**
+     * Добавляет в базу данных несколько отелей и сохраняет их одной записью.
+     * Отели, cityRegister которых уже есть в базе данных или повторяется в коллекции, пропускаются.
+     *
+     * @param hotels отели, которые нужно добавить в базу данных
+     * @return количество добавленных отелей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    int addHotels(Collection<Hotel> hotels) throws IOException;
+
     /**
      * Изменяет свойства отеля в базе данных.
      *
@@ -40,6 +57,17 @@ public interface BookingSystemDAO {
      */
     boolean addRoomToHotel(Hotel hotel, Room room) throws IOException;
 
+    /**
+     * Добавляет в отель несколько комнат и сохраняет их одной записью.
+     * Комнаты, номер которых уже есть в отеле или повторяется в коллекции, пропускаются.
+     *
+     * @param hotel отель, в который нужно добавить комнаты
+     * @param rooms комнаты, которые нужно добавить
+     * @return количество добавленных комнат (0, если отель не найден)
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    int addRooms(Hotel hotel, Collection<Room> rooms) throws IOException;
+
     /**
      * Изменяет свойства комнаты в отеле.
      *
@@ -60,6 +88,38 @@ public interface BookingSystemDAO {
      */
     boolean deleteRoomFromHotel(Room room, Hotel hotel) throws IOException;
 
+    /**
+     * Бронирует комнату отеля и обновляет индекс бронирований.
+     *
+     * @param hotel       отель, в котором находится комната
+     * @param room        комната, которую нужно забронировать
+     * @param bookingInfo информация про бронь
+     * @return номер брони или 0, если комната занята или не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    long bookRoom(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException;
+
+    /**
+     * Снимает бронь с комнаты отеля и обновляет индекс бронирований.
+     *
+     * @param hotel       отель, в котором находится комната
+     * @param room        комната, с которой нужно снять бронь
+     * @param bookingInfo информация про бронь
+     * @return <tt>true</tt> если бронь снята, <tt>false</tt> - если бронь не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    boolean cancelBooking(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException;
+
+    /**
+     * Снимает бронь по ее номеру. Бронь, отель и комната находятся по индексу бронирований,
+     * без просмотра списков отелей и комнат.
+     *
+     * @param bookingId номер брони
+     * @return <tt>true</tt> если бронь снята, <tt>false</tt> - если бронь не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    boolean cancelBooking(long bookingId) throws IOException;
+
     /**
      * Удаляет отель из базы данных.
      *
@@ -71,11 +131,76 @@ public interface BookingSystemDAO {
 
     /**
      * Получение всех отелей.
+     * Список неизменяемый и не меняется при последующих изменениях базы данных,
+     * поэтому его можно обходить, пока другие потоки добавляют отели и бронируют комнаты.
      *
-     * @return List<Hotel> список со всеми отелями в базе данных
+     * @return List<Hotel> неизменяемый список со всеми отелями в базе данных
      */
     List<Hotel> getAllHotels();
 
+    /**
+     * Ищет отель по номеру в регистре города.
+     *
+     * @param cityRegister номер здания в городском регистре
+     * @return Optional<Hotel> отель из базы данных
+     */
+    Optional<Hotel> findHotelByCityRegister(String cityRegister);
+
+    /**
+     * Ищет отели по имени без учета регистра.
+     *
+     * @param name имя отеля
+     * @return List<Hotel> список отелей с заданным именем
+     */
+    List<Hotel> findHotelsByName(String name);
+
+    /**
+     * Ищет отели, имя которых начинается с заданной строки (автодополнение).
+     *
+     * @param prefix начало имени отеля
+     * @param limit  максимальное количество отелей
+     * @return List<Hotel> список отелей в алфавитном порядке имен
+     */
+    List<Hotel> findHotelsByNamePrefix(String prefix, int limit);
+
+    /**
+     * Ищет отели с похожими именами, допуская опечатки.
+     *
+     * @param name  имя отеля, возможно с опечатками
+     * @param limit максимальное количество отелей
+     * @return List<Hotel> список отелей от самого похожего имени к наименее похожему
+     */
+    List<Hotel> findHotelsByNameFuzzy(String name, int limit);
+
+    /**
+     * Ищет отели в заданном городе без учета регистра.
+     *
+     * @param city город
+     * @return List<Hotel> список отелей в заданном городе
+     */
+    List<Hotel> findHotelsByCity(String city);
+
+    /**
+     * Ищет свободные на заданные даты комнаты в заданном городе,
+     * в которых не меньше persons мест и цена не больше maxPrice.
+     *
+     * @param city     город или null, если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями
+     */
+    List<AvailableRoom> findFreeRooms(String city, Date fromDate, Date toDate, int persons, double maxPrice);
+
+    /**
+     * Ищет брони пользователя по индексу бронирований.
+     *
+     * @param userLogin логин пользователя
+     * @return List<UserBooking> брони пользователя с отелями и комнатами в порядке даты заезда
+     */
+    List<UserBooking> findBookingsByUser(String userLogin);
+
     /**
      * Получение всех комнат в заданном отеле.
      *
@@ -91,6 +216,23 @@ public interface BookingSystemDAO {
      */
     void saveToFile() throws IOException;
 
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файл 'hotels'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    CompletableFuture<Void> whenPersisted();
+
+    /**
+     * Включает или выключает отложенную запись. Пока она включена, изменения не записываются
+     * в файл 'hotels'; при выключении все отложенные изменения записываются один раз.
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations.
+     */
+    void setDeferredWrites(boolean deferred) throws IOException;
+
     /**
      * Производит чтение данных из файла 'hotels'.
      *
@@ -1,27 +1,67 @@
 package dao;
 
+import domain.AvailableRoom;
+import domain.BookingInfo;
 import domain.Hotel;
 import domain.Room;
+import domain.UserBooking;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Класс имплементирующий интерфейс BookingSystemDAO.
  * Реализует для работы с базой данных отелей и комнат:
  * добавление, изменение, удаление.
  * Содержит методы записи и чтения из файла 'hotels'.
+ * Отели хранятся в HotelCatalog (LinkedHashMap по cityRegister с индексом по городу), поэтому поиск,
+ * добавление и удаление отеля не требуют просмотра всего списка.
+ * Способ хранения задается системным свойством 'booking.storage':
+ * snapshot (по умолчанию) - полная перезапись файла при каждом изменении,
+ * journal - журнал изменений с фоновым сворачиванием в снимок,
+ * sharded - отдельный файл для каждого отеля с загрузкой комнат при первом обращении,
+ * delta - запись только изменившихся отелей и комнат в журнал с периодическим слиянием в снимок,
+ * async - полная перезапись файла в фоновом потоке, изменяющий данные поток не ждет записи.
+ * Режим mapped реализован отдельным классом MappedBookingSystemDAO.
+ * В режиме snapshot можно включить group commit (см. GroupCommitWriter).
+ *
+ * Изменения базы данных выполняются под монитором DAO. Бронирование и отмена брони дополнительно
+ * берут блокировку комнаты из RoomLocks (всегда до монитора), а проверка и добавление брони
+ * выполняются только под блокировкой комнаты. Пересекающиеся брони не допускает сама комната
+ * (Room.bookTheRoom без блокировок); блокировка комнаты нужна, чтобы бронь и отмена брони
+ * одной комнаты попадали в индекс бронирований и в журнал в том же порядке, что и в комнату.
+ *
+ * Получение списка отелей и комнат, поиск отеля по cityRegister, поиск по городу и поиск свободных комнат
+ * не берут монитор: они работают со снимком списка отелей (CatalogSnapshot), который изменяющие методы
+ * публикуют перед выходом из монитора. Поиск по имени и поиск броней пользователя выполняются под монитором.
  */
 
 public class BookingSystemDAOImpl implements BookingSystemDAO {
 
     private static final String HOTELSFILE = "./booking_project/src/resources/hotels";
-    private List<Hotel> hotelList;
+    public static final String STORAGE_PROPERTY = "booking.storage";
+    private final HotelStorage storage;
+    private final RoomLocks roomLocks = new RoomLocks();
+    private volatile HotelCatalog hotelList;
+    private boolean deferredWrites;
+    private boolean deferredChanges;
 
     public BookingSystemDAOImpl() {
+        this(System.getProperty(STORAGE_PROPERTY, "snapshot"));
+    }
+
+    public BookingSystemDAOImpl(String storageMode) {
 
-        this.hotelList = new ArrayList<>();
+        this.hotelList = new HotelCatalog();
+        this.storage = createStorage(storageMode);
 
         try {
             readDBFromFile();
@@ -38,17 +78,46 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean addHotel(Hotel hotel) throws IOException {
+    public synchronized boolean addHotel(Hotel hotel) throws IOException {
 
-        boolean answer = hotelList.stream()
-                .noneMatch(hotel::equals)
+        boolean answer = !hotelList.contains(hotel)
                 && hotelList.add(hotel);
 
-        saveToFile();
+        if (answer) {
+            hotelList.publish();
+            write(CatalogChange.hotelAdded(hotel));
+        }
 
         return answer;
     }
 
+    /**
+     * Добавляет несколько отелей за один проход: повторы cityRegister находятся по HashMap списка отелей,
+     * который обновляется при каждом добавлении. Снимок списка отелей публикуется один раз,
+     * и все добавления сохраняются одним пакетом (HotelStorage.writeBatch).
+     *
+     * @param hotels отели, которые нужно добавить в базу данных
+     * @return количество добавленных отелей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized int addHotels(Collection<Hotel> hotels) throws IOException {
+        List<CatalogChange> changes = new ArrayList<>();
+        for (Hotel hotel : hotels) {
+            if (hotelList.find(hotel.getCityRegister()) == null) {
+                hotelList.add(hotel);
+                changes.add(CatalogChange.hotelAdded(hotel));
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            hotelList.publish();
+            write(changes);
+        }
+
+        return changes.size();
+    }
+
     /**
      * Изменяет свойства отеля в базе данных.
      *
@@ -57,21 +126,19 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean changeHotelData(Hotel hotel) throws IOException {
+    public synchronized boolean changeHotelData(Hotel hotel) throws IOException {
 
-        boolean answer = hotelList.stream()
-                .anyMatch(hotel::equals);
+        Hotel foundedHotel = hotelList.find(hotel.getCityRegister());
+        boolean answer = foundedHotel != null;
 
         if (answer) {
-            Hotel foundedHotel = hotelList.stream()
-                    .filter(hotel::equals)
-                    .findFirst()
-                    .get();
             foundedHotel.setName(hotel.getName());
+            foundedHotel.setCity(hotel.getCity());
+            hotelList.reindex(foundedHotel);
+            hotelList.publish();
+            write(CatalogChange.hotelChanged(foundedHotel));
         }
 
-        saveToFile();
-
         return answer;
     }
 
@@ -84,17 +151,61 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean addRoomToHotel(Hotel hotel, Room room) throws IOException {
+    public synchronized boolean addRoomToHotel(Hotel hotel, Room room) throws IOException {
 
-        boolean answer = hotel.getRoomList().stream()
-                .noneMatch(room::equals)
-                && hotel.getRoomList().add(room);
+        Optional<Hotel> foundedHotel = findHotel(hotel);
 
-        saveToFile();
+        boolean answer = foundedHotel.isPresent()
+                && foundedHotel.get().getRoomList().stream().noneMatch(room::equals)
+                && foundedHotel.get().getRoomList().add(room);
+
+        if (answer) {
+            hotelList.indexRoom(foundedHotel.get(), room);
+            hotelList.publish();
+            write(CatalogChange.roomAdded(foundedHotel.get(), room));
+        }
 
         return answer;
     }
 
+    /**
+     * Добавляет несколько комнат в отель: номера комнат проверяются по HashSet, а не просмотром
+     * списка комнат для каждой комнаты. Снимок публикуется один раз, добавления сохраняются одним пакетом.
+     *
+     * @param hotel отель, в который нужно добавить комнаты
+     * @param rooms комнаты, которые нужно добавить
+     * @return количество добавленных комнат (0, если отель не найден)
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized int addRooms(Hotel hotel, Collection<Room> rooms) throws IOException {
+        Optional<Hotel> foundedHotel = findHotel(hotel);
+        if (!foundedHotel.isPresent()) {
+            return 0;
+        }
+
+        List<Room> roomList = foundedHotel.get().getRoomList();
+        Set<Integer> roomNumbers = new HashSet<>();
+        for (Room room : roomList) {
+            roomNumbers.add(room.getRoomNumber());
+        }
+        List<CatalogChange> changes = new ArrayList<>();
+        for (Room room : rooms) {
+            if (roomNumbers.add(room.getRoomNumber())) {
+                roomList.add(room);
+                hotelList.indexRoom(foundedHotel.get(), room);
+                changes.add(CatalogChange.roomAdded(foundedHotel.get(), room));
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            hotelList.publish();
+            write(changes);
+        }
+
+        return changes.size();
+    }
+
     /**
      * Изменяет свойства комнаты в отеле.
      *
@@ -104,22 +215,25 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean changeRoomData(Room room, Hotel hotel) throws IOException {
+    public synchronized boolean changeRoomData(Room room, Hotel hotel) throws IOException {
 
-        boolean answer = hotel.getRoomList().stream()
-                .anyMatch(hotel::equals);
+        Optional<Hotel> foundedHotel = findHotel(hotel);
+
+        boolean answer = foundedHotel.isPresent()
+                && foundedHotel.get().getRoomList().stream().anyMatch(room::equals);
 
         if (answer) {
-            Room foundedRoom = hotel.getRoomList().stream()
+            Room foundedRoom = foundedHotel.get().getRoomList().stream()
                     .filter(room::equals)
                     .findFirst()
                     .get();
             foundedRoom.setPersons(room.getPersons());
             foundedRoom.setPrice(room.getPrice());
+            hotelList.reindexRoom(foundedHotel.get(), foundedRoom);
+            hotelList.publish();
+            write(CatalogChange.roomChanged(foundedHotel.get(), foundedRoom));
         }
 
-        saveToFile();
-
         return answer;
     }
 
@@ -132,16 +246,132 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean deleteRoomFromHotel(Room room, Hotel hotel) throws IOException {
+    public synchronized boolean deleteRoomFromHotel(Room room, Hotel hotel) throws IOException {
+
+        Optional<Hotel> foundedHotel = findHotel(hotel);
+        int index = foundedHotel.isPresent() ? foundedHotel.get().getRoomList().indexOf(room) : -1;
 
-        boolean answer = hotel.getRoomList().stream().anyMatch(room::equals)
-                && hotel.getRoomList().remove(room);
+        boolean answer = index >= 0;
 
-        saveToFile();
+        if (answer) {
+            Room foundedRoom = foundedHotel.get().getRoomList().remove(index);
+            hotelList.unindexRoom(foundedHotel.get(), foundedRoom);
+            hotelList.publish();
+            write(CatalogChange.roomDeleted(foundedHotel.get(), foundedRoom));
+        }
 
         return answer;
     }
 
+    /**
+     * Бронирует комнату отеля и обновляет индекс бронирований.
+     * Бронь выполняется под блокировкой комнаты (RoomLocks): проверка и добавление брони идут
+     * без монитора DAO, поэтому разные комнаты бронируются параллельно. Под монитором выполняются
+     * только поиск комнаты, обновление индекса бронирований и запись изменения.
+     *
+     * @param hotel       отель, в котором находится комната
+     * @param room        комната, которую нужно забронировать
+     * @param bookingInfo информация про бронь
+     * @return номер брони или 0, если комната занята или не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public long bookRoom(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+        Lock roomLock = roomLocks.of(hotel.getCityRegister(), room.getRoomNumber());
+        roomLock.lock();
+        try {
+            Optional<Hotel> foundedHotel;
+            Optional<Room> foundedRoom;
+            synchronized (this) {
+                foundedHotel = findHotel(hotel);
+                foundedRoom = findRoom(foundedHotel, room);
+            }
+
+            if (!foundedRoom.isPresent() || !foundedRoom.get().bookTheRoom(bookingInfo)) {
+                return 0;
+            }
+
+            synchronized (this) {
+                if (!inCatalog(foundedHotel.get(), foundedRoom.get())) {
+                    foundedRoom.get().getBookingInfoList().remove(bookingInfo);
+                    return 0;
+                }
+                hotelList.indexBooking(foundedHotel.get(), foundedRoom.get(), bookingInfo);
+                write(CatalogChange.roomChanged(foundedHotel.get(), foundedRoom.get()));
+            }
+            return bookingInfo.getId();
+        } finally {
+            roomLock.unlock();
+        }
+    }
+
+    /**
+     * Снимает бронь с комнаты отеля и обновляет индекс бронирований.
+     *
+     * @param hotel       отель, в котором находится комната
+     * @param room        комната, с которой нужно снять бронь
+     * @param bookingInfo информация про бронь
+     * @return <tt>true</tt> если бронь снята, <tt>false</tt> - если бронь не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public boolean cancelBooking(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+        Lock roomLock = roomLocks.of(hotel.getCityRegister(), room.getRoomNumber());
+        roomLock.lock();
+        try {
+            synchronized (this) {
+                Optional<Hotel> foundedHotel = findHotel(hotel);
+                Optional<Room> foundedRoom = findRoom(foundedHotel, room);
+
+                boolean answer = foundedRoom.isPresent() && foundedRoom.get().getBookingInfoList().remove(bookingInfo);
+
+                if (answer) {
+                    hotelList.unindexBooking(foundedHotel.get(), foundedRoom.get(), bookingInfo);
+                    write(CatalogChange.roomChanged(foundedHotel.get(), foundedRoom.get()));
+                }
+
+                return answer;
+            }
+        } finally {
+            roomLock.unlock();
+        }
+    }
+
+    /**
+     * Снимает бронь по ее номеру. Бронь, отель и комната находятся по индексу бронирований,
+     * без просмотра списков отелей и комнат.
+     *
+     * @param bookingId номер брони
+     * @return <tt>true</tt> если бронь снята, <tt>false</tt> - если бронь не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public boolean cancelBooking(long bookingId) throws IOException {
+        UserBooking userBooking;
+        synchronized (this) {
+            userBooking = hotelList.findBooking(bookingId).orElse(null);
+        }
+        if (userBooking == null) {
+            return false;
+        }
+
+        Lock roomLock = roomLocks.of(userBooking.getHotel().getCityRegister(), userBooking.getRoom().getRoomNumber());
+        roomLock.lock();
+        try {
+            synchronized (this) {
+                if (hotelList.findBooking(bookingId).orElse(null) != userBooking) {
+                    return false;
+                }
+                userBooking.getRoom().getBookingInfoList().remove(userBooking.getBookingInfo());
+                hotelList.unindexBooking(userBooking.getHotel(), userBooking.getRoom(), userBooking.getBookingInfo());
+                write(CatalogChange.roomChanged(userBooking.getHotel(), userBooking.getRoom()));
+                return true;
+            }
+        } finally {
+            roomLock.unlock();
+        }
+    }
+
     /**
      * Удаляет отель из базы данных.
      *
@@ -150,35 +380,125 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean deleteHotel(Hotel hotel) throws IOException {
+    public synchronized boolean deleteHotel(Hotel hotel) throws IOException {
 
-        boolean answer = hotelList.stream().anyMatch(hotel::equals) && hotelList.remove(hotel);
+        boolean answer = hotelList.remove(hotel);
 
-        saveToFile();
+        if (answer) {
+            hotelList.publish();
+            write(CatalogChange.hotelDeleted(hotel));
+        }
 
         return answer;
 
     }
 
     /**
-     * Получение всех отелей.
+     * Получение всех отелей из последнего снимка списка отелей, без монитора.
      *
-     * @return List<Hotel> список со всеми отелями в базе данных
+     * @return List<Hotel> неизменяемый список со всеми отелями в базе данных
      */
     @Override
     public List<Hotel> getAllHotels() {
-        return hotelList;
+        return hotelList.snapshot().getHotels();
+    }
+
+    /**
+     * Ищет отель по номеру в регистре города.
+     *
+     * @param cityRegister номер здания в городском регистре
+     * @return Optional<Hotel> отель из базы данных
+     */
+    @Override
+    public Optional<Hotel> findHotelByCityRegister(String cityRegister) {
+        return Optional.ofNullable(hotelList.snapshot().find(cityRegister));
+    }
+
+    /**
+     * Ищет отели по имени без учета регистра.
+     *
+     * @param name имя отеля
+     * @return List<Hotel> список отелей с заданным именем
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByName(String name) {
+        return hotelList.findByName(name);
+    }
+
+    /**
+     * Ищет отели, имя которых начинается с заданной строки (автодополнение).
+     *
+     * @param prefix начало имени отеля
+     * @param limit  максимальное количество отелей
+     * @return List<Hotel> список отелей в алфавитном порядке имен
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByNamePrefix(String prefix, int limit) {
+        return hotelList.findByNamePrefix(prefix, limit);
+    }
+
+    /**
+     * Ищет отели с похожими именами, допуская опечатки.
+     *
+     * @param name  имя отеля, возможно с опечатками
+     * @param limit максимальное количество отелей
+     * @return List<Hotel> список отелей от самого похожего имени к наименее похожему
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByNameFuzzy(String name, int limit) {
+        return hotelList.findByNameFuzzy(name, limit);
+    }
+
+    /**
+     * Ищет отели в заданном городе без учета регистра по индексу городов.
+     *
+     * @param city город
+     * @return List<Hotel> список отелей в заданном городе
+     */
+    @Override
+    public List<Hotel> findHotelsByCity(String city) {
+        return hotelList.snapshot().findByCity(city);
+    }
+
+    /**
+     * Ищет свободные на заданные даты комнаты в заданном городе,
+     * в которых не меньше persons мест и цена не больше maxPrice.
+     *
+     * @param city     город или null, если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями
+     */
+    @Override
+    public List<AvailableRoom> findFreeRooms(String city, Date fromDate, Date toDate, int persons,
+                                             double maxPrice) {
+        return hotelList.snapshot().findFreeRooms(city, fromDate, toDate, persons, maxPrice);
+    }
+
+    /**
+     * Ищет брони пользователя по индексу бронирований.
+     *
+     * @param userLogin логин пользователя
+     * @return List<UserBooking> брони пользователя с отелями и комнатами в порядке даты заезда
+     */
+    @Override
+    public synchronized List<UserBooking> findBookingsByUser(String userLogin) {
+        return hotelList.findBookingsByUser(userLogin);
     }
 
     /**
-     * Получение всех комнат в заданном отеле.
+     * Получение всех комнат в заданном отеле. Для отеля из базы данных возвращается
+     * неизменяемый список комнат из снимка списка отелей.
      *
      * @param hotel отель, список комнат которого мы хотим получить
      * @return List<Room> список со всеми комнатами заданного отеля
      */
     @Override
     public List<Room> getAllRooms(Hotel hotel) {
-        return hotel.getRoomList();
+        List<Room> rooms = hotelList.snapshot().getRooms(hotel);
+        return rooms == null ? hotel.getRoomList() : rooms;
     }
 
     /**
@@ -188,8 +508,59 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      */
     @Override
     public void saveToFile() throws IOException {
-        DataBaseIO.saveDB(hotelList, HOTELSFILE);
+        storage.writeAll(hotelList);
+
+    }
+
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файл 'hotels'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return storage.whenPersisted();
+    }
+
+    /**
+     * Включает или выключает отложенную запись. При выключении вся база данных записывается
+     * одним вызовом HotelStorage.writeAll, если за время отложенной записи были изменения.
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations.
+     */
+    @Override
+    public synchronized void setDeferredWrites(boolean deferred) throws IOException {
+        if (!deferred && deferredChanges) {
+            deferredChanges = false;
+            storage.writeAll(hotelList);
+        }
+        deferredWrites = deferred;
+    }
+
+    /**
+     * Сохраняет изменения пакета одной записью хранилища (HotelStorage.writeBatch) или,
+     * если запись отложена, отмечает, что база данных изменилась. Вызывается под монитором DAO.
+     */
+    private void write(List<CatalogChange> changes) throws IOException {
+        if (deferredWrites) {
+            deferredChanges = true;
+        } else {
+            storage.writeBatch(changes);
+        }
+    }
 
+    /**
+     * Сохраняет изменение в хранилище или, если запись отложена, отмечает, что база данных изменилась.
+     * Вызывается под монитором DAO.
+     */
+    private void write(CatalogChange change) throws IOException {
+        if (deferredWrites) {
+            deferredChanges = true;
+        } else {
+            storage.write(change);
+        }
     }
 
     /**
@@ -200,6 +571,61 @@ public class BookingSystemDAOImpl implements BookingSystemDAO {
      */
     @Override
     public void readDBFromFile() throws IOException, ClassNotFoundException {
-        hotelList = (List<Hotel>) DataBaseIO.readDB(HOTELSFILE);
+        HotelCatalog loaded = new HotelCatalog(storage.load());
+        synchronized (this) {
+            loaded.publish();
+            hotelList = loaded;
+        }
+    }
+
+    /**
+     * Ищет в базе данных отель, равный заданному.
+     *
+     * @param hotel отель, который нужно найти
+     * @return Optional<Hotel> отель из базы данных
+     */
+    private Optional<Hotel> findHotel(Hotel hotel) {
+        return Optional.ofNullable(hotelList.find(hotel.getCityRegister()));
+    }
+
+    /**
+     * Проверяет, что отель и комната все еще находятся в базе данных:
+     * пока бронь выполнялась без монитора DAO, их могли удалить или заменить.
+     */
+    private boolean inCatalog(Hotel hotel, Room room) {
+        return hotelList.find(hotel.getCityRegister()) == hotel
+                && findRoom(Optional.of(hotel), room).orElse(null) == room;
+    }
+
+    private static Optional<Room> findRoom(Optional<Hotel> hotel, Room room) {
+        if (!hotel.isPresent()) {
+            return Optional.empty();
+        }
+        List<Room> roomList = hotel.get().getRoomList();
+        int index = roomList.indexOf(room);
+        return index < 0 ? Optional.empty() : Optional.of(roomList.get(index));
+    }
+
+    /**
+     * Создает хранилище базы данных отелей для заданного режима.
+     *
+     * @param storageMode режим хранения: snapshot, journal, sharded, delta или async
+     * @return HotelStorage хранилище базы данных отелей
+     */
+    private HotelStorage createStorage(String storageMode) {
+        switch (storageMode) {
+            case "journal":
+                return new JournalHotelStorage(HOTELSFILE);
+            case "delta":
+                return new DeltaHotelStorage(HOTELSFILE);
+            case "sharded":
+                return new ShardedHotelStorage(HOTELSFILE, () -> hotelList, this);
+            case "async":
+                return new AsyncSnapshotHotelStorage(HOTELSFILE, () -> hotelList);
+            case "snapshot":
+                return new SnapshotHotelStorage(HOTELSFILE, () -> hotelList, this);
+            default:
+                throw new IllegalArgumentException("Unknown storage mode: " + storageMode);
+        }
     }
 }
@@ -0,0 +1,153 @@
+package dao;
+
+import domain.Hotel;
+import domain.Room;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс описывает одно изменение в базе данных отелей (запись журнала).
+ * Каждая запись содержит полное новое состояние измененной сущности,
+ * поэтому повторное применение записей в том же порядке дает тот же результат.
+ */
+public final class CatalogChange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Тип изменения.
+     */
+    public enum Type {
+        ADD_HOTEL, CHANGE_HOTEL, DELETE_HOTEL, ADD_ROOM, CHANGE_ROOM, DELETE_ROOM
+    }
+
+    private final Type type;
+    private final String cityRegister;
+    private final Hotel hotel;
+    private final Room room;
+    private final int roomNumber;
+    private final String name;
+    private final String city;
+
+    CatalogChange(Type type, String cityRegister, Hotel hotel, Room room,
+                  int roomNumber, String name, String city) {
+        this.type = type;
+        this.cityRegister = cityRegister;
+        this.hotel = hotel;
+        this.room = room;
+        this.roomNumber = roomNumber;
+        this.name = name;
+        this.city = city;
+    }
+
+    public static CatalogChange hotelAdded(Hotel hotel) {
+        return new CatalogChange(Type.ADD_HOTEL, hotel.getCityRegister(), hotel, null, 0, null, null);
+    }
+
+    public static CatalogChange hotelChanged(Hotel hotel) {
+        return new CatalogChange(Type.CHANGE_HOTEL, hotel.getCityRegister(), null, null, 0,
+                hotel.getName(), hotel.getCity());
+    }
+
+    public static CatalogChange hotelDeleted(Hotel hotel) {
+        return new CatalogChange(Type.DELETE_HOTEL, hotel.getCityRegister(), null, null, 0, null, null);
+    }
+
+    public static CatalogChange roomAdded(Hotel hotel, Room room) {
+        return new CatalogChange(Type.ADD_ROOM, hotel.getCityRegister(), null, room,
+                room.getRoomNumber(), null, null);
+    }
+
+    public static CatalogChange roomChanged(Hotel hotel, Room room) {
+        return new CatalogChange(Type.CHANGE_ROOM, hotel.getCityRegister(), null, room,
+                room.getRoomNumber(), null, null);
+    }
+
+    public static CatalogChange roomDeleted(Hotel hotel, Room room) {
+        return new CatalogChange(Type.DELETE_ROOM, hotel.getCityRegister(), null, null,
+                room.getRoomNumber(), null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCityRegister() {
+        return cityRegister;
+    }
+
+    public Hotel getHotel() {
+        return hotel;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public int getRoomNumber() {
+        return roomNumber;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    /**
+     * Применяет изменение к отелям, собранным по cityRegister.
+     * Изменения, которые ссылаются на отсутствующий отель, игнорируются.
+     * В LinkedHashMap отели остаются в порядке списка: замененный отель сохраняет свое место,
+     * новый добавляется в конец.
+     *
+     * @param hotels отели по cityRegister, к которым применяется изменение
+     */
+    public void applyTo(Map<String, Hotel> hotels) {
+        Hotel target = hotels.get(cityRegister);
+
+        switch (type) {
+            case ADD_HOTEL:
+                hotels.put(cityRegister, hotel);
+                break;
+            case CHANGE_HOTEL:
+                if (target != null) {
+                    target.setName(name);
+                    target.setCity(city);
+                }
+                break;
+            case DELETE_HOTEL:
+                hotels.remove(cityRegister);
+                break;
+            case ADD_ROOM:
+            case CHANGE_ROOM:
+                if (target != null) {
+                    List<Room> roomList = target.getRoomList();
+                    int index = roomList.indexOf(room);
+                    if (index >= 0) {
+                        roomList.set(index, room);
+                    } else {
+                        roomList.add(room);
+                    }
+                }
+                break;
+            case DELETE_ROOM:
+                if (target != null) {
+                    target.getRoomList().removeIf(roomFromDB -> roomFromDB.getRoomNumber() == roomNumber);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogChange{" +
+                "type=" + type +
+                ", cityRegister='" + cityRegister + '\'' +
+                ", roomNumber=" + roomNumber +
+                '}';
+    }
+}
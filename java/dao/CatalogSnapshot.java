@@ -0,0 +1,640 @@
+package dao;
+
+import domain.AvailableRoom;
+import domain.Hotel;
+import domain.Room;
+import domain.RoomIndex;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемый снимок списка отелей: отели в порядке списка, индекс по cityRegister, индекс по городу
+ * и копии списков комнат отелей. Снимок публикует HotelCatalog.publish, поиск по снимку выполняется
+ * без блокировок и не видит изменений, сделанных после публикации.
+ *
+ * Для каждого отеля снимок хранит Entry: копию списка комнат, самую низкую цену комнаты
+ * для каждого количества мест и, для отелей не меньше чем из INDEXED_ROOMS комнат, индекс комнат
+ * по цене и количеству мест (RoomIndex); для отеля с еще не загруженными комнатами эти данные
+ * строятся при первом поиске по его комнатам. Следующий снимок строится из предыдущего и делит с ним почти все данные:
+ * порядок отелей и списки отелей городов хранятся в EntrySequence (блоки по CHUNK Entry),
+ * индексы по cityRegister и по городу - в ShardedMap (сегменты по SHARD_SIZE ключей).
+ * Изменение одного отеля копирует только его Entry, один блок последовательности и один сегмент индекса,
+ * поэтому стоимость публикации зависит от количества измененных отелей, а не от размера списка.
+ * Если порядок отелей изменился не только добавлением в конец или изменилась большая часть отелей,
+ * снимок строится заново.
+ *
+ * Номер версии снимка - номер версии HotelCatalog, из которого он построен.
+ * Бронирования комнат в снимок не копируются: комнаты общие со списком отелей,
+ * а проверка свободных дат (Room.isFree) сама не блокируется.
+ */
+final class CatalogSnapshot {
+
+    private static final int INDEXED_ROOMS = 1024;
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, -1, EntrySequence.EMPTY,
+            ShardedMap.<Entry>empty(), ShardedMap.<EntrySequence>empty());
+
+    private final long version;
+    private final long lastSeq;
+    private final EntrySequence order;
+    private final ShardedMap<Entry> entries;
+    private final ShardedMap<EntrySequence> cities;
+    private final List<Hotel> hotels;
+
+    private CatalogSnapshot(long version, long lastSeq, EntrySequence order,
+                            ShardedMap<Entry> entries, ShardedMap<EntrySequence> cities) {
+        this.version = version;
+        this.lastSeq = lastSeq;
+        this.order = order;
+        this.entries = entries;
+        this.cities = cities;
+        this.hotels = new HotelView(order);
+    }
+
+    /**
+     * Строит следующий снимок.
+     *
+     * @param hotelMap  отели по cityRegister в порядке списка
+     * @param changed   cityRegister отелей, которые после этого снимка добавлялись, удалялись, заменялись
+     *                  или у которых менялись комнаты, город или имя; добавленные в конец списка отели
+     *                  идут в порядке списка
+     * @param removed   cityRegister отелей, которые после этого снимка удалялись из списка
+     * @param reordered <tt>true</tt> если отели после этого снимка вставлялись не в конец списка
+     * @param version   номер версии списка отелей
+     * @return CatalogSnapshot новый снимок
+     */
+    CatalogSnapshot next(Map<String, Hotel> hotelMap, Set<String> changed, Set<String> removed,
+                         boolean reordered, long version) {
+        if (reordered || changed.size() > hotelMap.size() / 4) {
+            return rebuild(hotelMap.values(), changed, version);
+        }
+
+        EntrySequence nextOrder = order;
+        long nextSeq = lastSeq;
+        Map<String, Entry> entryChanges = new HashMap<>();
+        Map<String, EntrySequence> cityChanges = new HashMap<>();
+        for (String cityRegister : changed) {
+            Entry previous = entries.get(cityRegister);
+            Hotel hotel = hotelMap.get(cityRegister);
+            if (previous != null && (hotel == null || removed.contains(cityRegister))) {
+                nextOrder = nextOrder.without(previous.seq);
+                removeFromCity(cities, cityChanges, previous);
+                previous = null;
+            }
+            if (hotel == null) {
+                entryChanges.put(cityRegister, null);
+                continue;
+            }
+
+            Entry entry = new Entry(hotel, previous == null ? ++nextSeq : previous.seq);
+            nextOrder = nextOrder.with(entry);
+            if (previous != null && !previous.city.equals(entry.city)) {
+                removeFromCity(cities, cityChanges, previous);
+            }
+            EntrySequence city = cityChanges.containsKey(entry.city) ? cityChanges.get(entry.city) : cities.get(entry.city);
+            cityChanges.put(entry.city, (city == null ? EntrySequence.EMPTY : city).with(entry));
+            entryChanges.put(cityRegister, entry);
+        }
+        return new CatalogSnapshot(version, nextSeq, nextOrder, entries.with(entryChanges), cities.with(cityChanges));
+    }
+
+    /**
+     * Строит снимок заново: Entry неизменившихся отелей переходят в него с новыми номерами без копирования комнат.
+     */
+    private CatalogSnapshot rebuild(Collection<Hotel> hotelList, Set<String> changed, long version) {
+        List<Entry> nextOrder = new ArrayList<>(hotelList.size());
+        Map<String, Entry> nextEntries = new HashMap<>(hotelList.size() * 4 / 3 + 1);
+        Map<String, List<Entry>> cityLists = new HashMap<>();
+        long seq = 0;
+        for (Hotel hotel : hotelList) {
+            Entry entry = entries.get(hotel.getCityRegister());
+            entry = entry == null || entry.hotel != hotel || changed.contains(hotel.getCityRegister())
+                    ? new Entry(hotel, seq)
+                    : entry.at(seq);
+            seq++;
+            nextOrder.add(entry);
+            nextEntries.put(hotel.getCityRegister(), entry);
+            cityLists.computeIfAbsent(entry.city, key -> new ArrayList<>()).add(entry);
+        }
+
+        Map<String, EntrySequence> nextCities = new HashMap<>(cityLists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Entry>> city : cityLists.entrySet()) {
+            nextCities.put(city.getKey(), EntrySequence.of(city.getValue()));
+        }
+        return new CatalogSnapshot(version, seq - 1, EntrySequence.of(nextOrder),
+                ShardedMap.of(nextEntries), ShardedMap.of(nextCities));
+    }
+
+    private static void removeFromCity(ShardedMap<EntrySequence> cities, Map<String, EntrySequence> cityChanges, Entry entry) {
+        EntrySequence city = cityChanges.containsKey(entry.city) ? cityChanges.get(entry.city) : cities.get(entry.city);
+        if (city == null) {
+            return;
+        }
+        city = city.without(entry.seq);
+        cityChanges.put(entry.city, city.size() == 0 ? null : city);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return List<Hotel> неизменяемый список отелей в порядке списка
+     */
+    List<Hotel> getHotels() {
+        return hotels;
+    }
+
+    /**
+     * Ищет отель по номеру в регистре города.
+     *
+     * @param cityRegister номер здания в городском регистре
+     * @return Hotel найденный отель или null
+     */
+    Hotel find(String cityRegister) {
+        Entry entry = entries.get(cityRegister);
+        return entry == null ? null : entry.hotel;
+    }
+
+    /**
+     * Комнаты отеля на момент снимка.
+     *
+     * @param hotel отель из снимка
+     * @return List<Room> неизменяемый список комнат или null, если отеля нет в снимке
+     */
+    List<Room> getRooms(Hotel hotel) {
+        Entry entry = entries.get(hotel.getCityRegister());
+        return entry == null || entry.hotel != hotel ? null : entry.rooms().list;
+    }
+
+    /**
+     * Ищет отели в заданном городе без учета регистра.
+     *
+     * @param city город
+     * @return List<Hotel> отели в заданном городе в порядке списка
+     */
+    List<Hotel> findByCity(String city) {
+        List<Hotel> result = new ArrayList<>();
+        for (Entry entry : city(city)) {
+            result.add(entry.hotel);
+        }
+        return result;
+    }
+
+    /**
+     * Ищет свободные на заданные даты комнаты, подходящие по количеству мест и цене (как HotelCatalog.findFreeRooms).
+     * Отели, в которых даже самая дешевая комната с нужным количеством мест дороже maxPrice,
+     * отбрасываются по Entry без просмотра комнат. В больших отелях комнаты, подходящие по цене
+     * и количеству мест, берутся из RoomIndex (в порядке цены), в остальных - просмотром списка комнат.
+     *
+     * @param city     город или null (пустая строка), если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями в порядке отелей в списке
+     */
+    List<AvailableRoom> findFreeRooms(String city, Date fromDate, Date toDate, int persons, double maxPrice) {
+        EntrySequence candidates = city == null || city.isEmpty() ? order : city(city);
+
+        List<AvailableRoom> result = new ArrayList<>();
+        for (Entry entry : candidates) {
+            Rooms rooms = entry.rooms();
+            if (rooms.cheapest(persons) > maxPrice) {
+                continue;
+            }
+            if (rooms.index != null) {
+                for (Room room : rooms.index.find(persons, maxPrice)) {
+                    if (room.isFree(fromDate, toDate)) {
+                        result.add(new AvailableRoom(entry.hotel, room));
+                    }
+                }
+                continue;
+            }
+            for (Room room : rooms.list) {
+                if (room.getPersons() >= persons && room.getPrice() <= maxPrice && room.isFree(fromDate, toDate)) {
+                    result.add(new AvailableRoom(entry.hotel, room));
+                }
+            }
+        }
+        return result;
+    }
+
+    private EntrySequence city(String city) {
+        EntrySequence found = cities.get(HotelCatalog.normalize(city));
+        return found == null ? EntrySequence.EMPTY : found;
+    }
+
+    /**
+     * Данные отеля в снимке. Не меняется после создания и переходит в следующие снимки,
+     * пока отель не изменится. seq - номер отеля в порядке списка: отели, добавленные позже, получают
+     * большие номера, а удаление отеля номера остальных не меняет.
+     *
+     * Комнаты отеля, список которых еще не загружен (LazyList), при построении Entry не читаются:
+     * данные комнат (Rooms) строятся при первом поиске по комнатам отеля и тогда же загружают список.
+     * До загрузки комнаты отеля не менялись (изменение загружает список и строит новый Entry),
+     * поэтому отложенное построение видит те же комнаты, что были при публикации снимка.
+     */
+    private static final class Entry {
+        private final Hotel hotel;
+        private final long seq;
+        private final String city;
+        private final List<Room> roomList;
+        private volatile Rooms rooms;
+
+        private Entry(Hotel hotel, long seq) {
+            this.hotel = hotel;
+            this.seq = seq;
+            this.city = HotelCatalog.normalize(hotel.getCity());
+            this.roomList = hotel.getRoomList();
+            if (!(roomList instanceof LazyList) || ((LazyList<?>) roomList).isLoaded()) {
+                this.rooms = new Rooms(roomList);
+            }
+        }
+
+        private Entry(Entry entry, long seq) {
+            this.hotel = entry.hotel;
+            this.seq = seq;
+            this.city = entry.city;
+            this.roomList = entry.roomList;
+            this.rooms = entry.rooms;
+        }
+
+        private Entry at(long seq) {
+            return seq == this.seq ? this : new Entry(this, seq);
+        }
+
+        /**
+         * Данные комнат отеля; при первом вызове для незагруженного списка комнат список загружается.
+         * Если два потока построят данные одновременно, оба получат одинаковые неизменяемые данные.
+         */
+        private Rooms rooms() {
+            Rooms current = rooms;
+            if (current == null) {
+                current = new Rooms(roomList);
+                rooms = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Неизменяемые данные комнат отеля: копия списка комнат, самая низкая цена комнаты для каждого
+     * количества мест и, для больших отелей, индекс комнат по цене и количеству мест.
+     */
+    private static final class Rooms {
+        private final List<Room> list;
+        /**
+         * Для каждого количества мест p, которое есть у комнат отеля, - самая низкая цена комнаты,
+         * в которой не меньше p мест. Размер зависит от количества различных значений мест, а не от самого значения.
+         */
+        private final NavigableMap<Integer, Double> cheapest;
+        /**
+         * Индекс комнат большого отеля или null.
+         */
+        private final RoomIndex index;
+
+        private Rooms(List<Room> roomList) {
+            Room[] roomArray = roomList.toArray(new Room[0]);
+            this.list = Collections.unmodifiableList(Arrays.asList(roomArray));
+
+            TreeMap<Integer, Double> byPersons = new TreeMap<>();
+            for (Room room : roomArray) {
+                byPersons.merge(room.getPersons(), room.getPrice(), Math::min);
+            }
+            double min = Double.POSITIVE_INFINITY;
+            for (Map.Entry<Integer, Double> persons : byPersons.descendingMap().entrySet()) {
+                min = Math.min(min, persons.getValue());
+                persons.setValue(min);
+            }
+            this.cheapest = byPersons;
+            this.index = roomArray.length >= INDEXED_ROOMS ? new RoomIndex(list) : null;
+        }
+
+        private double cheapest(int persons) {
+            Map.Entry<Integer, Double> found = cheapest.ceilingEntry(persons);
+            return found == null ? Double.POSITIVE_INFINITY : found.getValue();
+        }
+    }
+
+    /**
+     * Неизменяемая последовательность Entry, упорядоченная по Entry.seq и разбитая на блоки
+     * не длиннее CHUNK. Добавление, замена и удаление Entry копируют один блок и массив ссылок на блоки,
+     * то есть стоят O(CHUNK + n / CHUNK); доступ по индексу - двоичный поиск по началам блоков.
+     */
+    private static final class EntrySequence implements Iterable<Entry> {
+        private static final int CHUNK = 128;
+        private static final EntrySequence EMPTY = new EntrySequence(new Entry[0][]);
+
+        private final Entry[][] chunks;
+        /**
+         * starts[i] - индекс первого Entry блока i, starts[chunks.length] - длина последовательности.
+         */
+        private final int[] starts;
+
+        private EntrySequence(Entry[][] chunks) {
+            this.chunks = chunks;
+            this.starts = new int[chunks.length + 1];
+            for (int i = 0; i < chunks.length; i++) {
+                starts[i + 1] = starts[i] + chunks[i].length;
+            }
+        }
+
+        /**
+         * @param entries Entry в порядке возрастания seq
+         */
+        private static EntrySequence of(List<Entry> entries) {
+            Entry[][] chunks = new Entry[(entries.size() + CHUNK - 1) / CHUNK][];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = entries.subList(i * CHUNK, Math.min(entries.size(), (i + 1) * CHUNK)).toArray(new Entry[0]);
+            }
+            return new EntrySequence(chunks);
+        }
+
+        private int size() {
+            return starts[chunks.length];
+        }
+
+        private Entry get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int chunk = Arrays.binarySearch(starts, 0, chunks.length, index);
+            if (chunk < 0) {
+                chunk = -chunk - 2;
+            }
+            return chunks[chunk][index - starts[chunk]];
+        }
+
+        /**
+         * Последовательность, в которой Entry с тем же seq заменен на entry или entry добавлен на свое место.
+         */
+        private EntrySequence with(Entry entry) {
+            if (chunks.length == 0) {
+                return new EntrySequence(new Entry[][]{{entry}});
+            }
+            int chunk = chunkOf(entry.seq);
+            Entry[] values = chunks[chunk];
+            int position = indexOf(values, entry.seq);
+            Entry[][] nextChunks;
+            if (position >= 0) {
+                nextChunks = chunks.clone();
+                nextChunks[chunk] = values.clone();
+                nextChunks[chunk][position] = entry;
+            } else if (chunk == chunks.length - 1 && -position - 1 == values.length && values.length >= CHUNK) {
+                nextChunks = Arrays.copyOf(chunks, chunks.length + 1);
+                nextChunks[chunks.length] = new Entry[]{entry};
+            } else {
+                position = -position - 1;
+                Entry[] inserted = new Entry[values.length + 1];
+                System.arraycopy(values, 0, inserted, 0, position);
+                inserted[position] = entry;
+                System.arraycopy(values, position, inserted, position + 1, values.length - position);
+                if (inserted.length <= CHUNK) {
+                    nextChunks = chunks.clone();
+                    nextChunks[chunk] = inserted;
+                } else {
+                    nextChunks = new Entry[chunks.length + 1][];
+                    System.arraycopy(chunks, 0, nextChunks, 0, chunk);
+                    nextChunks[chunk] = Arrays.copyOfRange(inserted, 0, inserted.length / 2);
+                    nextChunks[chunk + 1] = Arrays.copyOfRange(inserted, inserted.length / 2, inserted.length);
+                    System.arraycopy(chunks, chunk + 1, nextChunks, chunk + 2, chunks.length - chunk - 1);
+                }
+            }
+            return new EntrySequence(nextChunks);
+        }
+
+        /**
+         * Последовательность без Entry с номером seq. Если блоки после удалений заполнены меньше
+         * чем на четверть, последовательность упаковывается в полные блоки заново.
+         */
+        private EntrySequence without(long seq) {
+            if (chunks.length == 0) {
+                return this;
+            }
+            int chunk = chunkOf(seq);
+            Entry[] values = chunks[chunk];
+            int position = indexOf(values, seq);
+            if (position < 0) {
+                return this;
+            }
+
+            Entry[][] nextChunks;
+            if (values.length == 1) {
+                nextChunks = new Entry[chunks.length - 1][];
+                System.arraycopy(chunks, 0, nextChunks, 0, chunk);
+                System.arraycopy(chunks, chunk + 1, nextChunks, chunk, chunks.length - chunk - 1);
+            } else {
+                Entry[] removed = new Entry[values.length - 1];
+                System.arraycopy(values, 0, removed, 0, position);
+                System.arraycopy(values, position + 1, removed, position, values.length - position - 1);
+                nextChunks = chunks.clone();
+                nextChunks[chunk] = removed;
+            }
+            EntrySequence next = new EntrySequence(nextChunks);
+            if (nextChunks.length > 1 && (long) nextChunks.length * CHUNK > 4L * next.size()) {
+                List<Entry> packed = new ArrayList<>(next.size());
+                for (Entry entry : next) {
+                    packed.add(entry);
+                }
+                return of(packed);
+            }
+            return next;
+        }
+
+        /**
+         * Номер блока, в котором находится или должен находиться Entry с номером seq.
+         */
+        private int chunkOf(long seq) {
+            int low = 0;
+            int high = chunks.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (chunks[middle][0].seq <= seq) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Двоичный поиск по seq внутри блока, результат - как у Arrays.binarySearch.
+         */
+        private static int indexOf(Entry[] values, long seq) {
+            int low = 0;
+            int high = values.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle].seq < seq) {
+                    low = middle + 1;
+                } else if (values[middle].seq > seq) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return new Iterator<Entry>() {
+                private int chunk;
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return chunk < chunks.length;
+                }
+
+                @Override
+                public Entry next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry entry = chunks[chunk][position++];
+                    if (position == chunks[chunk].length) {
+                        chunk++;
+                        position = 0;
+                    }
+                    return entry;
+                }
+            };
+        }
+    }
+
+    /**
+     * Неизменяемый список отелей снимка поверх EntrySequence.
+     */
+    private static final class HotelView extends AbstractList<Hotel> {
+        private final EntrySequence order;
+
+        private HotelView(EntrySequence order) {
+            this.order = order;
+        }
+
+        @Override
+        public Hotel get(int index) {
+            return order.get(index).hotel;
+        }
+
+        @Override
+        public int size() {
+            return order.size();
+        }
+
+        @Override
+        public Iterator<Hotel> iterator() {
+            Iterator<Entry> entries = order.iterator();
+            return new Iterator<Hotel>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Hotel next() {
+                    return entries.next().hotel;
+                }
+            };
+        }
+    }
+
+    /**
+     * Неизменяемая таблица по строковому ключу, разбитая на сегменты (HashMap) по хешу ключа.
+     * Изменение копирует список сегментов и только те сегменты, в которых менялись ключи;
+     * количество сегментов - степень двойки, которая удваивается, когда в сегменте становится
+     * в среднем больше 2 * SHARD_SIZE ключей.
+     */
+    private static final class ShardedMap<V> {
+        private static final int SHARD_SIZE = 64;
+
+        private final List<Map<String, V>> shards;
+        private final int size;
+
+        private ShardedMap(List<Map<String, V>> shards, int size) {
+            this.shards = shards;
+            this.size = size;
+        }
+
+        private static <V> ShardedMap<V> empty() {
+            return new ShardedMap<>(Collections.singletonList(new HashMap<>()), 0);
+        }
+
+        private static <V> ShardedMap<V> of(Map<String, V> values) {
+            int count = 1;
+            while (count * SHARD_SIZE < values.size()) {
+                count <<= 1;
+            }
+            List<Map<String, V>> shards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                shards.add(new HashMap<>());
+            }
+            for (Map.Entry<String, V> value : values.entrySet()) {
+                shards.get(shardOf(value.getKey(), count)).put(value.getKey(), value.getValue());
+            }
+            return new ShardedMap<>(shards, values.size());
+        }
+
+        private V get(String key) {
+            return shards.get(shardOf(key, shards.size())).get(key);
+        }
+
+        /**
+         * @param changes новые значения ключей; значение null удаляет ключ
+         * @return ShardedMap таблица с изменениями
+         */
+        private ShardedMap<V> with(Map<String, V> changes) {
+            if (changes.isEmpty()) {
+                return this;
+            }
+            List<Map<String, V>> nextShards = new ArrayList<>(shards);
+            boolean[] copied = new boolean[nextShards.size()];
+            int nextSize = size;
+            for (Map.Entry<String, V> change : changes.entrySet()) {
+                int shard = shardOf(change.getKey(), nextShards.size());
+                if (!copied[shard]) {
+                    nextShards.set(shard, new HashMap<>(nextShards.get(shard)));
+                    copied[shard] = true;
+                }
+                V previous = change.getValue() == null
+                        ? nextShards.get(shard).remove(change.getKey())
+                        : nextShards.get(shard).put(change.getKey(), change.getValue());
+                if (previous == null && change.getValue() != null) {
+                    nextSize++;
+                } else if (previous != null && change.getValue() == null) {
+                    nextSize--;
+                }
+            }
+
+            if (nextSize > nextShards.size() * 2 * SHARD_SIZE) {
+                Map<String, V> values = new HashMap<>(nextSize * 4 / 3 + 1);
+                for (Map<String, V> shard : nextShards) {
+                    values.putAll(shard);
+                }
+                return of(values);
+            }
+            return new ShardedMap<>(nextShards, nextSize);
+        }
+
+        private static int shardOf(String key, int count) {
+            int hash = key.hashCode();
+            return (hash ^ (hash >>> 16)) & (count - 1);
+        }
+    }
+}
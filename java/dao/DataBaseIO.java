@@ -1,9 +1,21 @@
 package dao;
 
+import domain.Hotel;
+import domain.User;
+
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Этот класс содержит в себе методы для чтения и записи данных в базу данных(файлы).
+ * Данные хранятся в двоичном формате BinaryCodec.
+ * Файлы в старом формате (Java serialization) читаются, но при записи всегда используется BinaryCodec;
+ * для перевода файлов в новый формат есть утилита tools.ConvertDataBase.
  */
 public class DataBaseIO {
 
@@ -19,12 +31,106 @@ public class DataBaseIO {
      * @throws ClassNotFoundException если файл не был найден
      */
     public static Object readDB(String filePath) throws IOException, ClassNotFoundException {
-        FileInputStream fisU = new FileInputStream(filePath);
-        ObjectInputStream oinU = new ObjectInputStream(fisU);
-        Object answer = oinU.readObject();
-        fisU.close();
-        oinU.close();
-        return answer;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (isLegacyFormat(in)) {
+                return new ObjectInputStream(in).readObject();
+            }
+            return BinaryCodec.read(in);
+        }
+    }
+
+    /**
+     * Метод считывает список отелей из базы данных. Каждый элемент списка проверяется приведением к Hotel,
+     * поэтому файл с другими данными не попадет в список отелей.
+     *
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @return List<Hotel> список отелей из базы данных
+     * @throws IOException            когда произошли ошибки/прервались I/O operations или в файле записан не список
+     * @throws ClassNotFoundException если класс обьекта не найден
+     */
+    public static List<Hotel> readHotels(String filePath) throws IOException, ClassNotFoundException {
+        Object object = readDB(filePath);
+        if (!(object instanceof List)) {
+            throw new StreamCorruptedException("Not a list of hotels: " + filePath);
+        }
+        List<Hotel> hotelList = new ArrayList<>(((List<?>) object).size());
+        for (Object element : (List<?>) object) {
+            hotelList.add((Hotel) element);
+        }
+        return hotelList;
+    }
+
+    /**
+     * Метод считывает список пользователей из базы данных. Каждый элемент списка проверяется приведением к User,
+     * поэтому файл с другими данными не попадет в список пользователей.
+     *
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @return List<User> список пользователей из базы данных
+     * @throws IOException            когда произошли ошибки/прервались I/O operations или в файле записан не список
+     * @throws ClassNotFoundException если класс обьекта не найден
+     */
+    public static List<User> readUsers(String filePath) throws IOException, ClassNotFoundException {
+        Object object = readDB(filePath);
+        if (!(object instanceof List)) {
+            throw new StreamCorruptedException("Not a list of users: " + filePath);
+        }
+        List<User> userList = new ArrayList<>(((List<?>) object).size());
+        for (Object element : (List<?>) object) {
+            userList.add((User) element);
+        }
+        return userList;
+    }
+
+    /**
+     * Метод считывает данные из базы данных в старом формате (Java serialization).
+     *
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @return Object обьект из базы данных
+     * @throws IOException            когда произошли ошибки/прервались I/O operations
+     * @throws ClassNotFoundException если класс обьекта не найден
+     */
+    public static Object readLegacyDB(String filePath) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Проверяет, записан ли файл в старом формате (Java serialization).
+     *
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @return <tt>true</tt> если файл записан в старом формате
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static boolean isLegacyDB(String filePath) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(filePath))) {
+            return isLegacyFormat(in);
+        }
+    }
+
+    /**
+     * Проверяет, записан ли файл в старом формате (Java serialization) или в более старой версии
+     * формата BinaryCodec. Брони из таких файлов получают номера при каждом чтении, поэтому
+     * хранилища переписывают такие файлы после чтения, чтобы номера броней не менялись.
+     *
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @return <tt>true</tt> если файл нужно переписать в текущей версии формата
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static boolean isOutdatedDB(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            return isLegacyFormat(in) || in.readInt() != BinaryCodec.MAGIC || in.readByte() < BinaryCodec.VERSION;
+        }
+    }
+
+    /**
+     * Проверяет, получены ли данные в более старой версии формата BinaryCodec (см. isOutdatedDB).
+     *
+     * @param bytes данные, записанные методом toBytes
+     * @return <tt>true</tt> если данные записаны в более старой версии формата
+     */
+    public static boolean isOutdated(byte[] bytes) {
+        return bytes.length < 5 || bytes[4] < BinaryCodec.VERSION;
     }
 
     /**
@@ -35,10 +141,95 @@ public class DataBaseIO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     public static void saveDB(Object object, String filePath) throws IOException {
-        FileOutputStream fosH = new FileOutputStream(filePath);
-        ObjectOutputStream oosH = new ObjectOutputStream(fosH);
-        oosH.writeObject(object);
-        oosH.flush();
-        oosH.close();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            BinaryCodec.write(out, object);
+        }
+    }
+
+    /**
+     * Метод записывает в базу данных уже сериализованные данные.
+     *
+     * @param bytes    данные, полученные методом toBytes
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static void saveBytes(byte[] bytes, String filePath) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(filePath)) {
+            fos.write(bytes);
+        }
+    }
+
+    /**
+     * Метод записывает данные в базу данных через временный файл,
+     * который затем атомарно переименовывается в файл базы данных.
+     * При сбое во время записи старый файл базы данных остается целым.
+     *
+     * @param object   обьект который будет записан в базу данных
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static void replaceDB(Object object, String filePath) throws IOException {
+        Path target = Paths.get(filePath);
+        Path temp = Paths.get(filePath + ".tmp");
+        saveDB(object, temp.toString());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Метод записывает в базу данных уже сериализованные данные через временный файл,
+     * который сбрасывается на диск и затем атомарно переименовывается в файл базы данных.
+     *
+     * @param bytes    данные, полученные методом toBytes
+     * @param filePath переменная указывающая на путь к файлу в файловой системе
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static void replaceBytes(byte[] bytes, String filePath) throws IOException {
+        Path target = Paths.get(filePath);
+        Path temp = Paths.get(filePath + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
+            fos.write(bytes);
+            fos.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Метод преобразует обьект в массив байт.
+     *
+     * @param object обьект который нужно преобразовать
+     * @return byte[] сериализованный обьект
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static byte[] toBytes(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryCodec.write(out, object);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Метод восстанавливает обьект из массива байт.
+     *
+     * @param bytes сериализованный обьект
+     * @return Object восстановленный обьект
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public static Object fromBytes(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return BinaryCodec.read(in);
+        }
+    }
+
+    /**
+     * Проверяет по первым байтам потока, записаны ли данные через ObjectOutputStream.
+     * Поток должен поддерживать mark/reset; позиция потока не изменяется.
+     */
+    private static boolean isLegacyFormat(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return ((first << 8) | second) == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF);
     }
 }
@@ -0,0 +1,194 @@
+package dao;
+
+import domain.Hotel;
+import domain.Room;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Класс имплементирующий интерфейс HotelStorage.
+ * Записывает только изменившиеся с прошлого сохранения данные: изменения, которые передает DAO,
+ * дописываются в журнал JournalHotelStorage как есть, поэтому запись одного изменения
+ * не зависит от размера базы данных. Журнал периодически сворачивается в снимок базы данных;
+ * при загрузке журнал применяется к снимку.
+ *
+ * Сохраненное состояние (отели и номера их комнат) обновляется по каждому записанному изменению.
+ * Полное сравнение списка отелей с сохраненным состоянием выполняется только в writeAll,
+ * когда изменения неизвестны (например, после отложенной записи): тогда записываются
+ * добавленные и удаленные отели и комнаты, а также отели и комнаты, отмеченные как измененные (isDirty),
+ * и несколько изменений одной комнаты записываются одной записью.
+ */
+
+public class DeltaHotelStorage implements HotelStorage {
+
+    private final JournalHotelStorage journal;
+    private final Map<String, Hotel> savedHotels = new HashMap<>();
+    private final Map<String, Set<Integer>> savedRooms = new HashMap<>();
+
+    /**
+     * @param snapshotPath путь к файлу снимка базы данных отелей
+     */
+    public DeltaHotelStorage(String snapshotPath) {
+        this.journal = new JournalHotelStorage(snapshotPath);
+    }
+
+    @Override
+    public synchronized List<Hotel> load() throws IOException, ClassNotFoundException {
+        List<Hotel> hotelList = journal.load();
+        savedHotels.clear();
+        savedRooms.clear();
+        for (Hotel hotel : hotelList) {
+            remember(hotel);
+        }
+        return hotelList;
+    }
+
+    /**
+     * Дописывает изменение в журнал и обновляет сохраненное состояние измененного отеля или комнаты.
+     */
+    @Override
+    public synchronized void write(CatalogChange change) throws IOException {
+        journal.write(change);
+        saved(change);
+    }
+
+    /**
+     * Дописывает изменения пакета в журнал (JournalHotelStorage.writeBatch сбрасывает буфер один раз).
+     */
+    @Override
+    public synchronized void writeBatch(List<CatalogChange> changes) throws IOException {
+        journal.writeBatch(changes);
+        for (CatalogChange change : changes) {
+            saved(change);
+        }
+    }
+
+    /**
+     * Записывает изменения, накопленные с прошлого сохранения, сравнивая весь список отелей
+     * с сохраненным состоянием. Полный снимок базы данных записывается при сворачивании журнала.
+     */
+    @Override
+    public synchronized void writeAll(List<Hotel> hotelList) throws IOException {
+        journal.writeBatch(delta(hotelList));
+    }
+
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return journal.whenPersisted();
+    }
+
+    /**
+     * Сравнивает список отелей с сохраненным состоянием и строит список изменений.
+     * Сохраненное состояние и отметки об изменениях обновляются.
+     */
+    private List<CatalogChange> delta(List<Hotel> hotelList) {
+        List<CatalogChange> changes = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+
+        for (Hotel hotel : hotelList) {
+            String cityRegister = hotel.getCityRegister();
+            present.add(cityRegister);
+
+            if (savedHotels.get(cityRegister) != hotel) {
+                changes.add(CatalogChange.hotelAdded(hotel));
+                remember(hotel);
+                continue;
+            }
+
+            if (hotel.isDirty()) {
+                changes.add(CatalogChange.hotelChanged(hotel));
+                hotel.markClean();
+            }
+
+            Set<Integer> rooms = savedRooms.get(cityRegister);
+            Set<Integer> currentRooms = new HashSet<>();
+            for (Room room : hotel.getRoomList()) {
+                currentRooms.add(room.getRoomNumber());
+                if (!rooms.contains(room.getRoomNumber())) {
+                    changes.add(CatalogChange.roomAdded(hotel, room));
+                } else if (room.isDirty()) {
+                    changes.add(CatalogChange.roomChanged(hotel, room));
+                }
+                room.markClean();
+            }
+            for (Integer roomNumber : rooms) {
+                if (!currentRooms.contains(roomNumber)) {
+                    changes.add(new CatalogChange(CatalogChange.Type.DELETE_ROOM, cityRegister,
+                            null, null, roomNumber, null, null));
+                }
+            }
+            savedRooms.put(cityRegister, currentRooms);
+        }
+
+        Iterator<String> saved = savedHotels.keySet().iterator();
+        while (saved.hasNext()) {
+            String cityRegister = saved.next();
+            if (!present.contains(cityRegister)) {
+                changes.add(new CatalogChange(CatalogChange.Type.DELETE_HOTEL, cityRegister,
+                        null, null, 0, null, null));
+                saved.remove();
+                savedRooms.remove(cityRegister);
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Обновляет сохраненное состояние по записанному изменению.
+     */
+    private void saved(CatalogChange change) {
+        String cityRegister = change.getCityRegister();
+        switch (change.getType()) {
+            case ADD_HOTEL:
+                remember(change.getHotel());
+                break;
+            case CHANGE_HOTEL: {
+                Hotel hotel = savedHotels.get(cityRegister);
+                if (hotel != null) {
+                    hotel.markClean();
+                }
+                break;
+            }
+            case DELETE_HOTEL:
+                savedHotels.remove(cityRegister);
+                savedRooms.remove(cityRegister);
+                break;
+            case ADD_ROOM:
+            case CHANGE_ROOM: {
+                Set<Integer> rooms = savedRooms.get(cityRegister);
+                if (rooms != null) {
+                    rooms.add(change.getRoomNumber());
+                }
+                change.getRoom().markClean();
+                break;
+            }
+            case DELETE_ROOM: {
+                Set<Integer> rooms = savedRooms.get(cityRegister);
+                if (rooms != null) {
+                    rooms.remove(change.getRoomNumber());
+                }
+                break;
+            }
+        }
+    }
+
+    private void remember(Hotel hotel) {
+        Set<Integer> rooms = new HashSet<>();
+        for (Room room : hotel.getRoomList()) {
+            rooms.add(room.getRoomNumber());
+            room.markClean();
+        }
+        hotel.markClean();
+        savedHotels.put(hotel.getCityRegister(), hotel);
+        savedRooms.put(hotel.getCityRegister(), rooms);
+    }
+}
@@ -0,0 +1,184 @@
+package dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Класс объединяет запросы на запись базы данных в один вызов записи в файл (group commit).
+ * Все изменения, пришедшие в течение заданного окна времени или до набора заданного
+ * количества изменений, сохраняются одной записью.
+ * О том, что изменение записано в файл, вызывающий узнает через возвращаемый CompletableFuture.
+ *
+ * Режим включается системным свойством 'booking.groupCommit.window' (окно в миллисекундах),
+ * размер пакета задается свойством 'booking.groupCommit.batch'.
+ */
+
+public class GroupCommitWriter {
+
+    public static final String WINDOW_PROPERTY = "booking.groupCommit.window";
+    public static final String BATCH_PROPERTY = "booking.groupCommit.batch";
+    private static final int DEFAULT_BATCH = 100;
+
+    private final String filePath;
+    private final Supplier<?> state;
+    private final Object stateLock;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "group-commit-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    private ScheduledFuture<?> scheduled;
+    /**
+     * Номер последнего сериализованного снимка (под stateLock) и последнего записанного (под writeLock).
+     */
+    private long encodedVersion;
+    private long writtenVersion;
+
+    /**
+     * Создает writer с настройками из системных свойств.
+     *
+     * @param filePath  путь к файлу базы данных
+     * @param state     источник данных, которые нужно записать
+     * @param stateLock монитор, под которым изменяются данные
+     */
+    public GroupCommitWriter(String filePath, Supplier<?> state, Object stateLock) {
+        this(filePath, state, stateLock, Long.getLong(WINDOW_PROPERTY, 0),
+                Integer.getInteger(BATCH_PROPERTY, DEFAULT_BATCH));
+    }
+
+    /**
+     * @param filePath     путь к файлу базы данных
+     * @param state        источник данных, которые нужно записать
+     * @param stateLock    монитор, под которым изменяются данные
+     * @param windowMillis максимальное время ожидания записи в миллисекундах
+     * @param maxBatch     максимальное количество изменений в одной записи
+     */
+    public GroupCommitWriter(String filePath, Supplier<?> state, Object stateLock, long windowMillis, int maxBatch) {
+        this.filePath = filePath;
+        this.state = state;
+        this.stateLock = stateLock;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    /**
+     * Проверяет, включен ли режим group commit системными свойствами.
+     *
+     * @return <tt>true</tt> если окно group commit задано
+     */
+    public static boolean isEnabled() {
+        return Long.getLong(WINDOW_PROPERTY, 0) > 0;
+    }
+
+    /**
+     * Регистрирует изменение, которое нужно записать в файл.
+     *
+     * @return CompletableFuture, который завершится после записи изменения в файл
+     */
+    public synchronized CompletableFuture<Void> submit() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pending.add(future);
+        lastWrite = future;
+
+        if (pending.size() >= maxBatch) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            scheduled = executor.schedule(this::writeBatch, 0, TimeUnit.MILLISECONDS);
+        } else if (scheduled == null) {
+            scheduled = executor.schedule(this::writeBatch, windowMillis, TimeUnit.MILLISECONDS);
+        }
+
+        return future;
+    }
+
+    /**
+     * Возвращает CompletableFuture последнего зарегистрированного изменения.
+     * Так как пакеты записываются по порядку, его завершение означает, что записаны все изменения.
+     *
+     * @return CompletableFuture последнего изменения
+     */
+    public synchronized CompletableFuture<Void> lastWrite() {
+        return lastWrite;
+    }
+
+    /**
+     * Немедленно записывает данные в файл и завершает все ожидающие изменения.
+     *
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public void flush() throws IOException {
+        List<CompletableFuture<Void>> batch = takePending();
+        write(batch);
+    }
+
+    private void writeBatch() {
+        List<CompletableFuture<Void>> batch = takePending();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            write(batch);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized List<CompletableFuture<Void>> takePending() {
+        List<CompletableFuture<Void>> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Сериализует данные под stateLock и записывает их в файл под writeLock. Блокировки не вложены:
+     * flush может вызываться под stateLock (например, DAO при выключении отложенной записи),
+     * пока поток записи пишет файл. Каждый снимок получает номер под stateLock; снимок, который старше
+     * уже записанного, не записывается - записанный снимок содержит все его изменения.
+     */
+    private void write(List<CompletableFuture<Void>> batch) throws IOException {
+        try {
+            byte[] bytes;
+            long version;
+            synchronized (stateLock) {
+                bytes = DataBaseIO.toBytes(state.get());
+                version = ++encodedVersion;
+            }
+            synchronized (writeLock) {
+                if (version > writtenVersion) {
+                    DataBaseIO.saveBytes(bytes, filePath);
+                    writtenVersion = version;
+                }
+            }
+        } catch (IOException e) {
+            batch.forEach(future -> future.completeExceptionally(e));
+            throw e;
+        }
+        batch.forEach(future -> future.complete(null));
+    }
+}
@@ -0,0 +1,502 @@
+package dao;
+
+import domain.AvailableRoom;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+import domain.UserBooking;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Список отелей, хранящийся в LinkedHashMap по cityRegister.
+ * Порядок отелей - порядок добавления, как у ArrayList, поэтому список можно
+ * использовать везде, где раньше использовался ArrayList отелей.
+ * Поиск, проверка наличия, добавление в конец и удаление отеля выполняются за O(1).
+ * Доступ по индексу использует массив, который строится заново после изменения списка.
+ * Отели с одинаковым cityRegister (равные по equals) в списке не повторяются.
+ *
+ * Кроме того, поддерживаются индекс отелей по городу без учета регистра и индекс по имени
+ * (HotelNameIndex: точный поиск, поиск по началу имени, нечеткий поиск).
+ * Индексы обновляются при добавлении и удалении отелей; если город или имя отеля изменились,
+ * нужно вызвать reindex (это делает DAO при изменении данных отеля).
+ * Индекс бронирований по логину пользователя и по номеру брони (UserBookingIndex) строится при первом поиске броней;
+ * о добавлении и удалении комнат и броней DAO сообщает методами indexRoom, unindexRoom,
+ * indexBooking и unindexBooking.
+ *
+ * Сам список не потокобезопасен. Для поиска без блокировок он публикует неизменяемые снимки
+ * (CatalogSnapshot) через volatile ссылку: каждое изменение отелей и комнат увеличивает номер версии
+ * списка, а publish, вызванный под той же блокировкой, что и изменения, строит новый снимок,
+ * если версия изменилась. Изменение цены или количества мест комнаты нужно сообщить методом reindexRoom.
+ * Бронирования версию не меняют.
+ */
+public class HotelCatalog extends AbstractList<Hotel> {
+
+    private final Map<String, Hotel> hotels = new LinkedHashMap<>();
+    private final Map<String, Map<String, Hotel>> cityIndex = new HashMap<>();
+    private final Map<String, String> indexedCity = new HashMap<>();
+    private final HotelNameIndex nameIndex = new HotelNameIndex();
+    private UserBookingIndex bookingIndex;
+    private Hotel[] order;
+    private long version;
+    private final Set<String> changedSinceSnapshot = new LinkedHashSet<>();
+    private final Set<String> removedSinceSnapshot = new HashSet<>();
+    private boolean reorderedSinceSnapshot;
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+    public HotelCatalog() {
+    }
+
+    /**
+     * @param hotelList отели, которые нужно поместить в список; из повторяющихся остается последний
+     */
+    public HotelCatalog(Collection<Hotel> hotelList) {
+        for (Hotel hotel : hotelList) {
+            put(hotel);
+        }
+    }
+
+    /**
+     * Ищет отель по номеру в регистре города.
+     *
+     * @param cityRegister номер здания в городском регистре
+     * @return Hotel найденный отель или null
+     */
+    public Hotel find(String cityRegister) {
+        return hotels.get(cityRegister);
+    }
+
+    /**
+     * Ищет отели в заданном городе без учета регистра.
+     * Время поиска зависит от количества найденных отелей, а не от размера списка.
+     *
+     * @param city город
+     * @return List<Hotel> отели в заданном городе в порядке добавления
+     */
+    public List<Hotel> findByCity(String city) {
+        Map<String, Hotel> found = cityIndex.get(normalize(city));
+        return found == null ? new ArrayList<>() : new ArrayList<>(found.values());
+    }
+
+    /**
+     * Ищет отели с заданным именем без учета регистра.
+     *
+     * @param name имя отеля
+     * @return List<Hotel> отели с заданным именем
+     */
+    public List<Hotel> findByName(String name) {
+        return nameIndex.exact(name);
+    }
+
+    /**
+     * Ищет отели, имя которых начинается с заданной строки (автодополнение).
+     *
+     * @param prefix начало имени отеля
+     * @param limit  максимальное количество отелей
+     * @return List<Hotel> отели в алфавитном порядке имен
+     */
+    public List<Hotel> findByNamePrefix(String prefix, int limit) {
+        return nameIndex.prefix(prefix, limit);
+    }
+
+    /**
+     * Ищет отели с похожими именами (например, "Hyat" находит "Hayat").
+     *
+     * @param name  имя отеля, возможно с опечатками
+     * @param limit максимальное количество отелей
+     * @return List<Hotel> отели от самого похожего имени к наименее похожему
+     */
+    public List<Hotel> findByNameFuzzy(String name, int limit) {
+        return nameIndex.fuzzy(name, limit);
+    }
+
+    /**
+     * Ищет свободные на заданные даты комнаты, подходящие по количеству мест и цене.
+     * Отели отбираются по индексу городов, комнаты отелей просматриваются по списку комнат, поэтому
+     * комнаты загружаются только у отелей нужного города. Календарь бронирований проверяется только
+     * для комнат, подходящих по цене и количеству мест. Поиск без блокировок по снимку списка
+     * с индексами комнат больших отелей - CatalogSnapshot.findFreeRooms.
+     *
+     * @param city     город или null (пустая строка), если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями в порядке отелей в списке
+     */
+    public List<AvailableRoom> findFreeRooms(String city, Date fromDate, Date toDate, int persons, double maxPrice) {
+        Collection<Hotel> candidates;
+        if (city == null || city.isEmpty()) {
+            candidates = hotels.values();
+        } else {
+            Map<String, Hotel> found = cityIndex.get(normalize(city));
+            candidates = found == null ? Collections.emptyList() : found.values();
+        }
+
+        List<AvailableRoom> result = new ArrayList<>();
+        for (Hotel hotel : candidates) {
+            for (Room room : hotel.getRoomList()) {
+                if (room.getPersons() >= persons && room.getPrice() <= maxPrice && room.isFree(fromDate, toDate)) {
+                    result.add(new AvailableRoom(hotel, room));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ищет брони пользователя по индексу бронирований.
+     * Индекс строится при первом вызове; после этого время поиска зависит только
+     * от количества броней пользователя, а не от размера списка отелей.
+     *
+     * @param userLogin логин пользователя
+     * @return List<UserBooking> брони пользователя с отелями и комнатами в порядке даты заезда
+     */
+    public List<UserBooking> findBookingsByUser(String userLogin) {
+        return bookingIndex().find(userLogin);
+    }
+
+    /**
+     * Ищет бронь по номеру в индексе бронирований (индекс строится при первом вызове).
+     *
+     * @param bookingId номер брони
+     * @return Optional<UserBooking> бронь вместе с отелем и комнатой
+     */
+    public Optional<UserBooking> findBooking(long bookingId) {
+        return Optional.ofNullable(bookingIndex().find(bookingId));
+    }
+
+    /**
+     * Последний опубликованный снимок списка. Метод можно вызывать из любого потока без блокировок.
+     *
+     * @return CatalogSnapshot снимок на момент последнего вызова publish
+     */
+    CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Публикует снимок текущего состояния списка, если список изменился после предыдущего снимка.
+     * Вызывается под той же блокировкой, что и изменения списка. Новый снимок строится из предыдущего
+     * по отелям, которые с тех пор добавлялись, удалялись или менялись (changedSinceSnapshot).
+     *
+     * @return CatalogSnapshot опубликованный снимок
+     */
+    CatalogSnapshot publish() {
+        CatalogSnapshot current = snapshot;
+        if (current.getVersion() != version) {
+            current = current.next(hotels, changedSinceSnapshot, removedSinceSnapshot, reorderedSinceSnapshot, version);
+            changedSinceSnapshot.clear();
+            removedSinceSnapshot.clear();
+            reorderedSinceSnapshot = false;
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private UserBookingIndex bookingIndex() {
+        if (bookingIndex == null) {
+            bookingIndex = new UserBookingIndex(hotels.values());
+        }
+        return bookingIndex;
+    }
+
+    /**
+     * Обновляет индекс бронирований после добавления комнаты в отель из списка.
+     *
+     * @param hotel отель из списка
+     * @param room  добавленная комната
+     */
+    public void indexRoom(Hotel hotel, Room room) {
+        hotelChanged(hotel);
+        if (bookingIndex != null) {
+            bookingIndex.addRoom(hotel, room);
+        }
+    }
+
+    /**
+     * Обновляет индекс бронирований после удаления комнаты из отеля из списка.
+     *
+     * @param hotel отель из списка
+     * @param room  удаленная комната
+     */
+    public void unindexRoom(Hotel hotel, Room room) {
+        hotelChanged(hotel);
+        if (bookingIndex != null) {
+            bookingIndex.removeRoom(hotel, room);
+        }
+    }
+
+    /**
+     * Сообщает списку, что цена или количество мест комнаты отеля изменились.
+     *
+     * @param hotel отель из списка
+     * @param room  измененная комната
+     */
+    public void reindexRoom(Hotel hotel, Room room) {
+        hotelChanged(hotel);
+    }
+
+    /**
+     * Обновляет индекс бронирований после бронирования комнаты.
+     *
+     * @param hotel       отель из списка
+     * @param room        забронированная комната
+     * @param bookingInfo добавленная бронь
+     */
+    public void indexBooking(Hotel hotel, Room room, BookingInfo bookingInfo) {
+        if (bookingIndex != null) {
+            bookingIndex.add(hotel, room, bookingInfo);
+        }
+    }
+
+    /**
+     * Обновляет индекс бронирований после отмены брони.
+     *
+     * @param hotel       отель из списка
+     * @param room        комната, с которой снята бронь
+     * @param bookingInfo снятая бронь
+     */
+    public void unindexBooking(Hotel hotel, Room room, BookingInfo bookingInfo) {
+        if (bookingIndex != null) {
+            bookingIndex.remove(hotel, room, bookingInfo);
+        }
+    }
+
+    /**
+     * Обновляет индексы после изменения города или имени отеля.
+     *
+     * @param hotel отель из списка, город или имя которого могли измениться
+     */
+    public void reindex(Hotel hotel) {
+        if (hotels.get(hotel.getCityRegister()) != hotel) {
+            return;
+        }
+        hotelChanged(hotel);
+        if (!normalize(hotel.getCity()).equals(indexedCity.get(hotel.getCityRegister()))) {
+            unindexCity(hotel.getCityRegister());
+            indexCity(hotel);
+        }
+        nameIndex.reindex(hotel);
+    }
+
+    @Override
+    public Hotel get(int index) {
+        if (order == null) {
+            order = hotels.values().toArray(new Hotel[0]);
+        }
+        return order[index];
+    }
+
+    @Override
+    public int size() {
+        return hotels.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Hotel && o.equals(hotels.get(((Hotel) o).getCityRegister()));
+    }
+
+    @Override
+    public boolean add(Hotel hotel) {
+        if (hotels.containsKey(hotel.getCityRegister())) {
+            throw new IllegalArgumentException("Hotel " + hotel.getCityRegister() + " is already in the catalog");
+        }
+        put(hotel);
+        changed();
+        return true;
+    }
+
+    /**
+     * Вставка в середину списка перестраивает LinkedHashMap и выполняется за O(n).
+     */
+    @Override
+    public void add(int index, Hotel hotel) {
+        if (index == size()) {
+            add(hotel);
+            return;
+        }
+        if (hotels.containsKey(hotel.getCityRegister())) {
+            throw new IllegalArgumentException("Hotel " + hotel.getCityRegister() + " is already in the catalog");
+        }
+        Hotel[] previous = toArray(new Hotel[0]);
+        clearAll();
+        for (int i = 0; i < previous.length; i++) {
+            if (i == index) {
+                put(hotel);
+            }
+            put(previous[i]);
+        }
+        changed();
+    }
+
+    /**
+     * Замена отеля отелем с тем же cityRegister выполняется за O(1), с другим - за O(n).
+     */
+    @Override
+    public Hotel set(int index, Hotel hotel) {
+        Hotel previous = get(index);
+        if (previous.getCityRegister().equals(hotel.getCityRegister())) {
+            put(hotel);
+            changed();
+            return previous;
+        }
+        remove(index);
+        add(index, hotel);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        removeKey(((Hotel) o).getCityRegister());
+        changed();
+        return true;
+    }
+
+    @Override
+    public Hotel remove(int index) {
+        Hotel hotel = get(index);
+        removeKey(hotel.getCityRegister());
+        changed();
+        return hotel;
+    }
+
+    @Override
+    public void clear() {
+        clearAll();
+        changed();
+    }
+
+    @Override
+    public Iterator<Hotel> iterator() {
+        Iterator<Hotel> values = hotels.values().iterator();
+        return new Iterator<Hotel>() {
+            private Hotel current;
+
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public Hotel next() {
+                current = values.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                values.remove();
+                removed(current.getCityRegister());
+                unindex(current);
+                changed();
+            }
+        };
+    }
+
+    /**
+     * Новый отель попадает в конец списка, поэтому его cityRegister переносится в конец changedSinceSnapshot:
+     * отели, добавленные после снимка, идут там в порядке списка.
+     */
+    private void put(Hotel hotel) {
+        Hotel previous = hotels.put(hotel.getCityRegister(), hotel);
+        if (previous != null) {
+            unindex(previous);
+        } else {
+            changedSinceSnapshot.remove(hotel.getCityRegister());
+        }
+        changedSinceSnapshot.add(hotel.getCityRegister());
+        index(hotel);
+    }
+
+    private void removeKey(String cityRegister) {
+        removed(cityRegister);
+        unindex(hotels.remove(cityRegister));
+    }
+
+    private void removed(String cityRegister) {
+        changedSinceSnapshot.add(cityRegister);
+        removedSinceSnapshot.add(cityRegister);
+    }
+
+    private void clearAll() {
+        hotels.clear();
+        cityIndex.clear();
+        indexedCity.clear();
+        nameIndex.clear();
+        bookingIndex = null;
+        reorderedSinceSnapshot = true;
+        version++;
+    }
+
+    private void index(Hotel hotel) {
+        version++;
+        indexCity(hotel);
+        nameIndex.add(hotel);
+        if (bookingIndex != null) {
+            bookingIndex.addHotel(hotel);
+        }
+    }
+
+    private void unindex(Hotel hotel) {
+        version++;
+        unindexCity(hotel.getCityRegister());
+        nameIndex.remove(hotel.getCityRegister());
+        if (bookingIndex != null) {
+            bookingIndex.removeHotel(hotel);
+        }
+    }
+
+    private void indexCity(Hotel hotel) {
+        String city = normalize(hotel.getCity());
+        indexedCity.put(hotel.getCityRegister(), city);
+        cityIndex.computeIfAbsent(city, key -> new LinkedHashMap<>()).put(hotel.getCityRegister(), hotel);
+    }
+
+    private void unindexCity(String cityRegister) {
+        String city = indexedCity.remove(cityRegister);
+        if (city == null) {
+            return;
+        }
+        Map<String, Hotel> found = cityIndex.get(city);
+        found.remove(cityRegister);
+        if (found.isEmpty()) {
+            cityIndex.remove(city);
+        }
+    }
+
+    /**
+     * Отмечает, что данные отеля в следующем снимке нужно построить заново.
+     */
+    private void hotelChanged(Hotel hotel) {
+        version++;
+        changedSinceSnapshot.add(hotel.getCityRegister());
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private void changed() {
+        order = null;
+        modCount++;
+    }
+}
@@ -0,0 +1,358 @@
+package dao;
+
+import domain.Hotel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Индекс отелей по имени (без учета регистра) для точного поиска, поиска по началу имени
+ * и нечеткого поиска по триграммам.
+ *
+ * Каждому отелю назначается номер (slot). Для каждого имени и каждой триграммы имени
+ * хранится отсортированный массив номеров отелей (Postings).
+ * Поиск по началу имени - диапазон TreeMap имен.
+ * Нечеткий поиск сравнивает наборы триграмм запроса и имени (коэффициент Дайса):
+ * кандидаты набираются из самых редких триграмм запроса (не более CANDIDATE_BUDGET номеров,
+ * но хотя бы из одной триграммы). Сходство кандидатов сначала оценивается по 64-битным отпечаткам
+ * наборов триграмм, которые лежат в одном массиве и не требуют чтения имен; затем для лучших
+ * по оценке кандидатов общие с запросом триграммы точно считаются по имени
+ * (GramSet - маленькая хеш-таблица триграмм запроса).
+ * Так время запроса не зависит от количества отелей с частыми триграммами вроде "hot", "tel".
+ *
+ * Класс не потокобезопасен; HotelCatalog вызывает его под монитором DAO.
+ */
+class HotelNameIndex {
+
+    private static final double MIN_SIMILARITY = 0.3;
+    private static final int CANDIDATE_BUDGET = 5_000;
+    private static final int VERIFY_FACTOR = 4;
+    private static final int VERIFY_MIN = 32;
+
+    private final Map<String, Integer> slotOf = new HashMap<>();
+    private final TreeMap<String, Postings> names = new TreeMap<>();
+    private final Map<String, Postings> grams = new HashMap<>();
+    private Hotel[] hotels = new Hotel[16];
+    private String[] indexedNames = new String[16];
+    private String[] paddedNames = new String[16];
+    private long[] signatures = new long[32];
+    private boolean[] seen = new boolean[16];
+    private final Postings freeSlots = new Postings(null);
+    private int slotCount;
+
+    /**
+     * Добавляет отель в индекс (или заменяет отель с тем же cityRegister).
+     */
+    void add(Hotel hotel) {
+        remove(hotel.getCityRegister());
+        int slot = freeSlots.size > 0 ? freeSlots.ids[--freeSlots.size] : newSlot();
+        String name = HotelCatalog.normalize(hotel.getName());
+        Set<String> nameGrams = trigrams(name);
+
+        slotOf.put(hotel.getCityRegister(), slot);
+        hotels[slot] = hotel;
+        indexedNames[slot] = name;
+        paddedNames[slot] = pad(name);
+        signatures[2 * slot] = fingerprint(nameGrams);
+        signatures[2 * slot + 1] = nameGrams.size();
+        names.computeIfAbsent(name, Postings::new).add(slot);
+        for (String gram : nameGrams) {
+            grams.computeIfAbsent(gram, Postings::new).add(slot);
+        }
+    }
+
+    /**
+     * Удаляет отель из индекса.
+     */
+    void remove(String cityRegister) {
+        Integer slot = slotOf.remove(cityRegister);
+        if (slot == null) {
+            return;
+        }
+        String name = indexedNames[slot];
+        removeFrom(names, name, slot);
+        for (String gram : trigrams(name)) {
+            removeFrom(grams, gram, slot);
+        }
+        hotels[slot] = null;
+        indexedNames[slot] = null;
+        paddedNames[slot] = null;
+        freeSlots.ids = ensure(freeSlots.ids, freeSlots.size + 1);
+        freeSlots.ids[freeSlots.size++] = slot;
+    }
+
+    /**
+     * Переиндексирует отель, если его имя изменилось.
+     */
+    void reindex(Hotel hotel) {
+        Integer slot = slotOf.get(hotel.getCityRegister());
+        if (slot == null || !HotelCatalog.normalize(hotel.getName()).equals(indexedNames[slot])) {
+            add(hotel);
+        }
+    }
+
+    void clear() {
+        slotOf.clear();
+        names.clear();
+        grams.clear();
+        Arrays.fill(hotels, null);
+        Arrays.fill(indexedNames, null);
+        Arrays.fill(paddedNames, null);
+        freeSlots.size = 0;
+        slotCount = 0;
+    }
+
+    /**
+     * Отели с точно таким же именем без учета регистра.
+     */
+    List<Hotel> exact(String name) {
+        Postings found = names.get(HotelCatalog.normalize(name));
+        List<Hotel> result = new ArrayList<>();
+        if (found != null) {
+            for (int i = 0; i < found.size; i++) {
+                result.add(hotels[found.ids[i]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Отели, имя которых начинается с заданной строки, в алфавитном порядке имен.
+     */
+    List<Hotel> prefix(String prefix, int limit) {
+        String from = HotelCatalog.normalize(prefix);
+        SortedMap<String, Postings> range = names.subMap(from, from + Character.MAX_VALUE);
+        List<Hotel> result = new ArrayList<>();
+        for (Postings found : range.values()) {
+            for (int i = 0; i < found.size && result.size() < limit; i++) {
+                result.add(hotels[found.ids[i]]);
+            }
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Отели с похожими именами, от самого похожего к наименее похожему.
+     */
+    List<Hotel> fuzzy(String query, int limit) {
+        String name = HotelCatalog.normalize(query);
+        Set<String> nameGrams = trigrams(name);
+        GramSet queryGrams = new GramSet(pad(name));
+        List<Postings> postings = new ArrayList<>();
+        for (String gram : nameGrams) {
+            Postings found = grams.get(gram);
+            if (found != null) {
+                postings.add(found);
+            }
+        }
+        postings.sort(Comparator.comparingInt(found -> found.size));
+
+        Postings candidates = new Postings(null);
+        int scanned = 0;
+        for (int p = 0; p < postings.size() && (p == 0 || scanned + postings.get(p).size <= CANDIDATE_BUDGET); p++) {
+            Postings found = postings.get(p);
+            scanned += found.size;
+            for (int i = 0; i < found.size; i++) {
+                int slot = found.ids[i];
+                if (!seen[slot]) {
+                    seen[slot] = true;
+                    candidates.ids = ensure(candidates.ids, candidates.size + 1);
+                    candidates.ids[candidates.size++] = slot;
+                }
+            }
+        }
+
+        long queryFingerprint = fingerprint(nameGrams);
+        PriorityQueue<Match> estimated = new PriorityQueue<>(Comparator.comparingDouble(match -> match.similarity));
+        int verify = Math.max(limit * VERIFY_FACTOR, VERIFY_MIN);
+        for (int i = 0; i < candidates.size; i++) {
+            int slot = candidates.ids[i];
+            seen[slot] = false;
+            double similarity = 2.0 * Long.bitCount(signatures[2 * slot] & queryFingerprint)
+                    / (queryGrams.size + signatures[2 * slot + 1]);
+            if (estimated.size() < verify || similarity > estimated.peek().similarity) {
+                estimated.add(new Match(slot, similarity));
+                if (estimated.size() > verify) {
+                    estimated.poll();
+                }
+            }
+        }
+
+        PriorityQueue<Match> best = new PriorityQueue<>(Comparator.comparingDouble(match -> match.similarity));
+        for (Match match : estimated) {
+            int slot = match.slot;
+            double similarity = 2.0 * queryGrams.shared(paddedNames[slot]) / (queryGrams.size + signatures[2 * slot + 1]);
+            if (similarity >= MIN_SIMILARITY) {
+                best.add(new Match(slot, similarity));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+
+        List<Hotel> result = new ArrayList<>();
+        while (!best.isEmpty()) {
+            result.add(0, hotels[best.poll().slot]);
+        }
+        return result;
+    }
+
+    private int newSlot() {
+        int slot = slotCount++;
+        if (slot == hotels.length) {
+            int length = hotels.length * 2;
+            hotels = Arrays.copyOf(hotels, length);
+            indexedNames = Arrays.copyOf(indexedNames, length);
+            paddedNames = Arrays.copyOf(paddedNames, length);
+            signatures = Arrays.copyOf(signatures, 2 * length);
+            seen = Arrays.copyOf(seen, length);
+        }
+        return slot;
+    }
+
+    private static void removeFrom(Map<String, Postings> map, String key, int slot) {
+        Postings found = map.get(key);
+        found.remove(slot);
+        if (found.size == 0) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Триграммы имени, дополненного пробелами в начале и в конце,
+     * чтобы начало и конец слова тоже учитывались.
+     */
+    private static Set<String> trigrams(String name) {
+        String padded = pad(name);
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * 64-битный отпечаток набора триграмм: каждая триграмма устанавливает один бит.
+     */
+    private static long fingerprint(Set<String> nameGrams) {
+        long fingerprint = 0;
+        for (String gram : nameGrams) {
+            fingerprint |= 1L << ((gram.hashCode() * 0x9E3779B9) >>> 26);
+        }
+        return fingerprint;
+    }
+
+    private static String pad(String name) {
+        return "  " + name + " ";
+    }
+
+    private static int[] ensure(int[] array, int length) {
+        return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+    }
+
+    /**
+     * Отсортированный массив номеров отелей с одной триграммой или одним именем (key).
+     */
+    private static final class Postings {
+        private final String key;
+        private int[] ids = new int[4];
+        private int size;
+
+        private Postings(String key) {
+            this.key = key;
+        }
+
+        private void add(int id) {
+            int position = size == 0 || ids[size - 1] < id ? size : -Arrays.binarySearch(ids, 0, size, id) - 1;
+            ids = ensure(ids, size + 1);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        private void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Триграммы запроса, упакованные в long, в хеш-таблице с открытой адресацией.
+     * Каждой триграмме назначается бит, поэтому общие триграммы имени считаются без повторов.
+     * Учитываются первые 64 различные триграммы запроса.
+     */
+    private static final class GramSet {
+        private static final long EMPTY = -1;
+
+        private final long[] codes;
+        private final int[] bits;
+        private int size;
+
+        private GramSet(String padded) {
+            int capacity = Integer.highestOneBit(Math.max(padded.length(), 4)) * 4;
+            codes = new long[capacity];
+            bits = new int[capacity];
+            Arrays.fill(codes, EMPTY);
+            for (int i = 0; i + 3 <= padded.length() && size < Long.SIZE; i++) {
+                long code = code(padded, i);
+                int position = position(code);
+                if (codes[position] == EMPTY) {
+                    codes[position] = code;
+                    bits[position] = size++;
+                }
+            }
+        }
+
+        /**
+         * Количество различных триграмм имени, которые есть в запросе.
+         */
+        private int shared(String padded) {
+            long found = 0;
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                int position = position(code(padded, i));
+                if (codes[position] != EMPTY) {
+                    found |= 1L << bits[position];
+                }
+            }
+            return Long.bitCount(found);
+        }
+
+        private int position(long code) {
+            int mask = codes.length - 1;
+            int position = (int) (code * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (codes[position] != EMPTY && codes[position] != code) {
+                position = (position + 1) & mask;
+            }
+            return position;
+        }
+
+        private static long code(String padded, int i) {
+            return ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+    }
+
+    private static final class Match {
+        private final int slot;
+        private final double similarity;
+
+        private Match(int slot, double similarity) {
+            this.slot = slot;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dao;
+
+import domain.Hotel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Интерфейс описывает способ хранения базы данных отелей в файловой системе.
+ */
+
+public interface HotelStorage {
+
+    /**
+     * Производит чтение базы данных отелей.
+     *
+     * @return List<Hotel> список отелей из базы данных
+     * @throws IOException            когда произошли ошибки/прервались I/O operations
+     * @throws ClassNotFoundException если база данных не найдена
+     */
+    List<Hotel> load() throws IOException, ClassNotFoundException;
+
+    /**
+     * Сохраняет одно изменение базы данных отелей.
+     *
+     * @param change изменение, которое нужно сохранить
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    void write(CatalogChange change) throws IOException;
+
+    /**
+     * Сохраняет несколько изменений, сделанных вместе (например, пакетное добавление отелей).
+     * По умолчанию изменения сохраняются по одному; хранилища, которые при каждом изменении
+     * переписывают весь файл или manifest, переопределяют метод и пишут один раз на пакет.
+     *
+     * @param changes изменения в порядке выполнения
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    default void writeBatch(List<CatalogChange> changes) throws IOException {
+        for (CatalogChange change : changes) {
+            write(change);
+        }
+    }
+
+    /**
+     * Производит запись всей базы данных отелей.
+     *
+     * @param hotelList список отелей, который нужно сохранить
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    void writeAll(List<Hotel> hotelList) throws IOException;
+
+    /**
+     * Возвращает CompletableFuture, который завершится, когда все сохраненные
+     * на данный момент изменения будут записаны в файл.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    CompletableFuture<Void> whenPersisted();
+
+}
@@ -0,0 +1,255 @@
+package dao;
+
+import domain.Hotel;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Класс имплементирующий интерфейс HotelStorage.
+ * Каждое изменение дописывается в конец журнала 'hotels.journal' небольшой записью.
+ * Когда журнал становится большим, он закрывается и в фоновом потоке
+ * сворачивается в новый снимок базы данных 'hotels'.
+ * При загрузке читается снимок, затем к нему применяются записи журнала.
+ *
+ * Формат записи журнала: длина (int), контрольная сумма CRC32 (int), CatalogChange в формате BinaryCodec.
+ */
+
+public class JournalHotelStorage implements HotelStorage {
+
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private final String snapshotPath;
+    private final File journalFile;
+    private final File sealedFile;
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hotels-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DataOutputStream journal;
+    private int journalRecords;
+    /**
+     * Прочитаны ли при загрузке снимок или записи журнала в старом формате.
+     */
+    private boolean outdated;
+
+    /**
+     * @param snapshotPath путь к файлу снимка базы данных отелей
+     */
+    public JournalHotelStorage(String snapshotPath) {
+        this.snapshotPath = snapshotPath;
+        this.journalFile = new File(snapshotPath + ".journal");
+        this.sealedFile = new File(snapshotPath + ".journal.sealed");
+    }
+
+    /**
+     * Читает снимок базы данных и применяет к нему записи журнала.
+     * Недописанная при сбое последняя запись отбрасывается.
+     * Если снимок или записи журнала записаны в старом формате, база данных сразу записывается
+     * новым снимком (writeAll), чтобы брони, получившие номера при чтении, сохранили их после перезапуска.
+     */
+    @Override
+    public synchronized List<Hotel> load() throws IOException, ClassNotFoundException {
+        Map<String, Hotel> hotels = byCityRegister(readSnapshot());
+        outdated = new File(snapshotPath).exists() && DataBaseIO.isOutdatedDB(snapshotPath);
+
+        replay(sealedFile, hotels);
+        long validLength = replay(journalFile, hotels);
+        List<Hotel> hotelList = new ArrayList<>(hotels.values());
+
+        if (outdated) {
+            writeAll(hotelList);
+            return hotelList;
+        }
+
+        if (journalFile.exists() && journalFile.length() > validLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+
+        if (sealedFile.exists() && compacting.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+
+        return hotelList;
+    }
+
+    /**
+     * Дописывает изменение в журнал.
+     */
+    @Override
+    public synchronized void write(CatalogChange change) throws IOException {
+        append(change);
+        journal.flush();
+
+        if (journalRecords >= COMPACTION_THRESHOLD) {
+            sealJournal();
+        }
+    }
+
+    /**
+     * Дописывает изменения пакета в журнал и сбрасывает буфер один раз.
+     */
+    @Override
+    public synchronized void writeBatch(List<CatalogChange> changes) throws IOException {
+        for (CatalogChange change : changes) {
+            append(change);
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+
+        if (journalRecords >= COMPACTION_THRESHOLD) {
+            sealJournal();
+        }
+    }
+
+    private void append(CatalogChange change) throws IOException {
+        byte[] data = DataBaseIO.toBytes(change);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        if (journal == null) {
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+        }
+        journal.writeInt(data.length);
+        journal.writeInt((int) crc.getValue());
+        journal.write(data);
+        journalRecords++;
+    }
+
+    /**
+     * Записывает полный снимок базы данных и очищает журнал.
+     */
+    @Override
+    public synchronized void writeAll(List<Hotel> hotelList) throws IOException {
+        synchronized (snapshotLock) {
+            DataBaseIO.replaceDB(hotelList, snapshotPath);
+            closeJournal();
+            Files.deleteIfExists(journalFile.toPath());
+            Files.deleteIfExists(sealedFile.toPath());
+            journalRecords = 0;
+        }
+    }
+
+    /**
+     * Записи журнала дописываются синхронно, поэтому все изменения уже записаны.
+     */
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void sealJournal() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        closeJournal();
+        Files.move(journalFile.toPath(), sealedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        journalRecords = 0;
+        compactor.execute(this::compact);
+    }
+
+    private void compact() {
+        try {
+            synchronized (snapshotLock) {
+                if (!sealedFile.exists()) {
+                    return;
+                }
+                Map<String, Hotel> hotels = byCityRegister(readSnapshot());
+                replay(sealedFile, hotels);
+                DataBaseIO.replaceDB(new ArrayList<>(hotels.values()), snapshotPath);
+                Files.deleteIfExists(sealedFile.toPath());
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private List<Hotel> readSnapshot() throws IOException, ClassNotFoundException {
+        if (!new File(snapshotPath).exists()) {
+            return new ArrayList<>();
+        }
+        return DataBaseIO.readHotels(snapshotPath);
+    }
+
+    /**
+     * Применяет к отелям все целые записи файла журнала.
+     *
+     * @return long длина прочитанной целой части журнала в байтах
+     */
+    private long replay(File file, Map<String, Hotel> hotels) throws IOException, ClassNotFoundException {
+        long validLength = 0;
+        if (!file.exists()) {
+            return validLength;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] data;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0 || length > file.length()) {
+                        break;
+                    }
+                    data = new byte[length];
+                    in.readFully(data);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ((CatalogChange) DataBaseIO.fromBytes(data)).applyTo(hotels);
+                outdated |= DataBaseIO.isOutdated(data);
+                validLength += 8 + data.length;
+                if (file.equals(journalFile)) {
+                    journalRecords++;
+                }
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Отели снимка по cityRegister в порядке списка; строится один раз на чтение журнала,
+     * чтобы каждая запись находила свой отель без просмотра списка.
+     */
+    private static Map<String, Hotel> byCityRegister(List<Hotel> hotelList) {
+        Map<String, Hotel> hotels = new LinkedHashMap<>();
+        for (Hotel hotel : hotelList) {
+            hotels.put(hotel.getCityRegister(), hotel);
+        }
+        return hotels;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+}
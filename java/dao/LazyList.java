@@ -0,0 +1,107 @@
+package dao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Список, элементы которого загружаются из базы данных при первом обращении к ним.
+ * До загрузки размер списка берется из заранее известного значения,
+ * поэтому вывод количества элементов не требует чтения базы данных.
+ *
+ * @param <T> тип элементов списка
+ */
+public class LazyList<T> extends AbstractList<T> {
+
+    /**
+     * Загрузчик элементов списка.
+     *
+     * @param <T> тип элементов списка
+     */
+    public interface Loader<T> {
+        List<T> load() throws IOException;
+    }
+
+    private final Loader<T> loader;
+    private final int knownSize;
+    private final Object lock;
+    private List<T> list;
+
+    /**
+     * @param loader    загрузчик элементов
+     * @param knownSize количество элементов до загрузки
+     */
+    public LazyList(Loader<T> loader, int knownSize) {
+        this.loader = loader;
+        this.knownSize = knownSize;
+        this.lock = this;
+    }
+
+    /**
+     * @param loader    загрузчик элементов
+     * @param knownSize количество элементов до загрузки
+     * @param lock      монитор, под которым загружаются элементы (например, DAO, которому принадлежит список)
+     */
+    public LazyList(Loader<T> loader, int knownSize, Object lock) {
+        this.loader = loader;
+        this.knownSize = knownSize;
+        this.lock = lock;
+    }
+
+    /**
+     * Проверяет, загружены ли элементы списка.
+     *
+     * @return <tt>true</tt> если элементы уже загружены
+     */
+    public boolean isLoaded() {
+        synchronized (lock) {
+            return list != null;
+        }
+    }
+
+    /**
+     * Возвращает загруженные элементы, при необходимости загружая их.
+     *
+     * @return List<T> загруженный список
+     */
+    public List<T> loaded() {
+        synchronized (lock) {
+            if (list == null) {
+                try {
+                    list = loader.load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return list;
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        return loaded().get(index);
+    }
+
+    @Override
+    public int size() {
+        synchronized (lock) {
+            return list != null ? list.size() : knownSize;
+        }
+    }
+
+    @Override
+    public T set(int index, T element) {
+        return loaded().set(index, element);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        loaded().add(index, element);
+    }
+
+    @Override
+    public T remove(int index) {
+        return loaded().remove(index);
+    }
+}
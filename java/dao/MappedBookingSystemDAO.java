@@ -0,0 +1,946 @@
+package dao;
+
+import domain.AvailableRoom;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.IdGenerator;
+import domain.Room;
+import domain.UserBooking;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Класс имплементирующий интерфейс BookingSystemDAO.
+ * Хранит отели, комнаты и бронирования в записях фиксированной длины
+ * в файлах 'hotels.hdb', 'hotels.rdb' и 'hotels.bdb', отображенных в память (FileChannel.map).
+ * Изменение комнаты или добавление бронирования меняет только несколько байт соответствующих записей,
+ * файл базы данных целиком не перезаписывается.
+ *
+ * При открытии читаются только заголовки файлов. Отели читаются из отображения при первом обращении,
+ * комнаты отеля - при первом обращении к списку комнат этого отеля.
+ * Если файлов еще нет, а есть файл 'hotels', база данных один раз импортируется из него.
+ *
+ * Комнаты отеля и бронирования комнаты связаны в списки через номера записей.
+ * Удаленные записи помечаются и повторно не используются; saveToFile переписывает файлы заново без них.
+ * Включается системным свойством 'booking.storage=mapped'.
+ */
+
+public class MappedBookingSystemDAO implements BookingSystemDAO {
+
+    private static final String HOTELSFILE = "./booking_project/src/resources/hotels";
+
+    private static final int NONE = -1;
+    private static final int LIVE = 1;
+    private static final int DELETED = 0;
+
+    // Запись отеля
+    private static final int HOTEL_SIZE = 168;
+    private static final int H_FLAGS = 0;
+    private static final int H_FIRST_ROOM = 4;
+    private static final int H_LAST_ROOM = 8;
+    private static final int H_ROOM_COUNT = 12;
+    private static final int H_ID = 16;
+    private static final int H_CITY_REGISTER = 24;
+    private static final int H_CITY_REGISTER_LENGTH = 32;
+    private static final int H_NAME = 56;
+    private static final int H_NAME_LENGTH = 64;
+    private static final int H_CITY = 120;
+    private static final int H_CITY_LENGTH = 48;
+
+    // Запись комнаты; записи длиной ROOM_SIZE_V1 (без R_LAST_BOOKING) преобразуются при открытии
+    private static final int ROOM_SIZE_V1 = 40;
+    private static final int ROOM_SIZE = 48;
+    private static final int R_FLAGS = 0;
+    private static final int R_HOTEL = 4;
+    private static final int R_NEXT = 8;
+    private static final int R_FIRST_BOOKING = 12;
+    private static final int R_ID = 16;
+    private static final int R_NUMBER = 24;
+    private static final int R_PERSONS = 28;
+    private static final int R_PRICE = 32;
+    private static final int R_LAST_BOOKING = 40;
+
+    // Запись бронирования
+    private static final int BOOKING_SIZE = 64;
+    private static final int B_FLAGS = 0;
+    private static final int B_NEXT = 4;
+    private static final int B_FROM = 8;
+    private static final int B_TO = 16;
+    private static final int B_USER_LOGIN = 24;
+    private static final int B_USER_LOGIN_LENGTH = 32;
+    private static final int B_ID = 56;
+
+    private final String basePath;
+    private RecordFile hotels;
+    private RecordFile rooms;
+    private RecordFile bookings;
+
+    private HotelCatalog hotelList;
+    private final Map<String, Integer> hotelSlots = new HashMap<>();
+    private final Map<Room, Integer> roomSlots = new IdentityHashMap<>();
+
+    public MappedBookingSystemDAO() {
+        this(HOTELSFILE);
+    }
+
+    /**
+     * @param basePath путь к файлу базы данных отелей, рядом с которым создаются файлы записей
+     */
+    public MappedBookingSystemDAO(String basePath) {
+        this.basePath = basePath;
+        try {
+            boolean importNeeded = !new File(basePath + ".hdb").exists() && new File(basePath).exists();
+            openFiles();
+            if (importNeeded) {
+                rewrite(DataBaseIO.readHotels(basePath));
+            }
+        } catch (IOException | ClassNotFoundException e) {
+
+        }
+    }
+
+    /**
+     * Добавляет отель в базу данных.
+     *
+     * @param hotel отель, который нужно добавить в базу данных
+     * @return <tt>true</tt> если отель добавлен, <tt>false</tt> - если отель не добавлен
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean addHotel(Hotel hotel) throws IOException {
+        HotelCatalog catalog = catalog();
+        if (hotelSlots.containsKey(hotel.getCityRegister())) {
+            return false;
+        }
+
+        int slot = appendHotel(hotel);
+        for (Room room : hotel.getRoomList()) {
+            appendRoom(slot, room);
+        }
+        catalog.add(hotel);
+        hotelSlots.put(hotel.getCityRegister(), slot);
+        return true;
+    }
+
+    /**
+     * Добавляет несколько отелей: повторы cityRegister находятся по HashMap слотов отелей,
+     * записи отелей и комнат дописываются в отображения файлов.
+     *
+     * @param hotels отели, которые нужно добавить в базу данных
+     * @return количество добавленных отелей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized int addHotels(Collection<Hotel> hotels) throws IOException {
+        HotelCatalog catalog = catalog();
+        int added = 0;
+        for (Hotel hotel : hotels) {
+            if (hotelSlots.containsKey(hotel.getCityRegister())) {
+                continue;
+            }
+            int slot = appendHotel(hotel);
+            for (Room room : hotel.getRoomList()) {
+                appendRoom(slot, room);
+            }
+            catalog.add(hotel);
+            hotelSlots.put(hotel.getCityRegister(), slot);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Изменяет свойства отеля в базе данных.
+     *
+     * @param hotel - отель, который содержит новые свойства
+     * @return <tt>true</tt>  если свойства изменены, <tt>false</tt> - если свойства не изменены
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     * @throws IllegalArgumentException если имя или город не помещаются в запись отеля;
+     *                                  отель при этом не изменяется
+     */
+    @Override
+    public synchronized boolean changeHotelData(Hotel hotel) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        if (foundedHotel == null) {
+            return false;
+        }
+
+        checkString(H_NAME_LENGTH, hotel.getName());
+        checkString(H_CITY_LENGTH, hotel.getCity());
+        foundedHotel.setName(hotel.getName());
+        foundedHotel.setCity(hotel.getCity());
+        hotelList.reindex(foundedHotel);
+        ByteBuffer record = hotels.record(hotelSlots.get(hotel.getCityRegister()));
+        putString(record, H_NAME, H_NAME_LENGTH, hotel.getName());
+        putString(record, H_CITY, H_CITY_LENGTH, hotel.getCity());
+        return true;
+    }
+
+    /**
+     * Добавляет комнату в отель.
+     *
+     * @param hotel отель, в который нужно добавить комнату
+     * @param room комната, которую нужно добавить
+     * @return <tt>true</tt> если комната добавлена, <tt>false</tt> - если комната не добавлена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean addRoomToHotel(Hotel hotel, Room room) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        if (foundedHotel == null || foundedHotel.getRoomList().contains(room)) {
+            return false;
+        }
+
+        appendRoom(hotelSlots.get(hotel.getCityRegister()), room);
+        foundedHotel.getRoomList().add(room);
+        hotelList.indexRoom(foundedHotel, room);
+        return true;
+    }
+
+    /**
+     * Добавляет несколько комнат в отель, номера комнат проверяются по HashSet.
+     *
+     * @param hotel отель, в который нужно добавить комнаты
+     * @param rooms комнаты, которые нужно добавить
+     * @return количество добавленных комнат (0, если отель не найден)
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized int addRooms(Hotel hotel, Collection<Room> rooms) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        if (foundedHotel == null) {
+            return 0;
+        }
+
+        int slot = hotelSlots.get(hotel.getCityRegister());
+        Set<Integer> roomNumbers = new HashSet<>();
+        for (Room room : foundedHotel.getRoomList()) {
+            roomNumbers.add(room.getRoomNumber());
+        }
+        int added = 0;
+        for (Room room : rooms) {
+            if (roomNumbers.add(room.getRoomNumber())) {
+                appendRoom(slot, room);
+                foundedHotel.getRoomList().add(room);
+                hotelList.indexRoom(foundedHotel, room);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Изменяет свойства комнаты в отеле.
+     * Записываются только поля persons и price комнаты и изменившиеся бронирования.
+     *
+     * @param room  комната, которая содержит новые свойства
+     * @param hotel отель, в котором нужно изменить данные комнаты
+     * @return <tt>true</tt>  если свойства изменены, <tt>false</tt> - если свойства не изменены
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean changeRoomData(Room room, Hotel hotel) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        int index = foundedHotel == null ? -1 : foundedHotel.getRoomList().indexOf(room);
+        if (index < 0) {
+            return false;
+        }
+
+        Room foundedRoom = foundedHotel.getRoomList().get(index);
+        foundedRoom.setPersons(room.getPersons());
+        foundedRoom.setPrice(room.getPrice());
+        hotelList.reindexRoom(foundedHotel, foundedRoom);
+
+        int slot = roomSlots.get(foundedRoom);
+        ByteBuffer record = rooms.record(slot);
+        record.putInt(R_PERSONS, foundedRoom.getPersons());
+        record.putDouble(R_PRICE, foundedRoom.getPrice());
+        syncBookings(slot, foundedRoom.getBookingInfoList());
+        return true;
+    }
+
+    /**
+     * Удаляет комнату из отеля.
+     *
+     * @param room  - комната, которую нужно удалить
+     * @param hotel - отель, из которого нужно удалить комнату
+     * @return <tt>true</tt> если комната успешно удалена, <tt>false</tt> - если комнату не удалось удалить
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean deleteRoomFromHotel(Room room, Hotel hotel) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        int index = foundedHotel == null ? -1 : foundedHotel.getRoomList().indexOf(room);
+        if (index < 0) {
+            return false;
+        }
+
+        Room foundedRoom = foundedHotel.getRoomList().remove(index);
+        hotelList.unindexRoom(foundedHotel, foundedRoom);
+        unlinkRoom(hotelSlots.get(hotel.getCityRegister()), roomSlots.remove(foundedRoom));
+        return true;
+    }
+
+    /**
+     * Бронирует комнату отеля и обновляет индекс бронирований.
+     * В файл бронирований дописывается только новая бронь.
+     *
+     * @param hotel       отель, в котором находится комната
+     * @param room        комната, которую нужно забронировать
+     * @param bookingInfo информация про бронь
+     * @return номер брони или 0, если комната занята или не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     * @throws IllegalArgumentException если логин не помещается в запись бронирования;
+     *                                  комната при этом не бронируется
+     */
+    @Override
+    public synchronized long bookRoom(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+        checkString(B_USER_LOGIN_LENGTH, bookingInfo.getUserLogin());
+        Hotel foundedHotel = findHotel(hotel);
+        int index = foundedHotel == null ? -1 : foundedHotel.getRoomList().indexOf(room);
+        if (index < 0) {
+            return 0;
+        }
+
+        Room foundedRoom = foundedHotel.getRoomList().get(index);
+        if (!foundedRoom.bookTheRoom(bookingInfo)) {
+            return 0;
+        }
+        appendBooking(roomSlots.get(foundedRoom), bookingInfo);
+        hotelList.indexBooking(foundedHotel, foundedRoom, bookingInfo);
+        return bookingInfo.getId();
+    }
+
+    /**
+     * Снимает бронь с комнаты отеля и обновляет индекс бронирований.
+     *
+     * @param hotel       отель, в котором находится комната
+     * @param room        комната, с которой нужно снять бронь
+     * @param bookingInfo информация про бронь
+     * @return <tt>true</tt> если бронь снята, <tt>false</tt> - если бронь не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean cancelBooking(Hotel hotel, Room room, BookingInfo bookingInfo) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        int index = foundedHotel == null ? -1 : foundedHotel.getRoomList().indexOf(room);
+        if (index < 0) {
+            return false;
+        }
+
+        Room foundedRoom = foundedHotel.getRoomList().get(index);
+        if (!foundedRoom.getBookingInfoList().remove(bookingInfo)) {
+            return false;
+        }
+        syncBookings(roomSlots.get(foundedRoom), foundedRoom.getBookingInfoList());
+        hotelList.unindexBooking(foundedHotel, foundedRoom, bookingInfo);
+        return true;
+    }
+
+    /**
+     * Снимает бронь по ее номеру. Бронь, отель и комната находятся по индексу бронирований,
+     * без просмотра списков отелей и комнат.
+     *
+     * @param bookingId номер брони
+     * @return <tt>true</tt> если бронь снята, <tt>false</tt> - если бронь не найдена
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean cancelBooking(long bookingId) throws IOException {
+        catalog();
+        Optional<UserBooking> found = hotelList.findBooking(bookingId);
+        if (!found.isPresent()) {
+            return false;
+        }
+
+        UserBooking userBooking = found.get();
+        userBooking.getRoom().getBookingInfoList().remove(userBooking.getBookingInfo());
+        syncBookings(roomSlots.get(userBooking.getRoom()), userBooking.getRoom().getBookingInfoList());
+        hotelList.unindexBooking(userBooking.getHotel(), userBooking.getRoom(), userBooking.getBookingInfo());
+        return true;
+    }
+
+    /**
+     * Удаляет отель из базы данных.
+     *
+     * @param hotel - отель, который нужно удалить
+     * @return <tt>true</tt> если отель успешно удален, <tt>false</tt> - если отель не удалось удалить
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized boolean deleteHotel(Hotel hotel) throws IOException {
+        Hotel foundedHotel = findHotel(hotel);
+        if (foundedHotel == null) {
+            return false;
+        }
+
+        int slot = hotelSlots.remove(hotel.getCityRegister());
+        ByteBuffer record = hotels.record(slot);
+        for (int roomSlot = record.getInt(H_FIRST_ROOM); roomSlot != NONE; ) {
+            ByteBuffer roomRecord = rooms.record(roomSlot);
+            roomRecord.putInt(R_FLAGS, DELETED);
+            roomSlot = roomRecord.getInt(R_NEXT);
+        }
+        record.putInt(H_FLAGS, DELETED);
+
+        catalog().remove(foundedHotel);
+        return true;
+    }
+
+    /**
+     * Получение всех отелей. Возвращается неизменяемая копия списка отелей,
+     * поэтому ее можно обходить, пока в другом потоке изменяется база данных.
+     *
+     * @return List<Hotel> неизменяемый список со всеми отелями в базе данных
+     */
+    @Override
+    public synchronized List<Hotel> getAllHotels() {
+        return Collections.unmodifiableList(new ArrayList<>(catalog()));
+    }
+
+    /**
+     * Список отелей DAO. При первом вызове отели читаются из отображения файла записей отелей.
+     */
+    private HotelCatalog catalog() {
+        if (hotelList == null) {
+            hotelList = new HotelCatalog();
+            hotelSlots.clear();
+            roomSlots.clear();
+            if (hotels != null) {
+                for (int slot = 0; slot < hotels.count(); slot++) {
+                    ByteBuffer record = hotels.record(slot);
+                    if (record.getInt(H_FLAGS) == LIVE) {
+                        Hotel hotel = new Hotel(record.getLong(H_ID),
+                                getString(record, H_CITY_REGISTER),
+                                getString(record, H_NAME),
+                                getString(record, H_CITY));
+                        int hotelSlot = slot;
+                        hotel.setRoomList(new LazyList<>(() -> readRooms(hotelSlot), record.getInt(H_ROOM_COUNT), this));
+                        hotelList.add(hotel);
+                        hotelSlots.put(hotel.getCityRegister(), slot);
+                    }
+                }
+            }
+        }
+        return hotelList;
+    }
+
+    /**
+     * Получение всех комнат в заданном отеле.
+     *
+     * @param hotel отель, список комнат которого мы хотим получить
+     * @return List<Room> список со всеми комнатами заданного отеля
+     */
+    @Override
+    public List<Room> getAllRooms(Hotel hotel) {
+        return hotel.getRoomList();
+    }
+
+    /**
+     * Ищет брони пользователя по индексу бронирований.
+     *
+     * @param userLogin логин пользователя
+     * @return List<UserBooking> брони пользователя с отелями и комнатами в порядке даты заезда
+     */
+    @Override
+    public synchronized List<UserBooking> findBookingsByUser(String userLogin) {
+        catalog();
+        return hotelList.findBookingsByUser(userLogin);
+    }
+
+    /**
+     * Ищет отель по номеру в регистре города.
+     *
+     * @param cityRegister номер здания в городском регистре
+     * @return Optional<Hotel> отель из базы данных
+     */
+    @Override
+    public synchronized Optional<Hotel> findHotelByCityRegister(String cityRegister) {
+        catalog();
+        return Optional.ofNullable(hotelList.find(cityRegister));
+    }
+
+    /**
+     * Ищет отели по имени без учета регистра.
+     *
+     * @param name имя отеля
+     * @return List<Hotel> список отелей с заданным именем
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByName(String name) {
+        catalog();
+        return hotelList.findByName(name);
+    }
+
+    /**
+     * Ищет отели, имя которых начинается с заданной строки (автодополнение).
+     *
+     * @param prefix начало имени отеля
+     * @param limit  максимальное количество отелей
+     * @return List<Hotel> список отелей в алфавитном порядке имен
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByNamePrefix(String prefix, int limit) {
+        catalog();
+        return hotelList.findByNamePrefix(prefix, limit);
+    }
+
+    /**
+     * Ищет отели с похожими именами, допуская опечатки.
+     *
+     * @param name  имя отеля, возможно с опечатками
+     * @param limit максимальное количество отелей
+     * @return List<Hotel> список отелей от самого похожего имени к наименее похожему
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByNameFuzzy(String name, int limit) {
+        catalog();
+        return hotelList.findByNameFuzzy(name, limit);
+    }
+
+    /**
+     * Ищет отели в заданном городе без учета регистра.
+     *
+     * @param city город
+     * @return List<Hotel> список отелей в заданном городе
+     */
+    @Override
+    public synchronized List<Hotel> findHotelsByCity(String city) {
+        catalog();
+        return hotelList.findByCity(city);
+    }
+
+    /**
+     * Ищет свободные на заданные даты комнаты в заданном городе,
+     * в которых не меньше persons мест и цена не больше maxPrice.
+     *
+     * @param city     город или null, если искать нужно во всех городах
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @param persons  минимальное количество мест в комнате
+     * @param maxPrice максимальная цена комнаты
+     * @return List<AvailableRoom> свободные комнаты вместе с отелями
+     */
+    @Override
+    public synchronized List<AvailableRoom> findFreeRooms(String city, Date fromDate, Date toDate, int persons,
+                                                      double maxPrice) {
+        catalog();
+        return hotelList.findFreeRooms(city, fromDate, toDate, persons, maxPrice);
+    }
+
+    /**
+     * Переписывает файлы записей из текущего списка отелей (без удаленных записей)
+     * и сбрасывает отображения на диск.
+     *
+     * @throws IOException когда произошли ошибки/прервались I/O operations.
+     */
+    @Override
+    public synchronized void saveToFile() throws IOException {
+        rewrite(new ArrayList<>(catalog()));
+    }
+
+    /**
+     * Изменения записываются прямо в отображение файла, ожидать нечего.
+     *
+     * @return завершенный CompletableFuture
+     */
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Изменения записываются прямо в отображение файла без отдельных операций записи,
+     * поэтому откладывать нечего.
+     *
+     * @param deferred не используется
+     */
+    @Override
+    public void setDeferredWrites(boolean deferred) {
+    }
+
+    /**
+     * Заново открывает файлы записей; отели будут прочитаны при следующем обращении.
+     *
+     * @throws IOException когда произошли ошибки/прервались I/O operations.
+     */
+    @Override
+    public synchronized void readDBFromFile() throws IOException {
+        openFiles();
+    }
+
+    private void openFiles() throws IOException {
+        closeFiles();
+        hotels = new RecordFile(new File(basePath + ".hdb"), HOTEL_SIZE);
+        bookings = new RecordFile(new File(basePath + ".bdb"), BOOKING_SIZE);
+        File roomFile = new File(basePath + ".rdb");
+        if (RecordFile.recordSize(roomFile) == ROOM_SIZE_V1) {
+            upgradeRooms(roomFile);
+        }
+        rooms = new RecordFile(roomFile, ROOM_SIZE);
+        hotelList = null;
+    }
+
+    /**
+     * Переписывает файл комнат в текущий формат записи: к каждой записи добавляется
+     * номер последней записи ее цепочки бронирований (один проход по цепочке при открытии).
+     */
+    private void upgradeRooms(File roomFile) throws IOException {
+        File upgradedFile = new File(roomFile.getPath() + ".new");
+        upgradedFile.delete();
+        RecordFile oldRooms = new RecordFile(roomFile, ROOM_SIZE_V1);
+        RecordFile upgraded = new RecordFile(upgradedFile, ROOM_SIZE);
+        try {
+            byte[] bytes = new byte[ROOM_SIZE_V1];
+            for (int slot = 0; slot < oldRooms.count(); slot++) {
+                oldRooms.record(slot).get(bytes);
+                ByteBuffer record = upgraded.record(upgraded.append());
+                record.duplicate().put(bytes);
+                int last = record.getInt(R_FIRST_BOOKING);
+                if (last != NONE) {
+                    while (bookings.record(last).getInt(B_NEXT) != NONE) {
+                        last = bookings.record(last).getInt(B_NEXT);
+                    }
+                }
+                record.putInt(R_LAST_BOOKING, last);
+            }
+            upgraded.force();
+        } finally {
+            oldRooms.close();
+            upgraded.close();
+        }
+        Files.move(upgradedFile.toPath(), roomFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void closeFiles() throws IOException {
+        for (RecordFile file : new RecordFile[]{hotels, rooms, bookings}) {
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+
+    private void rewrite(List<Hotel> catalog) throws IOException {
+        for (Hotel hotel : catalog) {
+            hotel.setRoomList(new ArrayList<>(hotel.getRoomList()));
+        }
+
+        closeFiles();
+        for (String extension : new String[]{".hdb", ".rdb", ".bdb"}) {
+            new File(basePath + extension).delete();
+        }
+        openFiles();
+
+        hotelSlots.clear();
+        roomSlots.clear();
+        for (Hotel hotel : catalog) {
+            int slot = appendHotel(hotel);
+            hotelSlots.put(hotel.getCityRegister(), slot);
+            for (Room room : hotel.getRoomList()) {
+                appendRoom(slot, room);
+            }
+        }
+        hotelList = new HotelCatalog(catalog);
+
+        hotels.force();
+        rooms.force();
+        bookings.force();
+    }
+
+    private Hotel findHotel(Hotel hotel) {
+        return findHotelByCityRegister(hotel.getCityRegister()).orElse(null);
+    }
+
+    /**
+     * Дописывает запись отеля. Строки отеля и логины его бронирований проверяются до того,
+     * как в файлах появится хоть одна запись, поэтому слишком длинное значение не оставляет
+     * в файле отель без комнат.
+     */
+    private int appendHotel(Hotel hotel) throws IOException {
+        checkString(H_CITY_REGISTER_LENGTH, hotel.getCityRegister());
+        checkString(H_NAME_LENGTH, hotel.getName());
+        checkString(H_CITY_LENGTH, hotel.getCity());
+        for (Room room : hotel.getRoomList()) {
+            for (BookingInfo bookingInfo : room.getBookingInfoList()) {
+                checkString(B_USER_LOGIN_LENGTH, bookingInfo.getUserLogin());
+            }
+        }
+        int slot = hotels.append();
+        ByteBuffer record = hotels.record(slot);
+        record.putInt(H_FIRST_ROOM, NONE);
+        record.putInt(H_LAST_ROOM, NONE);
+        record.putInt(H_ROOM_COUNT, 0);
+        record.putLong(H_ID, hotel.getId());
+        putString(record, H_CITY_REGISTER, H_CITY_REGISTER_LENGTH, hotel.getCityRegister());
+        putString(record, H_NAME, H_NAME_LENGTH, hotel.getName());
+        putString(record, H_CITY, H_CITY_LENGTH, hotel.getCity());
+        record.putInt(H_FLAGS, LIVE);
+        return slot;
+    }
+
+    private void appendRoom(int hotelSlot, Room room) throws IOException {
+        int slot = rooms.append();
+        ByteBuffer record = rooms.record(slot);
+        record.putInt(R_HOTEL, hotelSlot);
+        record.putInt(R_NEXT, NONE);
+        record.putInt(R_FIRST_BOOKING, NONE);
+        record.putInt(R_LAST_BOOKING, NONE);
+        record.putLong(R_ID, room.getId());
+        record.putInt(R_NUMBER, room.getRoomNumber());
+        record.putInt(R_PERSONS, room.getPersons());
+        record.putDouble(R_PRICE, room.getPrice());
+        record.putInt(R_FLAGS, LIVE);
+        for (BookingInfo bookingInfo : room.getBookingInfoList()) {
+            appendBooking(slot, bookingInfo);
+        }
+
+        ByteBuffer hotelRecord = hotels.record(hotelSlot);
+        int last = hotelRecord.getInt(H_LAST_ROOM);
+        if (last == NONE) {
+            hotelRecord.putInt(H_FIRST_ROOM, slot);
+        } else {
+            rooms.record(last).putInt(R_NEXT, slot);
+        }
+        hotelRecord.putInt(H_LAST_ROOM, slot);
+        hotelRecord.putInt(H_ROOM_COUNT, hotelRecord.getInt(H_ROOM_COUNT) + 1);
+        roomSlots.put(room, slot);
+    }
+
+    private void unlinkRoom(int hotelSlot, int roomSlot) {
+        ByteBuffer hotelRecord = hotels.record(hotelSlot);
+        int previous = NONE;
+        for (int slot = hotelRecord.getInt(H_FIRST_ROOM); slot != roomSlot; slot = rooms.record(slot).getInt(R_NEXT)) {
+            previous = slot;
+        }
+
+        int next = rooms.record(roomSlot).getInt(R_NEXT);
+        if (previous == NONE) {
+            hotelRecord.putInt(H_FIRST_ROOM, next);
+        } else {
+            rooms.record(previous).putInt(R_NEXT, next);
+        }
+        if (hotelRecord.getInt(H_LAST_ROOM) == roomSlot) {
+            hotelRecord.putInt(H_LAST_ROOM, previous);
+        }
+        hotelRecord.putInt(H_ROOM_COUNT, hotelRecord.getInt(H_ROOM_COUNT) - 1);
+        rooms.record(roomSlot).putInt(R_FLAGS, DELETED);
+    }
+
+    private void appendBooking(int roomSlot, BookingInfo bookingInfo) throws IOException {
+        int slot = bookings.append();
+        ByteBuffer record = bookings.record(slot);
+        record.putInt(B_NEXT, NONE);
+        record.putLong(B_FROM, bookingInfo.getFromDate().getTime());
+        record.putLong(B_TO, bookingInfo.getToDate().getTime());
+        putString(record, B_USER_LOGIN, B_USER_LOGIN_LENGTH, bookingInfo.getUserLogin());
+        record.putLong(B_ID, bookingInfo.getId());
+        record.putInt(B_FLAGS, LIVE);
+
+        ByteBuffer roomRecord = rooms.record(roomSlot);
+        int last = roomRecord.getInt(R_LAST_BOOKING);
+        if (last == NONE) {
+            roomRecord.putInt(R_FIRST_BOOKING, slot);
+        } else {
+            bookings.record(last).putInt(B_NEXT, slot);
+        }
+        roomRecord.putInt(R_LAST_BOOKING, slot);
+    }
+
+    /**
+     * Приводит цепочку бронирований комнаты в файле к списку бронирований комнаты:
+     * снятые бронирования исключаются из цепочки, новые дописываются в ее конец.
+     * Бронирования сравниваются по номерам через HashSet.
+     */
+    private void syncBookings(int roomSlot, List<BookingInfo> bookingInfoList) throws IOException {
+        Set<Long> bookingIds = new HashSet<>();
+        for (BookingInfo bookingInfo : bookingInfoList) {
+            bookingIds.add(bookingInfo.getId());
+        }
+        Set<Long> stored = new HashSet<>();
+        ByteBuffer roomRecord = rooms.record(roomSlot);
+        int previous = NONE;
+        for (int slot = roomRecord.getInt(R_FIRST_BOOKING); slot != NONE; ) {
+            ByteBuffer record = bookings.record(slot);
+            int next = record.getInt(B_NEXT);
+            long bookingId = readBooking(record).getId();
+            if (bookingIds.contains(bookingId)) {
+                stored.add(bookingId);
+                previous = slot;
+            } else {
+                if (previous == NONE) {
+                    roomRecord.putInt(R_FIRST_BOOKING, next);
+                } else {
+                    bookings.record(previous).putInt(B_NEXT, next);
+                }
+                record.putInt(B_FLAGS, DELETED);
+            }
+            slot = next;
+        }
+        roomRecord.putInt(R_LAST_BOOKING, previous);
+
+        for (BookingInfo bookingInfo : bookingInfoList) {
+            if (!stored.contains(bookingInfo.getId())) {
+                appendBooking(roomSlot, bookingInfo);
+            }
+        }
+    }
+
+    private List<Room> readRooms(int hotelSlot) {
+        List<Room> roomList = new ArrayList<>();
+        for (int slot = hotels.record(hotelSlot).getInt(H_FIRST_ROOM); slot != NONE; ) {
+            ByteBuffer record = rooms.record(slot);
+            Room room = new Room(record.getLong(R_ID), record.getInt(R_NUMBER),
+                    record.getInt(R_PERSONS), record.getDouble(R_PRICE));
+            for (int bookingSlot = record.getInt(R_FIRST_BOOKING); bookingSlot != NONE; ) {
+                ByteBuffer bookingRecord = bookings.record(bookingSlot);
+                room.getBookingInfoList().add(readBooking(bookingRecord));
+                bookingSlot = bookingRecord.getInt(B_NEXT);
+            }
+            roomList.add(room);
+            roomSlots.put(room, slot);
+            slot = record.getInt(R_NEXT);
+        }
+        return roomList;
+    }
+
+    /**
+     * Брони, записанные до появления номеров броней, получают номер при первом чтении.
+     */
+    private BookingInfo readBooking(ByteBuffer record) {
+        BookingInfo bookingInfo;
+        try {
+            bookingInfo = new BookingInfo(getString(record, B_USER_LOGIN),
+                    new Date(record.getLong(B_FROM)), new Date(record.getLong(B_TO)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Wrong booking dates in mapped store", e);
+        }
+        if (record.getLong(B_ID) == 0) {
+            record.putLong(B_ID, IdGenerator.nextOrderId());
+        }
+        bookingInfo.setId(record.getLong(B_ID));
+        return bookingInfo;
+    }
+
+    private static void putString(ByteBuffer record, int offset, int length, String value) {
+        byte[] bytes = checkString(length, value);
+        ByteBuffer field = record.duplicate();
+        field.position(offset);
+        field.putShort((short) bytes.length);
+        field.put(bytes);
+    }
+
+    /**
+     * Проверяет, что строка помещается в поле записи длиной length (два байта длины и байты UTF-8).
+     *
+     * @return байты строки в UTF-8
+     * @throws IllegalArgumentException если строка не помещается в поле
+     */
+    private static byte[] checkString(int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > length - 2) {
+            throw new IllegalArgumentException("Value is too long for mapped store: " + value);
+        }
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer record, int offset) {
+        ByteBuffer field = record.duplicate();
+        field.position(offset);
+        byte[] bytes = new byte[field.getShort()];
+        field.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Файл записей фиксированной длины, отображенный в память.
+     * Заголовок файла: количество записей (int) и длина записи (int).
+     * При нехватке места отображение увеличивается вдвое.
+     */
+    private static final class RecordFile {
+
+        private static final int HEADER = 16;
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final int recordSize;
+        private MappedByteBuffer buffer;
+
+        private RecordFile(File path, int recordSize) throws IOException {
+            this.file = new RandomAccessFile(path, "rw");
+            this.channel = file.getChannel();
+            this.recordSize = recordSize;
+
+            long size = Math.max(channel.size(), HEADER + (long) INITIAL_CAPACITY * recordSize);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(4) == 0) {
+                buffer.putInt(4, recordSize);
+            } else if (buffer.getInt(4) != recordSize) {
+                throw new IOException("Wrong record size in " + path);
+            }
+        }
+
+        /**
+         * Длина записи из заголовка файла или 0, если файла еще нет.
+         */
+        private static int recordSize(File path) throws IOException {
+            if (path.length() < HEADER) {
+                return 0;
+            }
+            try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+                file.seek(4);
+                return file.readInt();
+            }
+        }
+
+        private int count() {
+            return buffer.getInt(0);
+        }
+
+        private int append() throws IOException {
+            int slot = count();
+            long required = HEADER + (long) (slot + 1) * recordSize;
+            if (required > buffer.capacity()) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+            }
+            buffer.putInt(0, slot + 1);
+            return slot;
+        }
+
+        private ByteBuffer record(int slot) {
+            ByteBuffer record = buffer.duplicate();
+            record.position(HEADER + slot * recordSize);
+            return record.slice();
+        }
+
+        private void force() {
+            buffer.force();
+        }
+
+        private void close() throws IOException {
+            buffer.force();
+            channel.close();
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package dao;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Блокировки комнат с разбиением на полосы (lock striping).
+ * Комната отображается на одну из фиксированного количества блокировок по хешу cityRegister отеля
+ * и номера комнаты, поэтому память не зависит от количества комнат, а брони разных комнат
+ * почти всегда берут разные блокировки и выполняются параллельно.
+ * Количество блокировок задается системным свойством 'booking.lockStripes'
+ * и округляется вверх до степени двойки.
+ */
+class RoomLocks {
+
+    public static final String STRIPES_PROPERTY = "booking.lockStripes";
+    private static final int DEFAULT_STRIPES = 256;
+
+    private final Lock[] locks;
+    private final int mask;
+
+    RoomLocks() {
+        this(Integer.getInteger(STRIPES_PROPERTY, DEFAULT_STRIPES));
+    }
+
+    /**
+     * @param stripes количество блокировок
+     */
+    RoomLocks(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Блокировка комнаты.
+     *
+     * @param cityRegister номер отеля в городском регистре
+     * @param roomNumber   номер комнаты
+     * @return Lock блокировка, общая для всех комнат своей полосы
+     */
+    Lock of(String cityRegister, int roomNumber) {
+        int hash = 31 * cityRegister.hashCode() + roomNumber;
+        return locks[(hash ^ (hash >>> 16)) & mask];
+    }
+}
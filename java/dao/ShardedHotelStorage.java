@@ -0,0 +1,239 @@
+package dao;
+
+import domain.Hotel;
+import domain.Room;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Класс имплементирующий интерфейс HotelStorage.
+ * Каждый отель хранится в отдельном файле каталога 'hotels.shards' (имя файла строится из cityRegister),
+ * а в небольшом файле 'manifest' хранятся id, cityRegister, имя, город и количество комнат всех отелей.
+ *
+ * При загрузке читается только manifest; комнаты отеля читаются из его файла
+ * при первом обращении к списку комнат. При изменении комнаты или бронировании
+ * перезаписывается только файл измененного отеля.
+ * Если manifest еще нет, база данных один раз импортируется из файла 'hotels'.
+ *
+ * Формат manifest: магическое число 'BKSM' (int), версия (byte), количество отелей (int),
+ * для каждого отеля: id (long), cityRegister, name, city (UTF), количество комнат (int).
+ */
+
+public class ShardedHotelStorage implements HotelStorage {
+
+    private static final int MAGIC = 0x424B534D;
+    private static final byte VERSION = 1;
+    private static final String MANIFEST = "manifest";
+    private static final String SHARD_EXTENSION = ".hotel";
+
+    private final String monolithicPath;
+    private final File directory;
+    private final File manifest;
+    private final Supplier<HotelCatalog> catalog;
+    private final Object catalogLock;
+
+    /**
+     * @param filePath    путь к файлу базы данных отелей, рядом с которым создается каталог отелей
+     * @param catalog     источник актуального списка отелей
+     * @param catalogLock монитор, под которым изменяется список отелей
+     */
+    public ShardedHotelStorage(String filePath, Supplier<HotelCatalog> catalog, Object catalogLock) {
+        this.monolithicPath = filePath;
+        this.directory = new File(filePath + ".shards");
+        this.manifest = new File(directory, MANIFEST);
+        this.catalog = catalog;
+        this.catalogLock = catalogLock;
+    }
+
+    @Override
+    public List<Hotel> load() throws IOException, ClassNotFoundException {
+        if (!manifest.exists()) {
+            List<Hotel> hotelList = new File(monolithicPath).exists()
+                    ? DataBaseIO.readHotels(monolithicPath)
+                    : new ArrayList<>();
+            writeAll(hotelList);
+            return hotelList;
+        }
+
+        List<Hotel> hotelList = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new StreamCorruptedException("Wrong manifest format: " + manifest);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Hotel hotel = new Hotel(in.readLong(), in.readUTF(), in.readUTF(), in.readUTF());
+                String cityRegister = hotel.getCityRegister();
+                hotel.setRoomList(new LazyList<>(() -> readShard(cityRegister), in.readInt(), catalogLock));
+                hotelList.add(hotel);
+            }
+        }
+        return hotelList;
+    }
+
+    @Override
+    public void write(CatalogChange change) throws IOException {
+        switch (change.getType()) {
+            case ADD_HOTEL:
+                writeShard(change.getHotel());
+                writeManifest(catalog.get());
+                break;
+            case CHANGE_HOTEL:
+                writeManifest(catalog.get());
+                break;
+            case DELETE_HOTEL:
+                Files.deleteIfExists(shard(change.getCityRegister()));
+                writeManifest(catalog.get());
+                break;
+            case ADD_ROOM:
+            case DELETE_ROOM:
+                writeShard(findHotel(change.getCityRegister()));
+                writeManifest(catalog.get());
+                break;
+            case CHANGE_ROOM:
+                writeShard(findHotel(change.getCityRegister()));
+                break;
+        }
+    }
+
+    /**
+     * Перезаписывает файл каждого измененного в пакете отеля один раз и manifest - не больше одного раза.
+     */
+    @Override
+    public void writeBatch(List<CatalogChange> changes) throws IOException {
+        Map<String, Hotel> changedShards = new LinkedHashMap<>();
+        boolean manifestChanged = false;
+        for (CatalogChange change : changes) {
+            String cityRegister = change.getCityRegister();
+            switch (change.getType()) {
+                case ADD_HOTEL:
+                    changedShards.put(cityRegister, change.getHotel());
+                    manifestChanged = true;
+                    break;
+                case CHANGE_HOTEL:
+                    manifestChanged = true;
+                    break;
+                case DELETE_HOTEL:
+                    changedShards.remove(cityRegister);
+                    Files.deleteIfExists(shard(cityRegister));
+                    manifestChanged = true;
+                    break;
+                case ADD_ROOM:
+                case DELETE_ROOM:
+                    manifestChanged = true;
+                    changedShards.putIfAbsent(cityRegister, null);
+                    break;
+                case CHANGE_ROOM:
+                    changedShards.putIfAbsent(cityRegister, null);
+                    break;
+            }
+        }
+
+        for (Map.Entry<String, Hotel> entry : changedShards.entrySet()) {
+            writeShard(entry.getValue() != null ? entry.getValue() : findHotel(entry.getKey()));
+        }
+        if (manifestChanged) {
+            writeManifest(catalog.get());
+        }
+    }
+
+    /**
+     * Перезаписывает файлы загруженных отелей и manifest, удаляет файлы отсутствующих отелей.
+     * Файлы отелей, комнаты которых не загружались, не изменились и не перезаписываются.
+     */
+    @Override
+    public void writeAll(List<Hotel> hotelList) throws IOException {
+        directory.mkdirs();
+
+        Set<Path> shards = new HashSet<>();
+        for (Hotel hotel : hotelList) {
+            Path shard = shard(hotel.getCityRegister());
+            shards.add(shard);
+            List<Room> roomList = hotel.getRoomList();
+            if (!(roomList instanceof LazyList) || ((LazyList<Room>) roomList).isLoaded() || !Files.exists(shard)) {
+                writeShard(hotel);
+            }
+        }
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.equals(manifest) && !shards.contains(file.toPath())) {
+                    Files.delete(file.toPath());
+                }
+            }
+        }
+
+        writeManifest(hotelList);
+    }
+
+    /**
+     * Файлы отелей записываются синхронно, ожидать нечего.
+     */
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private Hotel findHotel(String cityRegister) throws IOException {
+        Hotel hotel = catalog.get().find(cityRegister);
+        if (hotel == null) {
+            throw new IOException("Hotel " + cityRegister + " is not in the catalog");
+        }
+        return hotel;
+    }
+
+    /**
+     * Читает комнаты отеля. Файл отеля в старом формате сразу переписывается в текущем,
+     * чтобы брони, получившие номера при чтении, сохранили их.
+     */
+    private List<Room> readShard(String cityRegister) throws IOException {
+        try {
+            String shardPath = shard(cityRegister).toString();
+            Hotel hotel = (Hotel) DataBaseIO.readDB(shardPath);
+            if (DataBaseIO.isOutdatedDB(shardPath)) {
+                writeShard(hotel);
+            }
+            return hotel.getRoomList();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeShard(Hotel hotel) throws IOException {
+        DataBaseIO.replaceDB(hotel, shard(hotel.getCityRegister()).toString());
+    }
+
+    private void writeManifest(List<Hotel> hotelList) throws IOException {
+        Path temp = new File(directory, MANIFEST + ".tmp").toPath();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(hotelList.size());
+            for (Hotel hotel : hotelList) {
+                out.writeLong(hotel.getId());
+                out.writeUTF(hotel.getCityRegister());
+                out.writeUTF(hotel.getName());
+                out.writeUTF(hotel.getCity());
+                out.writeInt(hotel.getRoomList().size());
+            }
+        }
+        Files.move(temp, manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path shard(String cityRegister) throws UnsupportedEncodingException {
+        return new File(directory, URLEncoder.encode(cityRegister, "UTF-8") + SHARD_EXTENSION).toPath();
+    }
+}
@@ -0,0 +1,85 @@
+package dao;
+
+import domain.Hotel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Класс имплементирующий интерфейс HotelStorage.
+ * При каждом изменении полностью перезаписывает файл базы данных отелей.
+ * Если включен режим group commit, изменения, пришедшие в течение окна,
+ * записываются одной перезаписью файла.
+ */
+
+public class SnapshotHotelStorage implements HotelStorage {
+
+    private final String filePath;
+    private final Supplier<List<Hotel>> catalog;
+    private final GroupCommitWriter groupCommitWriter;
+
+    /**
+     * @param filePath    путь к файлу базы данных отелей
+     * @param catalog     источник актуального списка отелей
+     * @param catalogLock монитор, под которым изменяется список отелей
+     */
+    public SnapshotHotelStorage(String filePath, Supplier<List<Hotel>> catalog, Object catalogLock) {
+        this.filePath = filePath;
+        this.catalog = catalog;
+        this.groupCommitWriter = GroupCommitWriter.isEnabled()
+                ? new GroupCommitWriter(filePath, catalog, catalogLock)
+                : null;
+    }
+
+    /**
+     * Файл в старом формате сразу переписывается в текущем, чтобы брони, получившие номера
+     * при чтении, сохранили их после перезапуска.
+     */
+    @Override
+    public List<Hotel> load() throws IOException, ClassNotFoundException {
+        List<Hotel> hotelList = DataBaseIO.readHotels(filePath);
+        if (DataBaseIO.isOutdatedDB(filePath)) {
+            DataBaseIO.replaceDB(hotelList, filePath);
+        }
+        return hotelList;
+    }
+
+    @Override
+    public void write(CatalogChange change) throws IOException {
+        if (groupCommitWriter != null) {
+            groupCommitWriter.submit();
+        } else {
+            writeAll(catalog.get());
+        }
+    }
+
+    /**
+     * Снимок содержит все изменения пакета, поэтому записывается один раз.
+     */
+    @Override
+    public void writeBatch(List<CatalogChange> changes) throws IOException {
+        if (groupCommitWriter != null) {
+            groupCommitWriter.submit();
+        } else {
+            writeAll(catalog.get());
+        }
+    }
+
+    @Override
+    public void writeAll(List<Hotel> hotelList) throws IOException {
+        if (groupCommitWriter != null) {
+            groupCommitWriter.flush();
+        } else {
+            DataBaseIO.saveDB(hotelList, filePath);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return groupCommitWriter != null
+                ? groupCommitWriter.lastWrite()
+                : CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,103 @@
+package dao;
+
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+import domain.UserBooking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс бронирований по логину пользователя: для каждого логина хранятся брони вместе
+ * с отелями и комнатами. Время получения броней пользователя зависит только от их количества.
+ * Кроме того, брони хранятся в HashMap по номеру брони, поэтому бронь находится по номеру за O(1).
+ *
+ * Индекс строит HotelCatalog при первом запросе (один проход по всем отелям, комнатам и броням),
+ * после этого он обновляется при добавлении и удалении отелей, комнат и броней.
+ * Класс не потокобезопасен; HotelCatalog вызывает его под монитором DAO.
+ */
+class UserBookingIndex {
+
+    private static final Comparator<UserBooking> BY_DATE =
+            Comparator.comparing(userBooking -> userBooking.getBookingInfo().getFromDate());
+
+    private final Map<String, Map<UserBooking, UserBooking>> bookings = new HashMap<>();
+    private final Map<Long, UserBooking> byId = new HashMap<>();
+
+    UserBookingIndex(Collection<Hotel> hotelList) {
+        for (Hotel hotel : hotelList) {
+            addHotel(hotel);
+        }
+    }
+
+    /**
+     * Брони пользователя в порядке даты заезда.
+     */
+    List<UserBooking> find(String userLogin) {
+        Map<UserBooking, UserBooking> found = bookings.get(userLogin);
+        List<UserBooking> result = found == null ? new ArrayList<>() : new ArrayList<>(found.values());
+        result.sort(BY_DATE);
+        return result;
+    }
+
+    /**
+     * Бронь с заданным номером или null.
+     */
+    UserBooking find(long bookingId) {
+        return byId.get(bookingId);
+    }
+
+    void addHotel(Hotel hotel) {
+        for (Room room : hotel.getRoomList()) {
+            addRoom(hotel, room);
+        }
+    }
+
+    void removeHotel(Hotel hotel) {
+        for (Room room : hotel.getRoomList()) {
+            removeRoom(hotel, room);
+        }
+    }
+
+    void addRoom(Hotel hotel, Room room) {
+        for (BookingInfo bookingInfo : room.getBookingInfoList()) {
+            add(hotel, room, bookingInfo);
+        }
+    }
+
+    void removeRoom(Hotel hotel, Room room) {
+        for (BookingInfo bookingInfo : room.getBookingInfoList()) {
+            remove(hotel, room, bookingInfo);
+        }
+    }
+
+    void add(Hotel hotel, Room room, BookingInfo bookingInfo) {
+        UserBooking userBooking = new UserBooking(hotel, room, bookingInfo);
+        bookings.computeIfAbsent(bookingInfo.getUserLogin(), login -> new LinkedHashMap<>())
+                .put(userBooking, userBooking);
+        if (bookingInfo.getId() != 0) {
+            byId.put(bookingInfo.getId(), userBooking);
+        }
+    }
+
+    /**
+     * Удаляет бронь; bookingInfo может быть равной (по equals) копией брони без номера.
+     */
+    void remove(Hotel hotel, Room room, BookingInfo bookingInfo) {
+        Map<UserBooking, UserBooking> found = bookings.get(bookingInfo.getUserLogin());
+        UserBooking removed = found == null ? null : found.remove(new UserBooking(hotel, room, bookingInfo));
+        if (removed == null) {
+            return;
+        }
+        if (found.isEmpty()) {
+            bookings.remove(bookingInfo.getUserLogin());
+        }
+        byId.remove(removed.getBookingInfo().getId(), removed);
+    }
+}
@@ -4,7 +4,10 @@ package dao;
 import domain.User;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Интерфейс содержит в себе методы по работе с базой данных пользователей.
@@ -21,6 +24,16 @@ public interface UserDAO {
      */
     boolean addUser(User user) throws IOException;
 
+    /**
+     * Добавляет в базу данных несколько пользователей и сохраняет их одной записью.
+     * Пользователи, логин которых уже есть в базе данных или повторяется в коллекции, пропускаются.
+     *
+     * @param users пользователи, которых нужно добавить в базу данных
+     * @return количество добавленных пользователей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    int addUsers(Collection<User> users) throws IOException;
+
     /**
      * Изменяет свойства пользователя в базе данных.
      *
@@ -39,6 +52,22 @@ public interface UserDAO {
      */
     boolean deleteUser(User user) throws IOException;
 
+    /**
+     * Ищет пользователя по логину.
+     *
+     * @param userLogin логин пользователя
+     * @return Optional<User> пользователь из базы данных
+     */
+    Optional<User> findByLogin(String userLogin);
+
+    /**
+     * Проверяет, зарегистрирован ли пользователь с заданным логином.
+     *
+     * @param userLogin логин пользователя
+     * @return <tt>true</tt> если пользователь найден, <tt>false</tt> - если не удалось найти пользователя
+     */
+    boolean existsByLogin(String userLogin);
+
     /**
      * Получение списка всех пользователей
      *
@@ -53,6 +82,23 @@ public interface UserDAO {
      */
     void saveToFile() throws IOException;
 
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файл 'users'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    CompletableFuture<Void> whenPersisted();
+
+    /**
+     * Включает или выключает отложенную запись. Пока она включена, изменения не записываются
+     * в файл 'users'; при выключении все отложенные изменения записываются один раз.
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    void setDeferredWrites(boolean deferred) throws IOException;
+
     /**
      * Производит чтение данных из файла 'users'
      *
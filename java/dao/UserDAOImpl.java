@@ -3,23 +3,40 @@ package dao;
 import domain.User;
 
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Класс имплементирующий интерфейс UserDAO.
  * Реализует методы для работы с базой данных пользователей:
  * добавление, изменине, удаление.
  * Содержит методы записи и чтения из файла 'users'.
+ * Если включен режим group commit, изменения записываются пакетами (см. GroupCommitWriter).
+ * Для поиска пользователя по логину поддерживается индекс (HashMap), который обновляется
+ * при любом изменении списка пользователей, в том числе через список, возвращаемый getAll.
  */
 
 public class UserDAOImpl implements UserDAO {
 
     private static final String USERFILE = "./booking_project/src/resources/users";
-    private List<User> userList = new ArrayList<>();
+    private final Map<String, User> loginIndex = new HashMap<>();
+    private List<User> userList = new IndexedUserList(new ArrayList<>());
+    private final GroupCommitWriter groupCommitWriter;
+    private boolean deferredWrites;
+    private boolean deferredChanges;
 
     public UserDAOImpl() {
 
+        this.groupCommitWriter = GroupCommitWriter.isEnabled()
+                ? new GroupCommitWriter(USERFILE, () -> userList, this)
+                : null;
+
         try {
             readDBFromFile();
         } catch (IOException | ClassNotFoundException e) {
@@ -35,16 +52,43 @@ public class UserDAOImpl implements UserDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean addUser(User user) throws IOException {
+    public synchronized boolean addUser(User user) throws IOException {
 
-        boolean answer = userList.stream()
-                .noneMatch(user::equals)
+        boolean answer = !loginIndex.containsKey(user.getUserLogin())
                 && userList.add(user);
-        saveToFile();
+
+        if (answer) {
+            persist();
+        }
 
         return answer;
     }
 
+    /**
+     * Добавляет несколько пользователей за один проход: повторы логинов находятся по индексу логинов,
+     * который обновляется при каждом добавлении, а файл 'users' записывается один раз.
+     *
+     * @param users пользователи, которых нужно добавить в базу данных
+     * @return количество добавленных пользователей
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized int addUsers(Collection<User> users) throws IOException {
+        int added = 0;
+        for (User user : users) {
+            if (!loginIndex.containsKey(user.getUserLogin())) {
+                userList.add(user);
+                added++;
+            }
+        }
+
+        if (added > 0) {
+            persist();
+        }
+
+        return added;
+    }
+
     /**
      * Изменяет свойства пользователя в базе данных.
      *
@@ -53,19 +97,15 @@ public class UserDAOImpl implements UserDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean updateUser(User user) throws IOException {
+    public synchronized boolean updateUser(User user) throws IOException {
 
-        boolean answer = userList.stream()
-                .anyMatch(user::equals);
+        User foundedUser = loginIndex.get(user.getUserLogin());
+        boolean answer = foundedUser != null;
 
         if (answer) {
-            User foundedUser = userList.stream()
-                    .filter(user::equals)
-                    .findFirst()
-                    .get();
             foundedUser.setUserName(user.getUserName());
             foundedUser.setUserLastName(user.getUserLastName());
-            saveToFile();
+            persist();
         }
 
         return answer;
@@ -79,16 +119,40 @@ public class UserDAOImpl implements UserDAO {
      * @throws IOException когда произошли ошибки/прервались I/O operations
      */
     @Override
-    public boolean deleteUser(User user) throws IOException {
+    public synchronized boolean deleteUser(User user) throws IOException {
 
-        boolean answer = userList.stream().anyMatch(user::equals)
+        boolean answer = loginIndex.containsKey(user.getUserLogin())
                 && userList.remove(user);
 
-        saveToFile();
+        if (answer) {
+            persist();
+        }
 
         return answer;
     }
 
+    /**
+     * Ищет пользователя по логину.
+     *
+     * @param userLogin логин пользователя
+     * @return Optional<User> пользователь из базы данных
+     */
+    @Override
+    public synchronized Optional<User> findByLogin(String userLogin) {
+        return Optional.ofNullable(loginIndex.get(userLogin));
+    }
+
+    /**
+     * Проверяет, зарегистрирован ли пользователь с заданным логином.
+     *
+     * @param userLogin логин пользователя
+     * @return <tt>true</tt> если пользователь найден
+     */
+    @Override
+    public synchronized boolean existsByLogin(String userLogin) {
+        return loginIndex.containsKey(userLogin);
+    }
+
     /**
      * Получение списка всех пользователей
      *
@@ -106,7 +170,55 @@ public class UserDAOImpl implements UserDAO {
      */
     @Override
     public void saveToFile() throws IOException {
-        DataBaseIO.saveDB(userList, USERFILE);
+        if (groupCommitWriter != null) {
+            groupCommitWriter.flush();
+        } else {
+            DataBaseIO.saveDB(userList, USERFILE);
+        }
+    }
+
+    /**
+     * Возвращает CompletableFuture, который завершится после записи в файл 'users'
+     * всех изменений, сделанных на данный момент.
+     *
+     * @return CompletableFuture записи последнего изменения
+     */
+    @Override
+    public CompletableFuture<Void> whenPersisted() {
+        return groupCommitWriter != null
+                ? groupCommitWriter.lastWrite()
+                : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Включает или выключает отложенную запись (см. UserDAO.setDeferredWrites).
+     *
+     * @param deferred <tt>true</tt> - откладывать запись, <tt>false</tt> - записать отложенное и писать сразу
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    @Override
+    public synchronized void setDeferredWrites(boolean deferred) throws IOException {
+        if (!deferred && deferredChanges) {
+            deferredChanges = false;
+            saveToFile();
+        }
+        deferredWrites = deferred;
+    }
+
+    /**
+     * Сохраняет изменение: сразу, в составе пакета group commit или, если запись отложена,
+     * только отмечает, что при выключении отложенной записи файл нужно переписать.
+     *
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    private void persist() throws IOException {
+        if (deferredWrites) {
+            deferredChanges = true;
+        } else if (groupCommitWriter != null) {
+            groupCommitWriter.submit();
+        } else {
+            saveToFile();
+        }
     }
 
     /**
@@ -117,7 +229,60 @@ public class UserDAOImpl implements UserDAO {
      */
     @Override
     public void readDBFromFile() throws IOException, ClassNotFoundException {
-        userList = (List<User>) DataBaseIO.readDB(USERFILE);
+        List<User> users = DataBaseIO.readUsers(USERFILE);
+        synchronized (this) {
+            loginIndex.clear();
+            userList = new IndexedUserList(users);
+            users.forEach(user -> loginIndex.put(user.getUserLogin(), user));
+        }
+    }
+
+    /**
+     * Список пользователей, который при изменении обновляет индекс по логину.
+     */
+    private final class IndexedUserList extends AbstractList<User> {
 
+        private final List<User> users;
+
+        private IndexedUserList(List<User> users) {
+            this.users = users;
+        }
+
+        @Override
+        public User get(int index) {
+            return users.get(index);
+        }
+
+        @Override
+        public int size() {
+            return users.size();
+        }
+
+        @Override
+        public User set(int index, User user) {
+            synchronized (UserDAOImpl.this) {
+                User previous = users.set(index, user);
+                loginIndex.remove(previous.getUserLogin());
+                loginIndex.put(user.getUserLogin(), user);
+                return previous;
+            }
+        }
+
+        @Override
+        public void add(int index, User user) {
+            synchronized (UserDAOImpl.this) {
+                users.add(index, user);
+                loginIndex.put(user.getUserLogin(), user);
+            }
+        }
+
+        @Override
+        public User remove(int index) {
+            synchronized (UserDAOImpl.this) {
+                User removed = users.remove(index);
+                loginIndex.remove(removed.getUserLogin());
+                return removed;
+            }
+        }
     }
 }
@@ -0,0 +1,34 @@
+package domain;
+
+/**
+ * Результат поиска свободных комнат: комната вместе с отелем, в котором она находится.
+ */
+public class AvailableRoom {
+
+    private final Hotel hotel;
+    private final Room room;
+
+    public AvailableRoom(Hotel hotel, Room room) {
+        this.hotel = hotel;
+        this.room = room;
+    }
+
+    public Hotel getHotel() {
+        return hotel;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailableRoom{" +
+                "hotel=" + hotel.getName() +
+                ", city=" + hotel.getCity() +
+                ", roomNumber=" + room.getRoomNumber() +
+                ", persons=" + room.getPersons() +
+                ", price=" + room.getPrice() +
+                '}';
+    }
+}
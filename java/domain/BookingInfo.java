@@ -5,8 +5,14 @@ import java.util.Date;
 
 /**
  * Класс инкапсулирует абстракцию заказа комнаты.
+ * Номер заказа (id) присваивается при бронировании комнаты (Room.bookTheRoom);
+ * 0 означает, что номер еще не присвоен. Номер присваивается уже добавленной брони,
+ * поэтому поле volatile: потоки, читающие бронирования комнаты без блокировки, видят присвоенный номер.
  */
 public class BookingInfo implements Serializable {
+    private static final long serialVersionUID = -7931502804689631154L;
+
+    private volatile long id;
     private String userLogin;
     private Date fromDate;
     private Date toDate;
@@ -20,6 +26,14 @@ public class BookingInfo implements Serializable {
         this.toDate = toDate;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getUserLogin() {
         return userLogin;
     }
@@ -68,7 +82,8 @@ public class BookingInfo implements Serializable {
     @Override
     public String toString() {
         return "BookingInfo{" +
-                "userLogin=" + userLogin +
+                "id=" + id +
+                ", userLogin=" + userLogin +
                 ", fromDate=" + fromDate +
                 ", toDate=" + toDate +
                 '}';
@@ -0,0 +1,445 @@
+package domain;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Список бронирований комнаты, упорядоченный по дате заезда.
+ * Бронирования хранятся в BookingTree по времени заезда и не пересекаются, поэтому проверка
+ * свободна ли комната на заданные даты, добавление и удаление брони выполняются за O(log n):
+ * пересечься с новыми датами могут только ближайшая бронь с заездом не позже и ближайшая бронь
+ * с заездом позже.
+ *
+ * Кроме того, список ведет NightCalendar - битовую карту занятых ночей на скользящий горизонт.
+ * Проверка дат без времени внутри горизонта и поиск первых свободных N ночей выполняются
+ * по словам карты; остальные запросы используют дерево.
+ *
+ * Дерево, календарь и номер версии образуют неизменяемое состояние (State), ссылка на которое
+ * хранится в AtomicReference. Чтение берет текущее состояние и не блокируется; изменение строит
+ * новое состояние из текущего и публикует его через compareAndSet, а если состояние за это время
+ * сменил другой поток, проверяет даты заново по новому состоянию и повторяет попытку.
+ * Итератор и toArray возвращают снимок списка на момент вызова.
+ *
+ * При сериализации список записывается как ArrayList, поэтому формат данных комнаты не меняется.
+ */
+class BookingSchedule extends AbstractList<BookingInfo> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Количество неудачных compareAndSet подряд, после которого поток уступает процессор
+     * перед следующей попыткой.
+     */
+    private static final int SPINS = 4;
+
+    private final transient AtomicReference<State> state;
+
+    BookingSchedule() {
+        this(0);
+    }
+
+    BookingSchedule(long version) {
+        this.state = new AtomicReference<>(new State(BookingTree.EMPTY, new NightCalendar(), version));
+    }
+
+    /**
+     * @param bookingInfoList бронирования, которые нужно поместить в список
+     * @throws IllegalArgumentException если бронирования пересекаются
+     */
+    BookingSchedule(Collection<BookingInfo> bookingInfoList) {
+        this(bookingInfoList, 0);
+    }
+
+    /**
+     * @param bookingInfoList бронирования, которые нужно поместить в список
+     * @param version         номер версии списка
+     * @throws IllegalArgumentException если бронирования пересекаются
+     */
+    BookingSchedule(Collection<BookingInfo> bookingInfoList, long version) {
+        BookingInfo[] sorted = bookingInfoList.toArray(new BookingInfo[0]);
+        Arrays.sort(sorted, Comparator.comparing(BookingInfo::getFromDate));
+        BookingTree bookings = BookingTree.EMPTY;
+        NightCalendar calendar = new NightCalendar();
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && (!sorted[i - 1].getFromDate().before(sorted[i].getFromDate())
+                    || sorted[i - 1].getToDate().after(sorted[i].getFromDate()))) {
+                throw new IllegalArgumentException("Booking " + sorted[i] + " overlaps another booking of the room");
+            }
+            bookings = bookings.with(sorted[i]);
+            calendar.mark(sorted[i], true);
+        }
+        this.state = new AtomicReference<>(new State(bookings, calendar, version));
+    }
+
+    /**
+     * Номер версии списка: увеличивается при каждом изменении бронирований.
+     */
+    long version() {
+        return state.get().version;
+    }
+
+    /**
+     * Проверяет, что даты брони не пересекаются ни с одним бронированием из списка.
+     * Условия те же, что раньше в Room.isFree: бронь с той же датой заезда пересекается всегда,
+     * выезд в день заезда следующей брони пересечением не считается.
+     *
+     * @param bookingInfo даты брони
+     * @return <tt>true</tt> если даты свободны
+     */
+    boolean isFree(BookingInfo bookingInfo) {
+        return isFree(bookingInfo.getFromDate(), bookingInfo.getToDate());
+    }
+
+    /**
+     * Проверяет, что даты с fromDate до toDate не пересекаются ни с одним бронированием из списка.
+     */
+    boolean isFree(Date fromDate, Date toDate) {
+        return current().isFree(fromDate, toDate);
+    }
+
+    /**
+     * Ищет первые nights подряд свободных ночей, начиная с дня fromDate.
+     * Внутри горизонта поиск идет по словам календаря, дальше - по бронированиям после горизонта.
+     *
+     * @param fromDate день, с которого нужно искать
+     * @param nights   количество ночей
+     * @return номер дня заезда от 01.01.1970
+     */
+    long firstFreeDay(Date fromDate, int nights) {
+        return current().firstFreeDay(NightCalendar.toDay(fromDate), nights);
+    }
+
+    /**
+     * Добавляет бронь, если ее даты свободны: проверка выполняется по тому же состоянию,
+     * которое заменяется через compareAndSet, поэтому из двух пересекающихся броней,
+     * добавляемых одновременно, добавлена будет только одна.
+     *
+     * @param bookingInfo бронь
+     * @return <tt>true</tt> если бронь добавлена, <tt>false</tt> если даты заняты
+     */
+    boolean addIfFree(BookingInfo bookingInfo) {
+        for (int attempt = 1; ; attempt++) {
+            State current = current();
+            if (!current.isFree(bookingInfo.getFromDate(), bookingInfo.getToDate())) {
+                return false;
+            }
+            if (state.compareAndSet(current, current.with(bookingInfo))) {
+                modCount++;
+                return true;
+            }
+            backoff(attempt);
+        }
+    }
+
+    @Override
+    public BookingInfo get(int index) {
+        return state.get().bookings.get(index);
+    }
+
+    @Override
+    public int size() {
+        return state.get().bookings.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return state.get().contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        State current = state.get();
+        return current.contains(o) ? current.bookings.rank(((BookingInfo) o).getFromDate().getTime()) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    /**
+     * Добавляет бронь на свое место по дате заезда.
+     *
+     * @throws IllegalArgumentException если бронь пересекается с бронированием из списка
+     */
+    @Override
+    public boolean add(BookingInfo bookingInfo) {
+        if (!addIfFree(bookingInfo)) {
+            throw new IllegalArgumentException("Booking " + bookingInfo + " overlaps another booking of the room");
+        }
+        return true;
+    }
+
+    /**
+     * Список упорядочен по дате заезда, поэтому бронь всегда добавляется на свое место, а не по индексу.
+     */
+    @Override
+    public void add(int index, BookingInfo bookingInfo) {
+        add(bookingInfo);
+    }
+
+    /**
+     * Заменяет бронь с номером index одним изменением состояния.
+     *
+     * @throws IllegalArgumentException если новая бронь пересекается с остальными бронированиями
+     */
+    @Override
+    public BookingInfo set(int index, BookingInfo bookingInfo) {
+        for (int attempt = 1; ; attempt++) {
+            State current = current();
+            BookingInfo previous = current.bookings.get(index);
+            State without = current.without(previous);
+            if (!without.isFree(bookingInfo.getFromDate(), bookingInfo.getToDate())) {
+                throw new IllegalArgumentException("Booking " + bookingInfo + " overlaps another booking of the room");
+            }
+            if (state.compareAndSet(current, without.with(bookingInfo).withVersion(current.version + 1))) {
+                modCount++;
+                return previous;
+            }
+            backoff(attempt);
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        for (int attempt = 1; ; attempt++) {
+            State current = current();
+            if (!current.contains(o)) {
+                return false;
+            }
+            if (state.compareAndSet(current, current.without((BookingInfo) o))) {
+                modCount++;
+                return true;
+            }
+            backoff(attempt);
+        }
+    }
+
+    @Override
+    public BookingInfo remove(int index) {
+        for (int attempt = 1; ; attempt++) {
+            State current = current();
+            BookingInfo bookingInfo = current.bookings.get(index);
+            if (state.compareAndSet(current, current.without(bookingInfo))) {
+                modCount++;
+                return bookingInfo;
+            }
+            backoff(attempt);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int attempt = 1; ; attempt++) {
+            State current = state.get();
+            State empty = new State(BookingTree.EMPTY, new NightCalendar(), current.version + 1);
+            if (state.compareAndSet(current, empty)) {
+                modCount++;
+                return;
+            }
+            backoff(attempt);
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        return state.get().bookings.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array) {
+        return Arrays.asList(state.get().bookings.toArray()).toArray(array);
+    }
+
+    /**
+     * Итератор по снимку списка: изменения списка после создания итератора в обходе не видны.
+     */
+    @Override
+    public Iterator<BookingInfo> iterator() {
+        Iterator<BookingInfo> values = state.get().bookings.iterator();
+        return new Iterator<BookingInfo>() {
+            private BookingInfo last;
+
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public BookingInfo next() {
+                last = values.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                BookingSchedule.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Текущее состояние со сдвинутым горизонтом календаря. Сдвиг публикуется одной попыткой
+     * compareAndSet без смены версии: если она не удалась, состояние уже заменил другой поток,
+     * а сдвинутое состояние все равно годится для чтения.
+     */
+    private State current() {
+        State current = state.get();
+        if (!current.calendar.needsRoll()) {
+            return current;
+        }
+        State rolled = current.rolled();
+        state.compareAndSet(current, rolled);
+        return rolled;
+    }
+
+    /**
+     * Пауза после неудачного compareAndSet: первые попытки повторяются сразу,
+     * дальше поток уступает процессор, чтобы при частых конфликтах на одной комнате
+     * потоки не тратили время на заведомо неудачные попытки.
+     */
+    private static void backoff(int attempt) {
+        if (attempt >= SPINS) {
+            Thread.yield();
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<>(this);
+    }
+
+    /**
+     * Неизменяемое состояние списка. Календарь состояния тоже не меняется после публикации:
+     * with, without и rolled изменяют его копию.
+     */
+    private static final class State {
+        private final BookingTree bookings;
+        private final NightCalendar calendar;
+        private final long version;
+
+        private State(BookingTree bookings, NightCalendar calendar, long version) {
+            this.bookings = bookings;
+            this.calendar = calendar;
+            this.version = version;
+        }
+
+        boolean contains(Object o) {
+            return o instanceof BookingInfo && o.equals(bookings.get(((BookingInfo) o).getFromDate().getTime()));
+        }
+
+        boolean isFree(Date fromDate, Date toDate) {
+            if (NightCalendar.startsDay(fromDate) && NightCalendar.startsDay(toDate)) {
+                long fromDay = NightCalendar.toDay(fromDate);
+                long toDay = NightCalendar.toDay(toDate);
+                if (calendar.covers(fromDay, toDay)) {
+                    return calendar.isFree(fromDay, toDay);
+                }
+            }
+
+            long from = fromDate.getTime();
+            BookingInfo before = bookings.floor(from);
+            if (before != null && (before.getFromDate().getTime() == from || before.getToDate().getTime() > from)) {
+                return false;
+            }
+            BookingInfo after = bookings.higher(from);
+            return after == null || toDate.getTime() <= after.getFromDate().getTime();
+        }
+
+        long firstFreeDay(long day, int nights) {
+            if (calendar.covers(day, day + nights)) {
+                long found = calendar.firstFree(day, nights);
+                if (found >= 0) {
+                    return found;
+                }
+                day = calendar.endDay() - nights + 1;
+            }
+            return firstFreeDayAfter(day, nights);
+        }
+
+        /**
+         * Поиск свободных ночей по списку бронирований: бронирования не пересекаются и упорядочены
+         * по дате заезда, поэтому достаточно идти по ним, пока между бронями не найдется промежуток.
+         */
+        private long firstFreeDayAfter(long day, int nights) {
+            long candidate = day;
+            for (int i = startIndex(day); i < bookings.size(); i++) {
+                BookingInfo bookingInfo = bookings.get(i);
+                if (NightCalendar.fromDay(bookingInfo) >= candidate + nights) {
+                    break;
+                }
+                candidate = Math.max(candidate, NightCalendar.toDay(bookingInfo));
+            }
+            return candidate;
+        }
+
+        /**
+         * Состояние с добавленной бронью; даты брони должны быть свободны.
+         */
+        State with(BookingInfo bookingInfo) {
+            NightCalendar copy = calendar.copy();
+            copy.mark(bookingInfo, true);
+            return new State(bookings.with(bookingInfo), copy, version + 1);
+        }
+
+        /**
+         * Состояние без брони. Соседние брони отмечаются в календаре заново:
+         * если выезд и заезд приходятся на один день, ночь этого дня принадлежит обеим броням.
+         */
+        State without(BookingInfo bookingInfo) {
+            long from = bookingInfo.getFromDate().getTime();
+            BookingTree rest = bookings.without(from);
+            NightCalendar copy = calendar.copy();
+            copy.mark(bookingInfo, false);
+            BookingInfo before = rest.lower(from);
+            if (before != null) {
+                copy.mark(before, true);
+            }
+            BookingInfo after = rest.higher(from);
+            if (after != null) {
+                copy.mark(after, true);
+            }
+            return new State(rest, copy, version + 1);
+        }
+
+        State withVersion(long version) {
+            return new State(bookings, calendar, version);
+        }
+
+        /**
+         * Состояние со сдвинутым горизонтом календаря: брони, попавшие в новые дни, отмечаются заново.
+         */
+        State rolled() {
+            NightCalendar copy = calendar.copy();
+            long added = copy.roll();
+            if (added >= 0) {
+                for (int i = startIndex(added); i < bookings.size(); i++) {
+                    BookingInfo bookingInfo = bookings.get(i);
+                    if (NightCalendar.fromDay(bookingInfo) >= copy.endDay()) {
+                        break;
+                    }
+                    copy.mark(bookingInfo, true);
+                }
+            }
+            return new State(bookings, copy, version);
+        }
+
+        /**
+         * Номер первой брони, которая может занимать ночь дня day.
+         */
+        private int startIndex(long day) {
+            BookingInfo floor = bookings.floor(NightCalendar.startOfDay(day));
+            return floor == null ? 0 : bookings.rank(floor.getFromDate().getTime());
+        }
+    }
+}
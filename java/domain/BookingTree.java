@@ -0,0 +1,265 @@
+package domain;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Неизменяемое упорядоченное по времени заезда множество бронирований - декартово дерево (treap)
+ * с копированием пути: добавление и удаление брони создают новое дерево из O(log n) новых узлов,
+ * остальные узлы общие со старым деревом. Поэтому старое дерево можно продолжать читать
+ * из других потоков без блокировок, пока публикуется новое.
+ *
+ * Приоритет узла вычисляется из ключа, поэтому форма дерева не зависит от порядка вставки
+ * и генератор случайных чисел не нужен. Узлы хранят размер поддерева для доступа по индексу.
+ */
+final class BookingTree implements Iterable<BookingInfo> {
+
+    static final BookingTree EMPTY = new BookingTree(null);
+
+    private final Node root;
+
+    private BookingTree(Node root) {
+        this.root = root;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Бронь с заданным временем заезда или null.
+     */
+    BookingInfo get(long key) {
+        Node node = root;
+        while (node != null && node.key != key) {
+            node = key < node.key ? node.left : node.right;
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Бронь с заданным номером в порядке дат заезда.
+     */
+    BookingInfo get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            int left = size(node.left);
+            if (index == left) {
+                return node.value;
+            }
+            if (index < left) {
+                node = node.left;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Количество броней с временем заезда меньше key.
+     */
+    int rank(long key) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            if (key <= node.key) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Бронь с наибольшим временем заезда, не большим key, или null.
+     */
+    BookingInfo floor(long key) {
+        Node found = null;
+        for (Node node = root; node != null; ) {
+            if (node.key <= key) {
+                found = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return found == null ? null : found.value;
+    }
+
+    /**
+     * Бронь с наибольшим временем заезда, меньшим key, или null.
+     */
+    BookingInfo lower(long key) {
+        return key == Long.MIN_VALUE ? null : floor(key - 1);
+    }
+
+    /**
+     * Бронь с наименьшим временем заезда, большим key, или null.
+     */
+    BookingInfo higher(long key) {
+        Node found = null;
+        for (Node node = root; node != null; ) {
+            if (node.key > key) {
+                found = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return found == null ? null : found.value;
+    }
+
+    /**
+     * Дерево с добавленной бронью; брони с тем же временем заезда в дереве быть не должно.
+     */
+    BookingTree with(BookingInfo bookingInfo) {
+        return new BookingTree(insert(root, new Node(bookingInfo, null, null)));
+    }
+
+    /**
+     * Дерево без брони с заданным временем заезда.
+     */
+    BookingTree without(long key) {
+        Node removed = remove(root, key);
+        return removed == root ? this : new BookingTree(removed);
+    }
+
+    BookingInfo[] toArray() {
+        BookingInfo[] array = new BookingInfo[size()];
+        int i = 0;
+        for (BookingInfo bookingInfo : this) {
+            array[i++] = bookingInfo;
+        }
+        return array;
+    }
+
+    /**
+     * Обход броней в порядке дат заезда.
+     */
+    @Override
+    public Iterator<BookingInfo> iterator() {
+        Deque<Node> path = new ArrayDeque<>();
+        pushLeft(path, root);
+        return new Iterator<BookingInfo>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public BookingInfo next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                pushLeft(path, node.right);
+                return node.value;
+            }
+        };
+    }
+
+    private static void pushLeft(Deque<Node> path, Node node) {
+        for (; node != null; node = node.left) {
+            path.push(node);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added.key);
+            return added.with(parts[0], parts[1]);
+        }
+        return added.key < node.key
+                ? node.with(insert(node.left, added), node.right)
+                : node.with(node.left, insert(node.right, added));
+    }
+
+    private static Node remove(Node node, long key) {
+        if (node == null) {
+            return null;
+        }
+        if (key == node.key) {
+            return merge(node.left, node.right);
+        }
+        if (key < node.key) {
+            Node left = remove(node.left, key);
+            return left == node.left ? node : node.with(left, node.right);
+        }
+        Node right = remove(node.right, key);
+        return right == node.right ? node : node.with(node.left, right);
+    }
+
+    /**
+     * Делит дерево на узлы с ключами меньше key и остальные.
+     */
+    private static Node[] split(Node node, long key) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (node.key < key) {
+            Node[] parts = split(node.right, key);
+            parts[0] = node.with(node.left, parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        parts[1] = node.with(parts[1], node.right);
+        return parts;
+    }
+
+    /**
+     * Объединяет деревья, все ключи left меньше ключей right.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return left.priority > right.priority
+                ? left.with(left.left, merge(left.right, right))
+                : right.with(merge(left, right.left), right.right);
+    }
+
+    private static final class Node {
+        private final long key;
+        private final int priority;
+        private final BookingInfo value;
+        private final Node left;
+        private final Node right;
+        private final int size;
+
+        private Node(BookingInfo value, Node left, Node right) {
+            this.key = value.getFromDate().getTime();
+            this.priority = priority(key);
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        private Node with(Node left, Node right) {
+            return new Node(value, left, right);
+        }
+
+        private static int priority(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -9,14 +9,27 @@ import java.util.List;
  * id отеля генерируется автоматически при создании экземпляра класса.
  */
 public class Hotel implements Serializable {
+    private static final long serialVersionUID = -25677527347026919L;
+
     private final long id;
     private String cityRegister;
     private String name;
     private String city;
     private List<Room> roomList = new ArrayList<>();
+    private transient volatile boolean dirty = true;
 
     public Hotel(String cityRegister, String name, String city) {
-        this.id = IdGenerator.getId(this);
+        this.id = IdGenerator.nextHotelId();
+        this.cityRegister = cityRegister;
+        this.name = name;
+        this.city = city;
+    }
+
+    /**
+     * Восстанавливает отель с уже назначенным id (при чтении из базы данных).
+     */
+    public Hotel(long id, String cityRegister, String name, String city) {
+        this.id = id;
         this.cityRegister = cityRegister;
         this.name = name;
         this.city = city;
@@ -32,6 +45,7 @@ public class Hotel implements Serializable {
 
     public void setName(String name) {
         this.name = name;
+        this.dirty = true;
     }
 
     public String getCity() {
@@ -40,6 +54,7 @@ public class Hotel implements Serializable {
 
     public void setCity(String city) {
         this.city = city;
+        this.dirty = true;
     }
 
     public List<Room> getRoomList() {
@@ -48,12 +63,29 @@ public class Hotel implements Serializable {
 
     public void setRoomList(List<Room> roomList) {
         this.roomList = roomList;
+        this.dirty = true;
     }
 
     public String getCityRegister() {
         return cityRegister;
     }
 
+    /**
+     * Проверяет, менялись ли данные отеля (без учета комнат) с момента последнего сохранения.
+     *
+     * @return <tt>true</tt> если данные отеля изменены или отель еще не сохранялся
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Отмечает данные отеля как сохраненные.
+     */
+    public void markClean() {
+        this.dirty = false;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
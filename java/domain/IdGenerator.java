@@ -3,20 +3,36 @@ package domain;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Класс служит для генерации уникальных ID номеров для таких сущностей,
- * как Отель, Команата, Юзер.
+ * как Отель, Команата, Юзер, а также для номеров заказов.
+ *
+ * ID выдаются из блоков (схема high-low): для каждой сущности в файле хранится граница
+ * зарезервированного блока, а ID внутри блока выдаются счетчиком AtomicLong без блокировок
+ * и без обращения к диску. Когда блок заканчивается, следующий блок резервируется одной записью в файл.
+ * Граница нового блока записывается в файл до выдачи ID из него, поэтому после перезапуска
+ * (в том числе после сбоя) неиспользованный остаток блока пропускается и ID остаются уникальными.
+ * Размер блока задается системным свойством 'booking.idBlock'.
  */
 public final class IdGenerator {
     //D:\JavaCore\GoIT_Group9\booking_project\src\resources\idCounters.properties
     private static String filename = "./booking_project/src/resources/idCounters.properties";
-    private static Properties properties = new Properties();
-    private static long hotelsCounter;
-    private static long ordersCounter;
-    private static long roomsCounter;
-    private static long usersCounter;
+    public static final String BLOCK_PROPERTY = "booking.idBlock";
+    private static final long BLOCK_SIZE = Math.max(1, Long.getLong(BLOCK_PROPERTY, 100));
+    private static final Properties properties = new Properties();
+    private static final Counter hotelsCounter = new Counter("hotelsCounter");
+    private static final Counter ordersCounter = new Counter("ordersCounter");
+    private static final Counter roomsCounter = new Counter("roomsCounter");
+    private static final Counter usersCounter = new Counter("usersCounter");
+    private static final Counter[] counters = {hotelsCounter, ordersCounter, roomsCounter, usersCounter};
 
     static {
         readFieldsFromFile();
@@ -31,31 +47,89 @@ public final class IdGenerator {
     }
 
     /**
-     * Медот для присваивания ID
+     * Медот для присваивания ID отелю
      *
-     * @param object обьект которому будет назначен ID
      * @return уникальный ID
      */
-    public static long getId(Object object) {
-        long answer = 0;
-        String className = object.getClass().getSimpleName();
-
-        switch (className) {
-            case "Hotel":
-                answer = hotelsCounter++;
-                writeFieldsToFile();
-                break;
-            case "Room":
-                answer = roomsCounter++;
-                writeFieldsToFile();
-                break;
-            case "User":
-                answer = usersCounter++;
-                writeFieldsToFile();
-                break;
+    public static long nextHotelId() {
+        return hotelsCounter.next();
+    }
+
+    /**
+     * Медот для присваивания ID комнате
+     *
+     * @return уникальный ID
+     */
+    public static long nextRoomId() {
+        return roomsCounter.next();
+    }
+
+    /**
+     * Медот для присваивания ID пользователю
+     *
+     * @return уникальный ID
+     */
+    public static long nextUserId() {
+        return usersCounter.next();
+    }
+
+    /**
+     * Медот для присваивания номера заказу.
+     * Номер 0 не выдается: он означает, что номер заказу еще не присвоен.
+     *
+     * @return уникальный номер заказа
+     */
+    public static long nextOrderId() {
+        long id = ordersCounter.next();
+        return id != 0 ? id : ordersCounter.next();
+    }
+
+    /**
+     * Счетчик ID одной сущности.
+     * next - следующий ID, limit - граница зарезервированного (записанного в файл) блока.
+     */
+    private static final class Counter {
+        private final String key;
+        private final AtomicLong next = new AtomicLong();
+        private volatile long limit;
+
+        private Counter(String key) {
+            this.key = key;
+        }
+
+        private long next() {
+            long id = next.getAndIncrement();
+            if (id >= limit) {
+                reserve(this, id);
+            }
+            return id;
         }
 
-        return answer;
+        private void init(long value) {
+            next.set(value);
+            limit = value;
+        }
+    }
+
+    /**
+     * Резервирует блоки, пока выданный ID не окажется внутри зарезервированной области.
+     * Новая граница сначала записывается в файл и только после успешной записи начинает действовать:
+     * если запись не удалась, ID из нового блока не выдаются, а после сбоя следующий запуск
+     * продолжит с записанной границы, за которой ID еще не выдавались.
+     *
+     * @throws UncheckedIOException если границу не удалось записать в файл
+     */
+    private static synchronized void reserve(Counter counter, long id) {
+        if (id < counter.limit) {
+            return;
+        }
+        long limit = (id / BLOCK_SIZE + 1) * BLOCK_SIZE;
+        try {
+            writeFieldsToFile(counter, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reserve " + counter.key + " block up to " + limit, e);
+        }
+        counter.limit = limit;
     }
 
     /**
@@ -68,25 +142,30 @@ public final class IdGenerator {
             e.printStackTrace();
         }
 
-        hotelsCounter = Long.parseLong((String) properties.get("hotelsCounter"));
-        ordersCounter = Long.parseLong((String) properties.get("ordersCounter"));
-        roomsCounter = Long.parseLong((String) properties.get("roomsCounter"));
-        usersCounter = Long.parseLong((String) properties.get("usersCounter"));
+        for (Counter counter : counters) {
+            counter.init(Long.parseLong(properties.getProperty(counter.key, "0")));
+        }
     }
 
     /**
-     * метод, загружающий значение ID счетчиков в файла
+     * метод, записывающий границы зарезервированных блоков ID в файл: через временный файл,
+     * который сбрасывается на диск и атомарно переименовывается, чтобы сбой во время записи
+     * не оставил файл пустым
+     *
+     * @param reserved счетчик, для которого резервируется новый блок
+     * @param limit    новая граница блока этого счетчика
      */
-    private static void writeFieldsToFile() {
-        try (FileOutputStream fos = new FileOutputStream(filename)) {
-            properties.setProperty("hotelsCounter", String.valueOf(hotelsCounter));
-            properties.setProperty("ordersCounter", String.valueOf(ordersCounter));
-            properties.setProperty("roomsCounter", String.valueOf(roomsCounter));
-            properties.setProperty("usersCounter", String.valueOf(usersCounter));
+    private static void writeFieldsToFile(Counter reserved, long limit) throws IOException {
+        for (Counter counter : counters) {
+            properties.setProperty(counter.key, String.valueOf(counter == reserved ? limit : counter.limit));
+        }
 
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
             properties.store(fos, "");
-        } catch (IOException e) {
-            e.printStackTrace();
+            fos.getFD().sync();
         }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 }
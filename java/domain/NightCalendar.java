@@ -0,0 +1,175 @@
+package domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * Календарь ночей комнаты: один бит на ночь, бит установлен, если ночь занята.
+ * Календарь покрывает скользящий горизонт в booking.calendarDays дней (по умолчанию 730)
+ * от начала текущей 64-дневной группы; когда группа заканчивается, горизонт сдвигается
+ * на целое число слов BitSet, а появившиеся в конце дни заполняются по списку бронирований.
+ *
+ * Бронь занимает ночи с дня заезда (с округлением вниз) до дня выезда (с округлением вверх),
+ * поэтому для дат без времени (как их вводит пользователь) ответ календаря совпадает с проверкой
+ * по списку бронирований. Даты со временем и даты за пределами горизонта проверяет BookingSchedule.
+ *
+ * Ночь может быть занята двумя бронями только если время выезда одной и заезда другой
+ * приходятся на один день, поэтому после снятия брони BookingSchedule заново отмечает соседние брони.
+ *
+ * Календарь, опубликованный в состоянии BookingSchedule, больше не меняется:
+ * BookingSchedule изменяет и сдвигает копию (copy) и публикует новое состояние.
+ */
+class NightCalendar {
+
+    private static final int DAYS = Math.max(Integer.getInteger("booking.calendarDays", 730), Long.SIZE);
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final ZoneRules ZONE = ZoneId.systemDefault().getRules();
+
+    private BitSet nights = new BitSet(DAYS);
+    private long firstDay;
+    private long rollAt;
+
+    NightCalendar() {
+        this.firstDay = alignedToday();
+        this.rollAt = startOfDay(firstDay + Long.SIZE);
+    }
+
+    private NightCalendar(NightCalendar calendar) {
+        this.nights = (BitSet) calendar.nights.clone();
+        this.firstDay = calendar.firstDay;
+        this.rollAt = calendar.rollAt;
+    }
+
+    NightCalendar copy() {
+        return new NightCalendar(this);
+    }
+
+    /**
+     * Наступила ли новая 64-дневная группа, то есть нужно ли сдвинуть горизонт (roll).
+     */
+    boolean needsRoll() {
+        return System.currentTimeMillis() >= rollAt;
+    }
+
+    /**
+     * @return день, следующий за последним днем горизонта
+     */
+    long endDay() {
+        return firstDay + DAYS;
+    }
+
+    /**
+     * Покрывает ли календарь все ночи с fromDay до toDay (не включая toDay).
+     */
+    boolean covers(long fromDay, long toDay) {
+        return fromDay >= firstDay && toDay <= endDay();
+    }
+
+    /**
+     * Отмечает ночи брони как занятые или свободные (часть брони за горизонтом пропускается).
+     */
+    void mark(BookingInfo bookingInfo, boolean busy) {
+        int from = (int) Math.max(fromDay(bookingInfo) - firstDay, 0);
+        int to = (int) Math.min(toDay(bookingInfo) - firstDay, DAYS);
+        if (from < to) {
+            nights.set(from, to, busy);
+        }
+    }
+
+    void clear() {
+        nights.clear();
+    }
+
+    /**
+     * Проверяет, свободны ли все ночи с fromDay до toDay; дни должны быть внутри горизонта.
+     */
+    boolean isFree(long fromDay, long toDay) {
+        int busy = nights.nextSetBit((int) (fromDay - firstDay));
+        return busy < 0 || busy >= toDay - firstDay;
+    }
+
+    /**
+     * Ищет первые nights подряд свободных ночей, начиная с дня fromDay.
+     *
+     * @return день заезда или -1, если таких ночей до конца горизонта нет
+     */
+    long firstFree(long fromDay, int nights) {
+        int day = (int) (Math.max(fromDay, firstDay) - firstDay);
+        while (day + nights <= DAYS) {
+            day = this.nights.nextClearBit(day);
+            int busy = this.nights.nextSetBit(day);
+            if (busy < 0 || busy - day >= nights) {
+                return day + nights <= DAYS ? firstDay + day : -1;
+            }
+            day = busy;
+        }
+        return -1;
+    }
+
+    /**
+     * Сдвигает горизонт, если наступила новая 64-дневная группа.
+     *
+     * @return первый день, который появился в конце горизонта, или -1, если горизонт не сдвинулся
+     */
+    long roll() {
+        if (!needsRoll()) {
+            return -1;
+        }
+        long today = alignedToday();
+        rollAt = startOfDay(today + Long.SIZE);
+        if (today <= firstDay) {
+            return -1;
+        }
+        long oldEnd = endDay();
+        int shift = (int) Math.min(today - firstDay, DAYS);
+        nights = nights.get(shift, Math.max(shift, nights.length()));
+        firstDay = today;
+        return Math.max(oldEnd, firstDay);
+    }
+
+    /**
+     * День заезда брони (с округлением вниз).
+     */
+    static long fromDay(BookingInfo bookingInfo) {
+        return toDay(bookingInfo.getFromDate());
+    }
+
+    /**
+     * День выезда брони (с округлением вверх, если выезд не в начале дня).
+     */
+    static long toDay(BookingInfo bookingInfo) {
+        Date toDate = bookingInfo.getToDate();
+        return startsDay(toDate) ? toDay(toDate) : toDay(toDate) + 1;
+    }
+
+    /**
+     * Номер дня от 01.01.1970 в часовом поясе системы.
+     */
+    static long toDay(Date date) {
+        return Math.floorDiv(localMillis(date), DAY_MILLIS);
+    }
+
+    /**
+     * Приходится ли дата ровно на начало дня (дата без времени).
+     */
+    static boolean startsDay(Date date) {
+        return Math.floorMod(localMillis(date), DAY_MILLIS) == 0;
+    }
+
+    static long startOfDay(long day) {
+        return LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long localMillis(Date date) {
+        long millis = date.getTime();
+        return millis + ZONE.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L;
+    }
+
+    private static long alignedToday() {
+        return Math.floorDiv(LocalDate.now().toEpochDay(), Long.SIZE) * Long.SIZE;
+    }
+}
@@ -1,23 +1,48 @@
 package domain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.util.Date;
 import java.util.List;
 
 /**
  * Класс инкапсулирует абстракцию комнаты;
  * id комнаты генерируется автоматически при создании экземпляра класса.
+ * Бронирования комнаты хранятся в BookingSchedule - списке непересекающихся броней,
+ * упорядоченном по дате заезда, вместе с календарем занятых ночей.
+ * Список заменяет свое неизменяемое состояние через compareAndSet, поэтому проверка дат
+ * и чтение бронирований не блокируются, а у комнаты есть номер версии бронирований (getVersion).
  */
 public class Room implements Serializable {
+    private static final long serialVersionUID = -7752763708182550659L;
+
     private final long id;
     private final int roomNumber;
     private List<BookingInfo> bookingInfoList;
     private int persons;
     private double price;
+    private transient volatile boolean dirty = true;
+    /**
+     * Номер версии бронирований на момент последнего сохранения (markClean).
+     */
+    private transient volatile long cleanVersion = -1;
 
     public Room(int roomNumber, int persons, double price) {
-        this.bookingInfoList = new ArrayList<>();
-        this.id = IdGenerator.getId(this);
+        this.bookingInfoList = new BookingSchedule();
+        this.id = IdGenerator.nextRoomId();
+        this.roomNumber = roomNumber;
+        this.persons = persons;
+        this.price = price;
+    }
+
+    /**
+     * Восстанавливает комнату с уже назначенным id (при чтении из базы данных).
+     */
+    public Room(long id, int roomNumber, int persons, double price) {
+        this.bookingInfoList = new BookingSchedule();
+        this.id = id;
         this.roomNumber = roomNumber;
         this.persons = persons;
         this.price = price;
@@ -37,6 +62,7 @@ public class Room implements Serializable {
 
     public void setPersons(int persons) {
         this.persons = persons;
+        this.dirty = true;
     }
 
     public double getPrice() {
@@ -45,14 +71,52 @@ public class Room implements Serializable {
 
     public void setPrice(double price) {
         this.price = price;
+        this.dirty = true;
     }
 
     public List<BookingInfo> getBookingInfoList() {
         return bookingInfoList;
     }
 
+    /**
+     * Заменяет бронирования комнаты копией переданного списка.
+     *
+     * @param bookingInfoList бронирования комнаты
+     * @throws IllegalArgumentException если бронирования пересекаются
+     */
     public void setBookingInfoList(List<BookingInfo> bookingInfoList) {
-        this.bookingInfoList = bookingInfoList;
+        this.bookingInfoList = new BookingSchedule(bookingInfoList, getVersion() + 1);
+    }
+
+    /**
+     * Номер версии бронирований комнаты: увеличивается при каждом добавлении, снятии
+     * или замене бронирований, поэтому по нему можно узнать, менялись ли брони с момента чтения.
+     *
+     * @return long номер версии
+     */
+    public long getVersion() {
+        return ((BookingSchedule) this.bookingInfoList).version();
+    }
+
+    /**
+     * Проверяет, менялись ли данные комнаты с момента последнего сохранения.
+     *
+     * Изменения бронирований определяются по номеру версии (getVersion), поэтому учитываются
+     * любые изменения списка бронирований, в том числе снятие брони через getBookingInfoList().remove
+     * и замена списка через setBookingInfoList.
+     *
+     * @return <tt>true</tt> если данные комнаты изменены или комната еще не сохранялась
+     */
+    public boolean isDirty() {
+        return dirty || getVersion() != cleanVersion;
+    }
+
+    /**
+     * Отмечает данные комнаты как сохраненные.
+     */
+    public void markClean() {
+        this.cleanVersion = getVersion();
+        this.dirty = false;
     }
 
     /**
@@ -62,43 +126,81 @@ public class Room implements Serializable {
      * @return - true если комната на указанные даты свободна, false - если занята
      */
     public boolean isFree(BookingInfo bookingInfo) {
-        boolean answer = true;
-
-        if (this.bookingInfoList.size() != 0) {
-            for (BookingInfo bookItem : this.bookingInfoList) {
-                if (!bookingInfo.getFromDate().equals(bookItem.getFromDate())) {
-                    if (bookingInfo.getFromDate().after(bookItem.getFromDate())) {
-                        if (bookingInfo.getFromDate().before(bookItem.getToDate())) {
-                            answer = false;
-                        }
-                    }
-
-                    if (bookingInfo.getFromDate().before(bookItem.getFromDate())) {
-                        if (bookingInfo.getToDate().after(bookItem.getFromDate())) {
-                            answer = false;
-                        }
-                    }
-                } else {
-                    answer = false;
-                }
-            }
-        }
+        return ((BookingSchedule) this.bookingInfoList).isFree(bookingInfo);
+    }
 
-        return answer;
+    /**
+     * Проверяет, свободна ли комната с даты заезда до даты выезда.
+     *
+     * @param fromDate дата заезда
+     * @param toDate   дата выезда
+     * @return true если комната на указанные даты свободна, false - если занята
+     */
+    public boolean isFree(Date fromDate, Date toDate) {
+        return ((BookingSchedule) this.bookingInfoList).isFree(fromDate, toDate);
+    }
+
+    /**
+     * Ищет ближайшие свободные даты для проживания заданной длины.
+     *
+     * @param fromDate день, начиная с которого нужно искать
+     * @param nights   количество ночей
+     * @return Date дата заезда (начало дня), с которой комната свободна nights ночей подряд
+     */
+    public Date firstFreeWindow(Date fromDate, int nights) {
+        if (nights <= 0) {
+            throw new IllegalArgumentException("Wrong number of nights: " + nights);
+        }
+        long day = ((BookingSchedule) this.bookingInfoList).firstFreeDay(fromDate, nights);
+        return new Date(NightCalendar.startOfDay(day));
     }
 
     /**
-     * Метод добавляет бронирование комнтаы определенным юзером на указанные даты
+     * Метод добавляет бронирование комнтаы определенным юзером на указанные даты.
+     * Если брони еще не присвоен номер, она получает номер из IdGenerator.nextOrderId
+     * только после того, как бронь добавлена, поэтому неудачные попытки не расходуют номера заказов.
+     * Даты проверяются по текущему состоянию списка бронирований, и бронь добавляется
+     * только если состояние с тех пор не изменилось (compareAndSet); иначе проверка повторяется
+     * по новому состоянию. Поэтому две брони с пересекающимися датами из разных потоков
+     * не могут быть добавлены обе, а проигравший поток узнает о занятых датах без ожидания блокировки.
      *
      * @param bookingInfo - id пользователя, дата заезда, дата выезда
      * @return - true если комната забронирована, false - если комната на указанные даты занята
      */
     public boolean bookTheRoom(BookingInfo bookingInfo) {
-        boolean answer = isFree(bookingInfo);
-        if (answer) {
-            this.bookingInfoList.add(bookingInfo);
+        if (!isFree(bookingInfo)) {
+            return false;
+        }
+        BookingSchedule schedule = (BookingSchedule) this.bookingInfoList;
+        if (!schedule.addIfFree(bookingInfo)) {
+            return false;
+        }
+        if (bookingInfo.getId() == 0) {
+            try {
+                bookingInfo.setId(IdGenerator.nextOrderId());
+            } catch (UncheckedIOException e) {
+                schedule.remove(bookingInfo);
+                throw e;
+            }
+        }
+        this.dirty = true;
+        return true;
+    }
+
+    /**
+     * В старых файлах базы данных бронирования записаны как ArrayList и не имеют номеров;
+     * такие брони получают номера при чтении, а хранилище сразу переписывает файл в новом формате
+     * вместе с номерами (DataBaseIO.isOutdatedDB).
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (BookingInfo bookingInfo : bookingInfoList) {
+            if (bookingInfo.getId() == 0) {
+                bookingInfo.setId(IdGenerator.nextOrderId());
+                this.dirty = true;
+            }
         }
-        return answer;
+        this.bookingInfoList = new BookingSchedule(bookingInfoList);
     }
 
     @Override
@@ -0,0 +1,136 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Отсортированные индексы комнат отеля по цене и по количеству мест.
+ *
+ * Для каждого количества мест хранится массив комнат, упорядоченных по цене, и общий массив
+ * всех комнат по цене. Запрос "не меньше persons мест и цена не больше maxPrice" находит двоичным поиском
+ * начало каждого массива с подходящим количеством мест и сливает их по цене, поэтому выполняется
+ * за O(c * log n + k * log k),
+ * где c - количество различных значений мест (обычно несколько), k - количество найденных комнат.
+ *
+ * Индекс неизменяем: цена и количество мест запоминаются при построении, поэтому после изменения
+ * комнат отеля индекс строится заново (одна сортировка, O(n * log n)). Так его использует снимок списка
+ * отелей (CatalogSnapshot): индекс большого отеля строится вместе с данными отеля в снимке и переходит
+ * в следующие снимки, пока комнаты отеля не изменятся.
+ */
+public final class RoomIndex {
+
+    private static final Comparator<Entry> BY_PRICE = Comparator.<Entry>comparingDouble(entry -> entry.price)
+            .thenComparingInt(entry -> entry.roomNumber);
+
+    private final Entry[] byPrice;
+    private final TreeMap<Integer, Entry[]> byPersons = new TreeMap<>();
+
+    /**
+     * @param roomList комнаты отеля
+     */
+    public RoomIndex(Collection<Room> roomList) {
+        byPrice = new Entry[roomList.size()];
+        int i = 0;
+        for (Room room : roomList) {
+            byPrice[i++] = new Entry(room);
+        }
+        Arrays.sort(byPrice, BY_PRICE);
+
+        TreeMap<Integer, List<Entry>> groups = new TreeMap<>();
+        for (Entry entry : byPrice) {
+            groups.computeIfAbsent(entry.persons, persons -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<Integer, List<Entry>> group : groups.entrySet()) {
+            byPersons.put(group.getKey(), group.getValue().toArray(new Entry[0]));
+        }
+    }
+
+    /**
+     * Комнаты, в которых не меньше persons мест и цена не больше maxPrice.
+     *
+     * @param persons  минимальное количество мест
+     * @param maxPrice максимальная цена
+     * @return List<Room> подходящие комнаты от самой дешевой к самой дорогой
+     */
+    public List<Room> find(int persons, double maxPrice) {
+        if (byPersons.isEmpty() || persons <= byPersons.firstKey()) {
+            return rooms(byPrice, upTo(byPrice, maxPrice));
+        }
+        Collection<Entry[]> groups = byPersons.tailMap(persons, true).values();
+        if (groups.size() == 1) {
+            Entry[] group = groups.iterator().next();
+            return rooms(group, upTo(group, maxPrice));
+        }
+        List<Entry> found = new ArrayList<>();
+        for (Entry[] group : groups) {
+            found.addAll(Arrays.asList(group).subList(0, upTo(group, maxPrice)));
+        }
+        found.sort(BY_PRICE);
+        return rooms(found.toArray(new Entry[0]), found.size());
+    }
+
+    /**
+     * Самая дешевая комната, в которой не меньше persons мест.
+     *
+     * @param persons минимальное количество мест
+     * @return Optional<Room> самая дешевая подходящая комната
+     */
+    public Optional<Room> cheapest(int persons) {
+        Entry cheapest = null;
+        for (Entry[] group : byPersons.tailMap(persons, true).values()) {
+            Entry first = group[0];
+            if (cheapest == null || BY_PRICE.compare(first, cheapest) < 0) {
+                cheapest = first;
+            }
+        }
+        return cheapest == null ? Optional.empty() : Optional.of(cheapest.room);
+    }
+
+    /**
+     * Количество комнат в начале массива, упорядоченного по цене, с ценой не больше maxPrice.
+     */
+    private static int upTo(Entry[] sorted, double maxPrice) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].price <= maxPrice) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static List<Room> rooms(Entry[] found, int count) {
+        List<Room> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(found[i].room);
+        }
+        return result;
+    }
+
+    /**
+     * Комната с ценой и количеством мест на момент индексации.
+     */
+    private static final class Entry {
+        private final Room room;
+        private final int roomNumber;
+        private final int persons;
+        private final double price;
+
+        private Entry(Room room) {
+            this.room = room;
+            this.roomNumber = room.getRoomNumber();
+            this.persons = room.getPersons();
+            this.price = room.getPrice();
+        }
+    }
+}
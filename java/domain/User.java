@@ -6,13 +6,25 @@ import java.io.Serializable;
  * Класс описывает пользователя, который может совершать операции в системе (бронировать комнаты)
  */
 public class User implements Serializable {
+    private static final long serialVersionUID = 4558839109113260983L;
+
     private final long id;
     private final String userLogin;
     private String userName;
     private String userLastName;
 
     public User(String userLogin, String userName, String userLastName) {
-        this.id = IdGenerator.getId(this);
+        this.id = IdGenerator.nextUserId();
+        this.userLogin = userLogin;
+        this.userName = userName;
+        this.userLastName = userLastName;
+    }
+
+    /**
+     * Восстанавливает пользователя с уже назначенным id (при чтении из базы данных).
+     */
+    public User(long id, String userLogin, String userName, String userLastName) {
+        this.id = id;
         this.userLogin = userLogin;
         this.userName = userName;
         this.userLastName = userLastName;
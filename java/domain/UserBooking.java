@@ -0,0 +1,58 @@
+package domain;
+
+/**
+ * Бронь пользователя вместе с отелем и комнатой, в которых она сделана.
+ */
+public class UserBooking {
+
+    private final Hotel hotel;
+    private final Room room;
+    private final BookingInfo bookingInfo;
+
+    public UserBooking(Hotel hotel, Room room, BookingInfo bookingInfo) {
+        this.hotel = hotel;
+        this.room = room;
+        this.bookingInfo = bookingInfo;
+    }
+
+    public Hotel getHotel() {
+        return hotel;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public BookingInfo getBookingInfo() {
+        return bookingInfo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        UserBooking that = (UserBooking) o;
+
+        if (!hotel.equals(that.hotel)) return false;
+        if (!room.equals(that.room)) return false;
+        return bookingInfo.equals(that.bookingInfo);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hotel.hashCode();
+        result = 31 * result + room.hashCode();
+        result = 31 * result + bookingInfo.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "UserBooking{" +
+                "hotel=" + hotel.getName() +
+                ", roomNumber=" + room.getRoomNumber() +
+                ", bookingInfo=" + bookingInfo +
+                '}';
+    }
+}
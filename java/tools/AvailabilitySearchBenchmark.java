@@ -0,0 +1,113 @@
+package tools;
+
+import dao.HotelCatalog;
+import domain.AvailableRoom;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Измеряет время поиска свободных комнат HotelCatalog.findFreeRooms по городу, датам,
+ * количеству мест и цене и сравнивает его с перебором всех отелей и комнат с проверкой
+ * каждой комнаты (как пришлось бы искать через getAllHotels и getAllRooms).
+ * Комнаты заполняются случайными бронями на ближайший год.
+ * Аргументы: количество отелей (по умолчанию 10000), комнат в отеле (100), броней на комнату (5),
+ * городов (50).
+ */
+public class AvailabilitySearchBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int QUERIES = 100;
+
+    public static void main(String[] args) throws Exception {
+        int hotels = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int bookings = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int cities = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        Random random = new Random(1);
+        LocalDate today = LocalDate.now();
+        List<Hotel> hotelList = new ArrayList<>(hotels);
+        long roomId = 0;
+        for (int h = 0; h < hotels; h++) {
+            Hotel hotel = new Hotel(h, "R-" + h, "Hotel " + h, "City " + (h % cities));
+            for (int r = 1; r <= rooms; r++) {
+                Room room = new Room(roomId++, r, 1 + random.nextInt(4), 50 + random.nextInt(200));
+                for (int b = 0; b < bookings; b++) {
+                    LocalDate from = today.plusDays(random.nextInt(365));
+                    room.bookTheRoom(new BookingInfo("user" + b, toDate(from), toDate(from.plusDays(1 + random.nextInt(5)))));
+                }
+                hotel.getRoomList().add(room);
+            }
+            hotelList.add(hotel);
+        }
+        HotelCatalog catalog = new HotelCatalog(hotelList);
+        System.out.println("Catalog: " + hotels + " hotels x " + rooms + " rooms, " + bookings
+                + " bookings per room, " + cities + " cities, " + QUERIES + " queries per round");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String[] city = new String[QUERIES];
+            Date[] from = new Date[QUERIES];
+            Date[] to = new Date[QUERIES];
+            int[] persons = new int[QUERIES];
+            double[] maxPrice = new double[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                LocalDate day = today.plusDays(random.nextInt(365));
+                city[i] = "city " + random.nextInt(cities);
+                from[i] = toDate(day);
+                to[i] = toDate(day.plusDays(1 + random.nextInt(7)));
+                persons[i] = 1 + random.nextInt(4);
+                maxPrice[i] = 80 + random.nextInt(150);
+            }
+
+            long[] found = new long[3];
+            long scan = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                for (Hotel hotel : hotelList) {
+                    if (!hotel.getCity().equalsIgnoreCase(city[i])) {
+                        continue;
+                    }
+                    for (Room room : hotel.getRoomList()) {
+                        if (room.isFree(new BookingInfo(null, from[i], to[i]))
+                                && room.getPersons() >= persons[i] && room.getPrice() <= maxPrice[i]) {
+                            found[0]++;
+                        }
+                    }
+                }
+            }
+            scan = System.nanoTime() - scan;
+
+            long inCity = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                found[1] += catalog.findFreeRooms(city[i], from[i], to[i], persons[i], maxPrice[i]).size();
+            }
+            inCity = System.nanoTime() - inCity;
+
+            long everywhere = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                List<AvailableRoom> result = catalog.findFreeRooms(null, from[i], to[i], persons[i], maxPrice[i]);
+                found[2] += result.size();
+            }
+            everywhere = System.nanoTime() - everywhere;
+
+            if (found[0] != found[1]) {
+                throw new IllegalStateException("Results differ: " + found[0] + " and " + found[1]);
+            }
+            System.out.printf("round %d: scan %.3f ms, findFreeRooms in city %.3f ms (%d rooms), "
+                            + "in all cities %.3f ms (%d rooms) per query%n",
+                    round + 1, scan / 1e6 / QUERIES, inCity / 1e6 / QUERIES, found[1] / QUERIES,
+                    everywhere / 1e6 / QUERIES, found[2] / QUERIES);
+        }
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
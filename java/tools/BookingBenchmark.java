@@ -0,0 +1,117 @@
+package tools;
+
+import domain.BookingInfo;
+import domain.Room;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Сравнивает проверку занятости комнаты и бронирование с отменой брони
+ * в списке бронирований ArrayList (просмотр всего списка, как раньше в Room.isFree)
+ * и в Room (бронирования упорядочены по дате заезда).
+ * Комнаты заполняются непересекающимися бронями на 3 дня с интервалом в неделю.
+ * Аргументы: количество операций в раунде (по умолчанию 10000).
+ */
+public class BookingBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int[] BOOKINGS = {10, 1_000, 100_000};
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1_500_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        for (int bookings : BOOKINGS) {
+            List<BookingInfo> arrayList = new ArrayList<>(bookings);
+            Room room = new Room(0, 1, 2, 100.0);
+            for (int b = 0; b < bookings; b++) {
+                BookingInfo bookingInfo = booking("user" + b, b * 7L, 3);
+                arrayList.add(bookingInfo);
+                room.bookTheRoom(bookingInfo);
+            }
+
+            System.out.println("Room with " + bookings + " bookings, " + operations + " operations per round");
+            Random random = new Random(1);
+            for (int round = 0; round < ROUNDS; round++) {
+                BookingInfo[] requests = new BookingInfo[operations];
+                for (int i = 0; i < operations; i++) {
+                    requests[i] = booking("guest", random.nextInt(bookings * 7), 1 + random.nextInt(4));
+                }
+
+                int[] free = new int[2];
+                long listCheck = time(() -> {
+                    for (BookingInfo request : requests) {
+                        free[0] += listIsFree(arrayList, request) ? 1 : 0;
+                    }
+                });
+                long roomCheck = time(() -> {
+                    for (BookingInfo request : requests) {
+                        free[1] += room.isFree(request) ? 1 : 0;
+                    }
+                });
+                if (free[0] != free[1]) {
+                    throw new IllegalStateException("Results differ: " + free[0] + " and " + free[1]);
+                }
+
+                long listBook = time(() -> {
+                    for (BookingInfo request : requests) {
+                        if (listIsFree(arrayList, request)) {
+                            arrayList.add(request);
+                            arrayList.remove(request);
+                        }
+                    }
+                });
+                long roomBook = time(() -> {
+                    for (BookingInfo request : requests) {
+                        if (room.bookTheRoom(request)) {
+                            room.getBookingInfoList().remove(request);
+                        }
+                    }
+                });
+
+                System.out.printf("  round %d: isFree ArrayList %.3f us/op, Room %.3f us/op | "
+                                + "book+cancel ArrayList %.3f us/op, Room %.3f us/op (%d free)%n",
+                        round + 1, (double) listCheck / operations, (double) roomCheck / operations,
+                        (double) listBook / operations, (double) roomBook / operations, free[1]);
+            }
+        }
+    }
+
+    /**
+     * Прежняя реализация Room.isFree: просмотр всего списка бронирований.
+     */
+    private static boolean listIsFree(List<BookingInfo> bookingInfoList, BookingInfo bookingInfo) {
+        boolean answer = true;
+        for (BookingInfo bookItem : bookingInfoList) {
+            if (!bookingInfo.getFromDate().equals(bookItem.getFromDate())) {
+                if (bookingInfo.getFromDate().after(bookItem.getFromDate())) {
+                    if (bookingInfo.getFromDate().before(bookItem.getToDate())) {
+                        answer = false;
+                    }
+                }
+                if (bookingInfo.getFromDate().before(bookItem.getFromDate())) {
+                    if (bookingInfo.getToDate().after(bookItem.getFromDate())) {
+                        answer = false;
+                    }
+                }
+            } else {
+                answer = false;
+            }
+        }
+        return answer;
+    }
+
+    private static BookingInfo booking(String userLogin, long day, int nights) throws Exception {
+        return new BookingInfo(userLogin, new Date(START + day * DAY), new Date(START + (day + nights) * DAY));
+    }
+
+    private static long time(Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        return (System.nanoTime() - start) / 1000;
+    }
+}
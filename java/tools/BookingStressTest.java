@@ -0,0 +1,194 @@
+package tools;
+
+import controller.Controller;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Нагрузочная проверка бронирования комнат из нескольких потоков через Controller.bookRoomByUser.
+ *
+ * Проверка конфликтов: все потоки пытаются забронировать одни и те же комнаты на одни и те же даты
+ * (в разном порядке); каждая такая бронь должна получиться ровно у одного потока, а брони
+ * каждой комнаты не должны пересекаться.
+ * Проверка производительности: потоки бронируют случайные комнаты на разные даты, для каждого
+ * количества потоков выводится количество броней в секунду.
+ * В конце все брони, сделанные утилитой, снимаются по номерам.
+ *
+ * Утилита работает с базой данных приложения, способ хранения задается свойством 'booking.storage'
+ * (по умолчанию journal, так как snapshot перезаписывает файл при каждой брони).
+ * Аргументы: количество потоков через запятую (по умолчанию 1,2,4,8), броней на поток (2000).
+ */
+public class BookingStressTest {
+
+    private static final String LOGIN = "stress-test";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2090, 1, 1);
+    private static final int CONFLICT_DAYS = 20;
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        if (System.getProperty("booking.storage") == null) {
+            System.setProperty("booking.storage", "journal");
+        }
+
+        Controller controller = new Controller();
+        List<Hotel> hotels = new ArrayList<>();
+        List<Room> rooms = new ArrayList<>();
+        for (Hotel hotel : controller.getHotels()) {
+            for (Room room : hotel.getRoomList()) {
+                hotels.add(hotel);
+                rooms.add(room);
+            }
+        }
+        if (rooms.isEmpty()) {
+            System.out.println("Data base has no rooms");
+            return;
+        }
+        System.out.printf("Rooms: %d, cores: %d, storage: %s%n",
+                rooms.size(), Runtime.getRuntime().availableProcessors(), System.getProperty("booking.storage"));
+
+        ConcurrentLinkedQueue<Long> bookingIds = new ConcurrentLinkedQueue<>();
+        try {
+            int maxThreads = 0;
+            for (String threadCount : threadCounts) {
+                maxThreads = Math.max(maxThreads, Integer.parseInt(threadCount.trim()));
+            }
+            checkConflicts(controller, hotels, rooms, Math.max(2, maxThreads), bookingIds);
+
+            LocalDate firstDay = FIRST_DAY.plusDays(CONFLICT_DAYS);
+            for (String threadCount : threadCounts) {
+                int threads = Integer.parseInt(threadCount.trim());
+                long start = System.nanoTime();
+                int booked = bookRandom(controller, hotels, rooms, threads, operations, firstDay, bookingIds);
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("threads %d: %d bookings, %.0f bookings/s%n",
+                        threads, booked, booked * 1e9 / elapsed);
+                firstDay = firstDay.plusDays((long) threads * operations);
+            }
+        } finally {
+            int canceled = 0;
+            for (Long bookingId : bookingIds) {
+                if (controller.bookingCancalation(bookingId)) {
+                    canceled++;
+                }
+            }
+            controller.whenPersisted().get();
+            System.out.println("Canceled " + canceled + " of " + bookingIds.size() + " test bookings");
+        }
+    }
+
+    /**
+     * Все потоки бронируют одинаковый набор (комната, даты) в разном порядке.
+     */
+    private static void checkConflicts(Controller controller, List<Hotel> hotels, List<Room> rooms, int threads,
+                                       ConcurrentLinkedQueue<Long> bookingIds) throws Exception {
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < rooms.size() * CONFLICT_DAYS; i++) {
+            slots.add(i);
+        }
+
+        AtomicInteger booked = new AtomicInteger();
+        run(threads, thread -> {
+            List<Integer> order = new ArrayList<>(slots);
+            Collections.shuffle(order, new Random(thread));
+            for (int slot : order) {
+                int index = slot % rooms.size();
+                LocalDate day = FIRST_DAY.plusDays(slot / rooms.size());
+                long bookingId = controller.bookRoomByUser(hotels.get(index), rooms.get(index),
+                        new BookingInfo(LOGIN, toDate(day), toDate(day.plusDays(1))));
+                if (bookingId != 0) {
+                    booked.incrementAndGet();
+                    bookingIds.add(bookingId);
+                }
+            }
+            return 0;
+        });
+
+        int overlaps = 0;
+        for (Room room : rooms) {
+            List<BookingInfo> bookingInfoList = new ArrayList<>(room.getBookingInfoList());
+            for (int i = 1; i < bookingInfoList.size(); i++) {
+                if (bookingInfoList.get(i - 1).getToDate().after(bookingInfoList.get(i).getFromDate())) {
+                    overlaps++;
+                }
+            }
+        }
+        System.out.printf("conflicts: %d threads, %d slots, %d booked, %d double bookings, %d overlaps -> %s%n",
+                threads, slots.size(), booked.get(), booked.get() - slots.size(), overlaps,
+                booked.get() == slots.size() && overlaps == 0 ? "OK" : "FAILED");
+    }
+
+    /**
+     * Каждый поток бронирует случайные комнаты на свои дни, начиная с firstDay,
+     * поэтому все брони должны получиться.
+     */
+    private static int bookRandom(Controller controller, List<Hotel> hotels, List<Room> rooms, int threads,
+                                  int operations, LocalDate firstDay,
+                                  ConcurrentLinkedQueue<Long> bookingIds) throws Exception {
+        return run(threads, thread -> {
+            Random random = new Random(firstDay.toEpochDay() + thread);
+            LocalDate first = firstDay.plusDays((long) thread * operations);
+            int booked = 0;
+            for (int i = 0; i < operations; i++) {
+                int index = random.nextInt(rooms.size());
+                LocalDate day = first.plusDays(i);
+                long bookingId = controller.bookRoomByUser(hotels.get(index), rooms.get(index),
+                        new BookingInfo(LOGIN, toDate(day), toDate(day.plusDays(1))));
+                if (bookingId != 0) {
+                    booked++;
+                    bookingIds.add(bookingId);
+                }
+            }
+            return booked;
+        });
+    }
+
+    /**
+     * Запускает задачу в заданном количестве потоков одновременно и суммирует результаты.
+     */
+    private static int run(int threads, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                return task.run(thread);
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        try {
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return total;
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private interface Task {
+        int run(int thread) throws Exception;
+    }
+}
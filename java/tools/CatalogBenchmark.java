@@ -0,0 +1,81 @@
+package tools;
+
+import dao.HotelCatalog;
+import domain.Hotel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Сравнивает поиск, добавление и удаление отелей в ArrayList (просмотр списка через stream, как раньше в DAO)
+ * и в HotelCatalog (LinkedHashMap по cityRegister).
+ * Аргументы: количество отелей (по умолчанию 100000), количество операций в раунде (1000).
+ */
+public class CatalogBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int hotels = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        List<Hotel> arrayList = new ArrayList<>(hotels);
+        for (int h = 0; h < hotels; h++) {
+            arrayList.add(new Hotel(h, "R-" + h, "Hotel " + h, "City " + (h % 50)));
+        }
+        HotelCatalog catalog = new HotelCatalog(arrayList);
+
+        System.out.println("Catalog: " + hotels + " hotels, " + operations + " operations per round");
+        Random random = new Random(1);
+        for (int round = 0; round < ROUNDS; round++) {
+            String[] keys = new String[operations];
+            for (int i = 0; i < operations; i++) {
+                keys[i] = "R-" + random.nextInt(hotels);
+            }
+
+            long listFind = time(() -> {
+                for (String key : keys) {
+                    arrayList.stream().filter(hotel -> hotel.getCityRegister().equals(key)).findFirst().get();
+                }
+            });
+            long catalogFind = time(() -> {
+                for (String key : keys) {
+                    catalog.find(key);
+                }
+            });
+            long listAddDelete = time(() -> addDelete(arrayList, operations));
+            long catalogAddDelete = time(() -> addDelete(catalog, operations));
+
+            System.out.printf("round %d: find ArrayList %d us/op, HotelCatalog %.3f us/op | "
+                            + "add+delete ArrayList %d us/op, HotelCatalog %.3f us/op%n",
+                    round + 1, listFind / operations, (double) catalogFind / operations,
+                    listAddDelete / operations, (double) catalogAddDelete / operations);
+        }
+    }
+
+    /**
+     * Добавляет и удаляет отели с проверкой наличия, как это делают addHotel и deleteHotel в DAO.
+     * Для ArrayList проверка contains - просмотр списка, для HotelCatalog - поиск в LinkedHashMap.
+     */
+    private static void addDelete(List<Hotel> hotelList, int operations) {
+        for (int i = 0; i < operations; i++) {
+            Hotel hotel = new Hotel(-1 - i, "N-" + i, "New " + i, "City");
+            if (!hotelList.contains(hotel)) {
+                hotelList.add(hotel);
+            }
+        }
+        for (int i = 0; i < operations; i++) {
+            Hotel hotel = new Hotel(-1 - i, "N-" + i, "", "");
+            if (hotelList.contains(hotel)) {
+                hotelList.remove(hotel);
+            }
+        }
+    }
+
+    private static long time(Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        return (System.nanoTime() - start) / 1000;
+    }
+}
@@ -0,0 +1,162 @@
+package tools;
+
+import domain.BookingInfo;
+import domain.Room;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Сравнение бронирования комнат без блокировок (Room.bookTheRoom с compareAndSet)
+ * и с блокировкой на комнату (те же операции, включая чтение, под ReentrantLock комнаты).
+ *
+ * Каждый поток выполняет смесь операций: три проверки свободных дат (isFree) на одну попытку брони;
+ * поток держит не больше HELD своих броней и снимает самую старую перед новой, поэтому размер
+ * списков бронирований не растет. Замеры идут для "горячих" комнат (все потоки бронируют одну комнату)
+ * и для многих комнат; после каждого замера проверяется, что брони комнат не пересекаются.
+ *
+ * Аргументы: количество потоков через запятую (по умолчанию 1,2,4,8,16,32,64), операций на поток (20000).
+ */
+public class ConcurrentBookingBenchmark {
+
+    private static final LocalDate FIRST_DAY = LocalDate.now().plusDays(1);
+    private static final int DAYS = 365;
+    private static final int HELD = 16;
+    private static final int MANY_ROOMS = 64;
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,2,4,8,16,32,64").split(",");
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        System.out.printf("cores: %d, %d operations per thread%n", Runtime.getRuntime().availableProcessors(), operations);
+
+        for (int roomCount : new int[]{1, MANY_ROOMS}) {
+            System.out.println(roomCount == 1 ? "One hot room" : roomCount + " rooms");
+            for (String threadCount : threadCounts) {
+                int threads = Integer.parseInt(threadCount.trim());
+                run(roomCount, threads, operations, false);
+                run(roomCount, threads, operations, true);
+                double cas = run(roomCount, threads, operations, false);
+                double locked = run(roomCount, threads, operations, true);
+                System.out.printf("  threads %2d: cas %,.0f ops/s, lock %,.0f ops/s (%.2fx)%n",
+                        threads, cas, locked, cas / locked);
+            }
+        }
+    }
+
+    /**
+     * Один замер на новых комнатах.
+     *
+     * @return операций в секунду
+     */
+    private static double run(int roomCount, int threads, int operations, boolean locked) throws Exception {
+        List<Room> rooms = new ArrayList<>();
+        List<Lock> locks = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(new Room(i + 1, 2, 100));
+            locks.add(new ReentrantLock());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                work(rooms, locked ? locks : null, new Random(thread), operations);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        for (Room room : rooms) {
+            checkOverlaps(room);
+        }
+        return (double) threads * operations * 1e9 / elapsed;
+    }
+
+    private static void work(List<Room> rooms, List<Lock> locks, Random random, int operations) throws Exception {
+        ArrayDeque<Object[]> held = new ArrayDeque<>();
+        for (int i = 0; i < operations; i++) {
+            int index = random.nextInt(rooms.size());
+            Room room = rooms.get(index);
+            Lock lock = locks == null ? null : locks.get(index);
+            LocalDate day = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            BookingInfo bookingInfo = new BookingInfo("benchmark", toDate(day), toDate(day.plusDays(1 + random.nextInt(3))));
+
+            if (i % 4 != 0) {
+                lock(lock);
+                try {
+                    room.isFree(bookingInfo);
+                } finally {
+                    unlock(lock);
+                }
+                continue;
+            }
+
+            if (held.size() >= HELD) {
+                Object[] oldest = held.poll();
+                Lock oldestLock = (Lock) oldest[2];
+                lock(oldestLock);
+                try {
+                    ((Room) oldest[0]).getBookingInfoList().remove(oldest[1]);
+                } finally {
+                    unlock(oldestLock);
+                }
+            }
+            lock(lock);
+            try {
+                if (room.bookTheRoom(bookingInfo)) {
+                    held.add(new Object[]{room, bookingInfo, lock});
+                }
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    private static void checkOverlaps(Room room) {
+        List<BookingInfo> bookingInfoList = new ArrayList<>(room.getBookingInfoList());
+        for (int i = 1; i < bookingInfoList.size(); i++) {
+            if (bookingInfoList.get(i - 1).getToDate().after(bookingInfoList.get(i).getFromDate())) {
+                throw new IllegalStateException("Overlapping bookings in room " + room.getRoomNumber());
+            }
+        }
+    }
+
+    private static void lock(Lock lock) {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    private static void unlock(Lock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
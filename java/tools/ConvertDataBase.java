@@ -0,0 +1,44 @@
+package tools;
+
+import dao.DataBaseIO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Утилита переводит файлы базы данных из старого формата (Java serialization) или из более старой
+ * версии формата BinaryCodec в текущую версию BinaryCodec.
+ * Старый файл сохраняется рядом с расширением '.legacy'.
+ * По умолчанию конвертируются файлы 'hotels' и 'users', можно передать пути к файлам в аргументах.
+ */
+public class ConvertDataBase {
+
+    private static final String[] DEFAULT_FILES = {
+            "./booking_project/src/resources/hotels",
+            "./booking_project/src/resources/users"
+    };
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        for (String filePath : args.length > 0 ? args : DEFAULT_FILES) {
+            if (!DataBaseIO.isOutdatedDB(filePath)) {
+                System.out.println(filePath + ": already converted");
+                continue;
+            }
+
+            Object data = DataBaseIO.readDB(filePath);
+            Files.copy(Paths.get(filePath), Paths.get(filePath + ".legacy"), StandardCopyOption.REPLACE_EXISTING);
+            DataBaseIO.replaceDB(data, filePath);
+
+            Object converted = DataBaseIO.readDB(filePath);
+            if (!data.toString().equals(converted.toString())) {
+                Files.copy(Paths.get(filePath + ".legacy"), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING);
+                throw new IOException(filePath + ": converted data differs from the original, file restored");
+            }
+
+            System.out.println(filePath + ": " + Files.size(Paths.get(filePath + ".legacy")) + " -> "
+                    + Files.size(Paths.get(filePath)) + " bytes");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package tools;
+
+import dao.DataBaseIO;
+import dao.MappedBookingSystemDAO;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Сравнивает скорость записи и чтения базы данных отелей
+ * в старом формате (Java serialization) и в формате BinaryCodec,
+ * а также время открытия MappedBookingSystemDAO и изменения одной комнаты в нем.
+ * Аргументы: количество отелей (по умолчанию 2000), комнат в отеле (20), бронирований в комнате (5).
+ */
+public class DataBaseBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int hotels = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int bookings = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<Hotel> hotelList = createCatalog(hotels, rooms, bookings);
+        Path legacyFile = Files.createTempFile("hotels", ".legacy");
+        Path binaryFile = Files.createTempFile("hotels", ".bin");
+
+        System.out.println("Catalog: " + hotels + " hotels x " + rooms + " rooms x " + bookings + " bookings");
+        for (int round = 0; round < ROUNDS; round++) {
+            long legacySave = time(() -> saveLegacy(hotelList, legacyFile.toString()));
+            long legacyLoad = time(() -> DataBaseIO.readLegacyDB(legacyFile.toString()));
+            long binarySave = time(() -> DataBaseIO.saveDB(hotelList, binaryFile.toString()));
+            long binaryLoad = time(() -> DataBaseIO.readDB(binaryFile.toString()));
+
+            System.out.printf("round %d: legacy save %d ms, load %d ms, %d bytes | "
+                            + "binary save %d ms, load %d ms, %d bytes%n",
+                    round + 1, legacySave, legacyLoad, Files.size(legacyFile),
+                    binarySave, binaryLoad, Files.size(binaryFile));
+        }
+
+        Path mappedDir = Files.createTempDirectory("mapped");
+        String mappedBase = mappedDir.resolve("hotels").toString();
+        DataBaseIO.saveDB(hotelList, mappedBase);
+        long mappedImport = time(() -> new MappedBookingSystemDAO(mappedBase));
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            MappedBookingSystemDAO mapped = new MappedBookingSystemDAO(mappedBase);
+            long open = System.nanoTime() - start;
+            Hotel hotel = mapped.getAllHotels().get(hotels / 2);
+            Room room = hotel.getRoomList().get(0);
+            room.setPrice(room.getPrice() + 1);
+            start = System.nanoTime();
+            mapped.changeRoomData(room, hotel);
+            long change = System.nanoTime() - start;
+            System.out.printf("round %d: mapped import %d ms, open %d us, room change %d us%n",
+                    round + 1, mappedImport, open / 1000, change / 1000);
+        }
+
+        Files.delete(legacyFile);
+        Files.delete(binaryFile);
+        for (String extension : new String[]{"", ".hdb", ".rdb", ".bdb"}) {
+            Files.deleteIfExists(Paths.get(mappedBase + extension));
+        }
+        Files.delete(mappedDir);
+    }
+
+    private static List<Hotel> createCatalog(int hotels, int rooms, int bookings) throws Exception {
+        LocalDate start = LocalDate.of(2017, 6, 1);
+        List<Hotel> hotelList = new ArrayList<>(hotels);
+        long roomId = 0;
+        for (int h = 0; h < hotels; h++) {
+            Hotel hotel = new Hotel(h, "R-" + h, "Hotel " + h, "City " + (h % 50));
+            for (int r = 1; r <= rooms; r++) {
+                Room room = new Room(roomId++, r, 1 + r % 4, 100.0 + r);
+                for (int b = 0; b < bookings; b++) {
+                    LocalDate from = start.plusDays(b * 7);
+                    room.getBookingInfoList().add(new BookingInfo("user" + b, toDate(from), toDate(from.plusDays(3))));
+                }
+                hotel.getRoomList().add(room);
+            }
+            hotelList.add(hotel);
+        }
+        return hotelList;
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static void saveLegacy(Object object, String filePath) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filePath))) {
+            out.writeObject(object);
+        }
+    }
+
+    private static long time(Action action) throws Exception {
+        long start = System.nanoTime();
+        action.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+}
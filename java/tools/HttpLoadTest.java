@@ -0,0 +1,168 @@
+package tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный тест HTTP API (HotelSystem http): клиенты в отдельных потоках выполняют запросы
+ * один за другим - в основном поиск свободных комнат, а каждый пятый запрос - бронирование
+ * случайной комнаты на случайные дни и отмена одной из своих броней.
+ * Выводит количество запросов в секунду, задержку p50, p99 и максимальную, количество ошибок
+ * (ответов 5xx и недоступности сервера); 409 на занятую комнату ошибкой не считается.
+ * В конце оставшиеся брони теста отменяются.
+ *
+ * Аргументы: адрес API (по умолчанию http://127.0.0.1:8080), количество клиентов (16),
+ * запросов на клиента (500).
+ */
+public class HttpLoadTest {
+
+    private static final String LOGIN = "http-load-test";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2096, 1, 1);
+    private static final Pattern HOTEL = Pattern.compile("\"cityRegister\":\"([^\"]*)\"[^{}]*?\"rooms\":(\\d+)");
+    private static final Pattern ROOM = Pattern.compile("\"roomNumber\":(\\d+)");
+    private static final Pattern BOOKING_ID = Pattern.compile("\"bookingId\":(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://127.0.0.1:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        call("POST", base + "/users", "{\"login\":\"" + LOGIN + "\",\"name\":\"Load\",\"lastName\":\"Test\"}");
+        List<String[]> rooms = new ArrayList<>();
+        Matcher hotels = HOTEL.matcher(call("GET", base + "/hotels", null).body);
+        while (hotels.find()) {
+            Matcher roomNumbers = ROOM.matcher(call("GET", base + "/hotels/" + hotels.group(1), null).body);
+            while (roomNumbers.find()) {
+                rooms.add(new String[]{hotels.group(1), roomNumbers.group(1)});
+            }
+        }
+        if (rooms.isEmpty()) {
+            System.out.println("Data base has no rooms");
+            return;
+        }
+        System.out.printf("%s: %d rooms, %d clients x %d requests%n", base, rooms.size(), clients, requests);
+
+        long[] latencies = new long[clients * requests];
+        AtomicLong errors = new AtomicLong();
+        AtomicLong bookings = new AtomicLong();
+        AtomicLong busy = new AtomicLong();
+        ConcurrentLinkedQueue<String> bookingIds = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            threads.add(new Thread(() -> {
+                Random random = new Random(client);
+                List<String> ownBookings = new ArrayList<>();
+                for (int r = 0; r < requests; r++) {
+                    long start = System.nanoTime();
+                    try {
+                        Response response;
+                        if (r % 5 != 4) {
+                            LocalDate from = LocalDate.now().plusDays(random.nextInt(365));
+                            response = call("GET", base + "/rooms/free?from=" + from + "&to="
+                                    + from.plusDays(1 + random.nextInt(5)) + "&persons=" + (1 + random.nextInt(3)), null);
+                        } else if (ownBookings.isEmpty() || random.nextBoolean()) {
+                            String[] room = rooms.get(random.nextInt(rooms.size()));
+                            LocalDate from = FIRST_DAY.plusDays(random.nextInt(3650));
+                            response = call("POST", base + "/bookings", "{\"login\":\"" + LOGIN
+                                    + "\",\"cityRegister\":\"" + room[0] + "\",\"roomNumber\":" + room[1]
+                                    + ",\"from\":\"" + from + "\",\"to\":\"" + from.plusDays(1) + "\"}");
+                            Matcher id = BOOKING_ID.matcher(response.body);
+                            if (response.status == 201 && id.find()) {
+                                ownBookings.add(id.group(1));
+                                bookings.incrementAndGet();
+                            } else if (response.status == 409) {
+                                busy.incrementAndGet();
+                            }
+                        } else {
+                            response = call("DELETE", base + "/bookings/"
+                                    + ownBookings.remove(random.nextInt(ownBookings.size())), null);
+                        }
+                        if (response.status >= 500) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[client * requests + r] = System.nanoTime() - start;
+                }
+                bookingIds.addAll(ownBookings);
+            }));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%.0f requests/s, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                latencies.length / seconds, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1e6);
+        System.out.printf("%d bookings, %d busy rooms, %d errors%n", bookings.get(), busy.get(), errors.get());
+
+        int canceled = 0;
+        for (String bookingId : bookingIds) {
+            if (call("DELETE", base + "/bookings/" + bookingId, null).status == 200) {
+                canceled++;
+            }
+        }
+        System.out.println("Canceled " + canceled + " of " + bookingIds.size() + " remaining test bookings");
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1e6;
+    }
+
+    private static Response call(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[4096];
+                for (int read; (read = stream.read(buffer)) > 0; ) {
+                    bytes.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
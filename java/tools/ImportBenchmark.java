@@ -0,0 +1,137 @@
+package tools;
+
+import controller.Controller;
+import dao.BookingSystemDAOImpl;
+import domain.Hotel;
+import domain.Room;
+import domain.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Измеряет скорость импорта отелей, комнат и пользователей через Controller:
+ * пакетами (addHotels, addRooms, addUsers - одна запись базы данных на пакет)
+ * и по одному (addHotel, addUser - запись базы данных на каждый объект).
+ * Импорт по одному переписывает файл после каждого объекта, поэтому замеряется на меньшем количестве;
+ * так же на меньшем количестве отелей замеряется addRooms - один пакет комнат на отель.
+ *
+ * Утилита работает с базой данных приложения, способ хранения задается свойством 'booking.storage';
+ * в конце добавленные отели и пользователи удаляются.
+ * Аргументы: количество отелей (по умолчанию 5000), комнат в отеле (10), пользователей (5000),
+ * отелей и пользователей для импорта по одному и отелей для addRooms (200).
+ */
+public class ImportBenchmark {
+
+    private static final String PREFIX = "import-";
+
+    public static void main(String[] args) throws Exception {
+        int hotels = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int single = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        Controller controller = new Controller();
+        System.out.printf("Storage: %s, %d hotels in data base%n",
+                System.getProperty(BookingSystemDAOImpl.STORAGE_PROPERTY, "snapshot"), controller.getHotels().size());
+        try {
+            List<Hotel> hotelList = createHotels("bulk", hotels, rooms);
+            long start = System.nanoTime();
+            int added = controller.addHotels(hotelList);
+            controller.whenPersisted().join();
+            report("addHotels", added, rooms, System.nanoTime() - start);
+
+            int extended = Math.min(hotels, single);
+            List<List<Room>> extraRooms = new ArrayList<>();
+            for (int h = 0; h < extended; h++) {
+                extraRooms.add(createRooms(rooms + 1, rooms));
+            }
+            start = System.nanoTime();
+            int addedRooms = 0;
+            for (int h = 0; h < extended; h++) {
+                addedRooms += controller.addRooms(hotelList.get(h), extraRooms.get(h));
+            }
+            controller.whenPersisted().join();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-10s %6d hotels x %d rooms: %8.1f ms, %10.0f rooms/s%n", "addRooms", extended,
+                    rooms, elapsed / 1e6, addedRooms / (elapsed / 1e9));
+
+            List<User> userList = createUsers("bulk", users);
+            start = System.nanoTime();
+            added = controller.addUsers(userList);
+            controller.whenPersisted().join();
+            report("addUsers", added, 0, System.nanoTime() - start);
+
+            List<Hotel> singleHotels = createHotels("single", single, rooms);
+            start = System.nanoTime();
+            added = 0;
+            for (Hotel hotel : singleHotels) {
+                added += controller.addHotel(hotel) ? 1 : 0;
+            }
+            controller.whenPersisted().join();
+            report("addHotel", added, rooms, System.nanoTime() - start);
+
+            List<User> singleUsers = createUsers("single", single);
+            start = System.nanoTime();
+            added = 0;
+            for (User user : singleUsers) {
+                added += controller.addUser(user) ? 1 : 0;
+            }
+            controller.whenPersisted().join();
+            report("addUser", added, 0, System.nanoTime() - start);
+        } finally {
+            long start = System.nanoTime();
+            controller.setDeferredWrites(true);
+            try {
+                for (Hotel hotel : controller.getHotels()) {
+                    if (hotel.getCityRegister().startsWith(PREFIX)) {
+                        controller.deleteHotel(hotel);
+                    }
+                }
+                for (User user : new ArrayList<>(controller.getUsers())) {
+                    if (user.getUserLogin().startsWith(PREFIX)) {
+                        controller.deleteUser(user);
+                    }
+                }
+            } finally {
+                controller.setDeferredWrites(false);
+                controller.whenPersisted().join();
+            }
+            System.out.printf("Removed test data in %.1f ms, %d hotels in data base%n",
+                    (System.nanoTime() - start) / 1e6, controller.getHotels().size());
+        }
+    }
+
+    private static void report(String operation, int added, int rooms, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-10s %6d %s: %8.1f ms, %10.0f per second%s%n", operation, added,
+                rooms > 0 ? "hotels" : "users ", nanos / 1e6, added / seconds,
+                rooms > 0 ? String.format(" (%.0f rooms/s)", added * rooms / seconds) : "");
+    }
+
+    private static List<Hotel> createHotels(String name, int count, int rooms) {
+        List<Hotel> hotels = new ArrayList<>(count);
+        for (int h = 0; h < count; h++) {
+            Hotel hotel = new Hotel(PREFIX + name + "-" + h, "Import " + name + " " + h, "Import city " + h % 50);
+            hotel.setRoomList(createRooms(1, rooms));
+            hotels.add(hotel);
+        }
+        return hotels;
+    }
+
+    private static List<Room> createRooms(int firstNumber, int count) {
+        List<Room> rooms = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            rooms.add(new Room(firstNumber + r, 1 + r % 4, 50 + 10 * r));
+        }
+        return rooms;
+    }
+
+    private static List<User> createUsers(String name, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int u = 0; u < count; u++) {
+            users.add(new User(PREFIX + name + "-" + u, "Import", "User " + u));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,130 @@
+package tools;
+
+import dao.HotelCatalog;
+import domain.Hotel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Измеряет время поиска отелей по имени в HotelCatalog: точного, по началу имени и нечеткого
+ * (запрос с одной опечаткой), а также время добавления и удаления отеля вместе с обновлением индексов.
+ * Имена отелей составляются из случайных слогов, к части имен добавляются распространенные слова.
+ * Аргументы: количество отелей (по умолчанию 1000000), количество запросов в раунде (1000).
+ */
+public class NameSearchBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int LIMIT = 10;
+    private static final String CONSONANTS = "bcdfghklmnprstvz";
+    private static final String VOWELS = "aeiouy";
+    private static final String[] WORDS = {"Hotel", "Grand", "Palace", "Resort", "Inn", "Plaza"};
+
+    public static void main(String[] args) {
+        int hotels = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Random random = new Random(1);
+        List<Hotel> hotelList = new ArrayList<>(hotels);
+        for (int h = 0; h < hotels; h++) {
+            hotelList.add(new Hotel(h, "R-" + h, randomName(random), "City " + (h % 50)));
+        }
+        long start = System.nanoTime();
+        HotelCatalog catalog = new HotelCatalog(hotelList);
+        System.out.printf("Catalog: %d hotels, indexed in %d ms, %d queries per round%n",
+                hotels, (System.nanoTime() - start) / 1_000_000, queries);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String[] names = new String[queries];
+            String[] typos = new String[queries];
+            for (int i = 0; i < queries; i++) {
+                names[i] = hotelList.get(random.nextInt(hotels)).getName();
+                typos[i] = typo(names[i], random);
+            }
+
+            long found = 0;
+            long exact = System.nanoTime();
+            for (String name : names) {
+                found += catalog.findByName(name).size();
+            }
+            exact = System.nanoTime() - exact;
+
+            long prefix = System.nanoTime();
+            for (String name : names) {
+                found += catalog.findByNamePrefix(name.substring(0, Math.min(3, name.length())), LIMIT).size();
+            }
+            prefix = System.nanoTime() - prefix;
+
+            long fuzzy = System.nanoTime();
+            int hits = 0;
+            for (int i = 0; i < queries; i++) {
+                List<Hotel> result = catalog.findByNameFuzzy(typos[i], LIMIT);
+                for (Hotel hotel : result) {
+                    if (hotel.getName().equals(names[i])) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+            fuzzy = System.nanoTime() - fuzzy;
+
+            long update = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                Hotel hotel = new Hotel(-1 - i, "N-" + i, randomName(random), "City");
+                catalog.add(hotel);
+                catalog.remove(hotel);
+            }
+            update = System.nanoTime() - update;
+
+            System.out.printf("round %d: exact %.1f us, prefix %.1f us, fuzzy %.1f us (original in top %d: %d%%), "
+                            + "add+delete %.1f us per query (%d found)%n",
+                    round + 1, exact / 1000.0 / queries, prefix / 1000.0 / queries, fuzzy / 1000.0 / queries,
+                    LIMIT, hits * 100 / queries, update / 1000.0 / queries, found);
+        }
+    }
+
+    /**
+     * Одно или два слова из случайных слогов (согласная, гласная, иногда согласная в конце),
+     * к части имен добавляется распространенное слово вроде "Hotel" или "Grand".
+     */
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + random.nextInt(2);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                name.append(' ');
+            }
+            int start = name.length();
+            int syllables = 2 + random.nextInt(2);
+            for (int i = 0; i < syllables; i++) {
+                name.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+                name.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+                if (random.nextInt(3) == 0) {
+                    name.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+                }
+            }
+            name.setCharAt(start, Character.toUpperCase(name.charAt(start)));
+        }
+        if (random.nextInt(3) == 0) {
+            name.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Удаляет, заменяет или вставляет одну букву в случайном месте имени.
+     */
+    private static String typo(String name, Random random) {
+        int position = 1 + random.nextInt(name.length() - 1);
+        char letter = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0:
+                return name.substring(0, position) + name.substring(position + 1);
+            case 1:
+                return name.substring(0, position) + letter + name.substring(position + 1);
+            default:
+                return name.substring(0, position) + letter + name.substring(position);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package tools;
+
+import viewer.BinaryProtocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест сервера двоичного протокола (HotelSystem nio).
+ *
+ * Сначала проверяет бронирование и отмену: находит свободную комнату, бронирует ее, бронирует еще раз
+ * (ожидается CONFLICT), отменяет бронь и отменяет еще раз (ожидается NOT_FOUND).
+ * Затем каждое соединение в своем потоке отправляет поиски свободных комнат во всех городах
+ * на случайные даты, держа до window запросов без ответа, и выводит количество запросов в секунду,
+ * задержку p50, p99 и максимальную, количество ответов с ошибкой.
+ *
+ * Аргументы: адрес (по умолчанию 127.0.0.1:8090), количество соединений (4), запросов на соединение
+ * (200000), запросов без ответа на соединение (64), комнат в ответе (10), логин для проверки
+ * бронирования (andreid).
+ */
+public class NioLoadTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2097, 1, 1);
+
+    public static void main(String[] args) throws Exception {
+        String[] hostPort = (args.length > 0 ? args[0] : "127.0.0.1:8090").split(":");
+        InetSocketAddress address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int limit = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        String login = args.length > 5 ? args[5] : "andreid";
+
+        checkBooking(address, login);
+
+        long[] latencies = new long[connections * requests];
+        AtomicLong errors = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            threads.add(new Thread(() -> {
+                try {
+                    run(address, requests, window, limit, new Random(connection), latencies,
+                            connection * requests, errors);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d connections x %d searches, window %d: %.0f searches/s, "
+                        + "latency p50 %.3f ms, p99 %.3f ms, max %.3f ms, %d errors%n",
+                connections, requests, window, latencies.length / seconds, percentile(latencies, 0.50),
+                percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6, errors.get());
+    }
+
+    /**
+     * Поиски в одном соединении: пока ответов меньше, чем запросов, досылает запросы до window без ответа
+     * и читает все пришедшие ответы.
+     */
+    private static void run(InetSocketAddress address, int requests, int window, int limit, Random random,
+                            long[] latencies, int offset, AtomicLong errors) throws IOException {
+        long[] sentAt = new long[requests];
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        ByteBuffer in = ByteBuffer.allocate(4 + BinaryProtocol.MAX_FRAME);
+        int today = (int) LocalDate.now().toEpochDay();
+        try (SocketChannel channel = open(address)) {
+            int sent = 0;
+            int received = 0;
+            while (received < requests) {
+                long now = System.nanoTime();
+                while (sent < requests && sent - received < window) {
+                    int from = today + random.nextInt(365);
+                    search(out, sent, "", from, from + 1 + random.nextInt(5), 1 + random.nextInt(3), limit);
+                    sentAt[sent++] = now;
+                }
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                out.clear();
+
+                if (channel.read(in) < 0) {
+                    throw new IOException("Connection closed by server");
+                }
+                in.flip();
+                now = System.nanoTime();
+                while (in.remaining() >= 4 && in.remaining() >= 4 + in.getInt(in.position())) {
+                    int end = in.position() + 4 + in.getInt();
+                    int requestId = in.getInt();
+                    if (in.get() != BinaryProtocol.OK) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[offset + requestId] = now - sentAt[requestId];
+                    received++;
+                    in.position(end);
+                }
+                in.compact();
+            }
+        }
+    }
+
+    /**
+     * Проверяет бронирование, повторное бронирование, отмену и повторную отмену.
+     */
+    private static void checkBooking(InetSocketAddress address, String login) throws IOException {
+        try (SocketChannel channel = open(address)) {
+            int from = (int) FIRST_DAY.toEpochDay();
+            ByteBuffer out = ByteBuffer.allocate(1024);
+            search(out, 1, "", from, from + 2, 1, 1);
+            ByteBuffer response = call(channel, out);
+            if (response.get(8) != BinaryProtocol.OK || response.getShort(13) == 0) {
+                System.out.println("No free rooms to check booking: status " + response.get(8));
+                return;
+            }
+            response.position(15);
+            String cityRegister = string(response);
+            int roomNumber = response.getInt();
+
+            book(out, 2, login, cityRegister, roomNumber, from, from + 2);
+            response = call(channel, out);
+            byte booked = response.get(8);
+            long bookingId = booked == BinaryProtocol.OK ? response.getLong(9) : 0;
+            book(out, 3, login, cityRegister, roomNumber, from + 1, from + 3);
+            byte again = call(channel, out).get(8);
+            cancel(out, 4, bookingId);
+            byte canceled = call(channel, out).get(8);
+            cancel(out, 5, bookingId);
+            byte canceledAgain = call(channel, out).get(8);
+
+            System.out.printf("Room %d in %s: book %s (id %d), book again %s, cancel %s, cancel again %s%n",
+                    roomNumber, cityRegister, status(booked), bookingId, status(again), status(canceled),
+                    status(canceledAgain));
+        }
+    }
+
+    private static SocketChannel open(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+
+    /**
+     * Отправляет запрос из out и возвращает ответ на него (кадр целиком, с позиции 0).
+     */
+    private static ByteBuffer call(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length);
+        ByteBuffer frame = ByteBuffer.allocate(4 + length.getInt(0));
+        frame.putInt(length.getInt(0));
+        readFully(channel, frame);
+        frame.flip();
+        return frame;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by server");
+            }
+        }
+    }
+
+    private static void search(ByteBuffer out, int requestId, String city, int fromDay, int toDay, int persons,
+                               int limit) {
+        int start = begin(out, requestId, BinaryProtocol.SEARCH);
+        putString(out, city);
+        out.putInt(fromDay).putInt(toDay).put((byte) persons).putDouble(Double.MAX_VALUE).putShort((short) limit);
+        end(out, start);
+    }
+
+    private static void book(ByteBuffer out, int requestId, String login, String cityRegister, int roomNumber,
+                             int fromDay, int toDay) {
+        int start = begin(out, requestId, BinaryProtocol.BOOK);
+        putString(out, login);
+        putString(out, cityRegister);
+        out.putInt(roomNumber).putInt(fromDay).putInt(toDay);
+        end(out, start);
+    }
+
+    private static void cancel(ByteBuffer out, int requestId, long bookingId) {
+        int start = begin(out, requestId, BinaryProtocol.CANCEL);
+        out.putLong(bookingId);
+        end(out, start);
+    }
+
+    private static int begin(ByteBuffer out, int requestId, byte operation) {
+        int start = out.position();
+        out.putInt(0).putInt(requestId).put(operation);
+        return start;
+    }
+
+    private static void end(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String status(byte status) {
+        switch (status) {
+            case BinaryProtocol.OK:
+                return "OK";
+            case BinaryProtocol.BAD_REQUEST:
+                return "BAD_REQUEST";
+            case BinaryProtocol.NOT_FOUND:
+                return "NOT_FOUND";
+            case BinaryProtocol.CONFLICT:
+                return "CONFLICT";
+            default:
+                return "SERVER_ERROR";
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1e6;
+    }
+}
@@ -0,0 +1,92 @@
+package tools;
+
+import domain.Hotel;
+import domain.Room;
+import domain.RoomIndex;
+
+import java.util.Random;
+
+/**
+ * Сравнивает поиск комнат отеля по количеству мест и цене и поиск самой дешевой комнаты
+ * просмотром списка комнат и через RoomIndex (так ищет снимок списка отелей в больших отелях),
+ * а также измеряет построение индекса заново после изменения цен комнат.
+ * Аргументы: количество комнат в отеле (по умолчанию 100000), количество запросов в раунде (1000).
+ */
+public class RoomIndexBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Random random = new Random(1);
+        Hotel hotel = new Hotel(0, "R-0", "Hotel", "City");
+        for (int r = 1; r <= rooms; r++) {
+            hotel.getRoomList().add(new Room(r, r, 1 + random.nextInt(6), 50 + random.nextInt(10_000) / 10.0));
+        }
+        long start = System.nanoTime();
+        RoomIndex roomIndex = new RoomIndex(hotel.getRoomList());
+        System.out.printf("Hotel: %d rooms, indexed in %d ms, %d queries per round%n",
+                rooms, (System.nanoTime() - start) / 1_000_000, queries);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int[] persons = new int[queries];
+            double[] maxPrice = new double[queries];
+            for (int i = 0; i < queries; i++) {
+                persons[i] = 1 + random.nextInt(6);
+                maxPrice[i] = 50 + random.nextInt(20);
+            }
+
+            long found = 0;
+            long scan = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                for (Room room : hotel.getRoomList()) {
+                    if (room.getPersons() >= persons[i] && room.getPrice() <= maxPrice[i]) {
+                        found++;
+                    }
+                }
+            }
+            scan = System.nanoTime() - scan;
+
+            long index = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                found -= roomIndex.find(persons[i], maxPrice[i]).size();
+            }
+            index = System.nanoTime() - index;
+            if (found != 0) {
+                throw new IllegalStateException("Results differ by " + found);
+            }
+
+            long cheapestScan = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                Room cheapest = null;
+                for (Room room : hotel.getRoomList()) {
+                    if (room.getPersons() >= persons[i] && (cheapest == null || room.getPrice() < cheapest.getPrice())) {
+                        cheapest = room;
+                    }
+                }
+            }
+            cheapestScan = System.nanoTime() - cheapestScan;
+
+            long cheapestIndex = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                roomIndex.cheapest(persons[i]);
+            }
+            cheapestIndex = System.nanoTime() - cheapestIndex;
+
+            for (int i = 0; i < queries; i++) {
+                Room room = hotel.getRoomList().get(random.nextInt(rooms));
+                room.setPrice(50 + random.nextInt(10_000) / 10.0);
+            }
+            long rebuild = System.nanoTime();
+            roomIndex = new RoomIndex(hotel.getRoomList());
+            rebuild = System.nanoTime() - rebuild;
+
+            System.out.printf("round %d: range scan %.1f us, index %.1f us | cheapest scan %.1f us, index %.2f us per query | "
+                            + "rebuild %.1f ms%n",
+                    round + 1, scan / 1000.0 / queries, index / 1000.0 / queries,
+                    cheapestScan / 1000.0 / queries, cheapestIndex / 1000.0 / queries, rebuild / 1e6);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tools;
+
+import controller.BookingSystemController;
+import dao.BookingSystemDAOImpl;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Измеряет количество поисков в секунду (поиск свободных комнат, обход списка отелей и комнат)
+ * для разного количества потоков поиска, пока другие потоки бронируют комнаты и изменяют данные комнат.
+ * Поиск работает со снимками списка отелей, поэтому не должен ни ждать изменений, ни падать
+ * с ConcurrentModificationException: количество ошибок поиска выводится вместе с результатом.
+ *
+ * Утилита работает с базой данных приложения, способ хранения задается свойством 'booking.storage'
+ * (по умолчанию journal); брони, сделанные утилитой, в конце снимаются по номерам.
+ * Аргументы: количество потоков поиска через запятую (по умолчанию 1,2,4,8),
+ * секунд на замер (2), потоков бронирования (2).
+ */
+public class SearchUnderLoadBenchmark {
+
+    private static final String LOGIN = "search-benchmark";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2095, 1, 1);
+
+    public static void main(String[] args) throws Exception {
+        String[] readerCounts = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+        long millis = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 2) * 1000);
+        int bookers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        if (System.getProperty(BookingSystemDAOImpl.STORAGE_PROPERTY) == null) {
+            System.setProperty(BookingSystemDAOImpl.STORAGE_PROPERTY, "journal");
+        }
+
+        BookingSystemController controller = new BookingSystemController();
+        List<Hotel> hotels = new ArrayList<>();
+        List<Room> rooms = new ArrayList<>();
+        for (Hotel hotel : controller.getAllHotels()) {
+            for (Room room : controller.getAllRooms(hotel)) {
+                hotels.add(hotel);
+                rooms.add(room);
+            }
+        }
+        if (rooms.isEmpty()) {
+            System.out.println("Data base has no rooms");
+            return;
+        }
+        System.out.printf("Rooms: %d, cores: %d, storage: %s, %d booking threads%n", rooms.size(),
+                Runtime.getRuntime().availableProcessors(), System.getProperty(BookingSystemDAOImpl.STORAGE_PROPERTY),
+                bookers);
+
+        ConcurrentLinkedQueue<Long> bookingIds = new ConcurrentLinkedQueue<>();
+        AtomicLong nextDay = new AtomicLong();
+        try {
+            for (String readerCount : readerCounts) {
+                int readers = Integer.parseInt(readerCount.trim());
+                AtomicLong searches = new AtomicLong();
+                AtomicLong errors = new AtomicLong();
+                AtomicLong bookings = new AtomicLong();
+                AtomicLong changes = new AtomicLong();
+                AtomicBoolean running = new AtomicBoolean(true);
+                List<Thread> threads = new ArrayList<>();
+
+                for (int r = 0; r < readers; r++) {
+                    Random random = new Random(r);
+                    threads.add(new Thread(() -> {
+                        while (running.get()) {
+                            try {
+                                search(controller, random);
+                                searches.incrementAndGet();
+                            } catch (RuntimeException e) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }));
+                }
+                for (int b = 0; b < bookers; b++) {
+                    Random random = new Random(100 + b);
+                    threads.add(new Thread(() -> {
+                        while (running.get()) {
+                            int index = random.nextInt(rooms.size());
+                            LocalDate day = FIRST_DAY.plusDays(nextDay.getAndIncrement());
+                            try {
+                                long bookingId = controller.bookRoomByUser(hotels.get(index), rooms.get(index),
+                                        new BookingInfo(LOGIN, toDate(day), toDate(day.plusDays(1))));
+                                if (bookingId != 0) {
+                                    bookingIds.add(bookingId);
+                                    bookings.incrementAndGet();
+                                }
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    }));
+                }
+                threads.add(new Thread(() -> {
+                    Random random = new Random(200);
+                    while (running.get()) {
+                        int index = random.nextInt(rooms.size());
+                        Room room = rooms.get(index);
+                        try {
+                            controller.changeRoomData(room, hotels.get(index));
+                            changes.incrementAndGet();
+                            Thread.sleep(1);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }));
+
+                long start = System.nanoTime();
+                for (Thread thread : threads) {
+                    thread.start();
+                }
+                Thread.sleep(millis);
+                running.set(false);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("readers %d: %.0f searches/s, %.0f bookings/s, %.0f room changes/s, %d search errors%n",
+                        readers, searches.get() / seconds, bookings.get() / seconds, changes.get() / seconds,
+                        errors.get());
+            }
+        } finally {
+            int canceled = 0;
+            for (Long bookingId : bookingIds) {
+                if (controller.bookingCancellation(bookingId)) {
+                    canceled++;
+                }
+            }
+            controller.whenPersisted().get();
+            System.out.println("Canceled " + canceled + " of " + bookingIds.size() + " test bookings");
+        }
+    }
+
+    /**
+     * Один поиск: свободные комнаты на случайные даты во всех городах и обход всех отелей и комнат.
+     */
+    private static void search(BookingSystemController controller, Random random) {
+        LocalDate from = LocalDate.now().plusDays(random.nextInt(365));
+        controller.searchFreeRooms(null, toDate(from), toDate(from.plusDays(1 + random.nextInt(5))),
+                1 + random.nextInt(3), Double.MAX_VALUE);
+        int roomCount = 0;
+        for (Hotel hotel : controller.getAllHotels()) {
+            roomCount += controller.getAllRooms(hotel).size();
+        }
+        if (roomCount == 0) {
+            throw new IllegalStateException("No rooms");
+        }
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
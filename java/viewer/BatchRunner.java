@@ -0,0 +1,240 @@
+package viewer;
+
+import controller.Controller;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+import domain.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Пакетный режим: выполняет команды из файла (или из перенаправленного ввода) без вопросов меню.
+ * Запись в файлы базы данных откладывается до конца файла команд, после чего каждый файл
+ * записывается один раз (Controller.setDeferredWrites). В конце выводится сводка: сколько команд
+ * каждого вида выполнено и отклонено, среднее время команды, общее время и время записи.
+ *
+ * Одна команда в строке, поля разделяются ';', пустые строки и строки с '#' в начале пропускаются.
+ * Даты в формате dd.MM.yyyy, как в меню.
+ * addUser;login;name;lastName          editUser;login;name;lastName          deleteUser;login
+ * addHotel;cityRegister;name;city      editHotel;cityRegister;name;city      deleteHotel;cityRegister
+ * addRoom;cityRegister;room;persons;price      editRoom;cityRegister;room;persons;price
+ * deleteRoom;cityRegister;room
+ * book;login;cityRegister;room;from;to
+ * cancel;bookingId   или   cancel;login;cityRegister;room;from;to
+ * Команда отклонена, если контроллер ее не выполнил (например, комната занята); команда с ошибкой
+ * в данных или неизвестная команда выводится с номером строки и тоже считается отклоненной.
+ */
+public class BatchRunner {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final Set<String> COMMANDS = new HashSet<>(Arrays.asList("addUser", "editUser", "deleteUser",
+            "addHotel", "editHotel", "deleteHotel", "addRoom", "editRoom", "deleteRoom", "book", "cancel"));
+
+    private final Controller controller;
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private int errors;
+
+    public BatchRunner(Controller controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Выполняет все команды из reader и выводит сводку.
+     *
+     * @param reader команды, по одной в строке
+     * @throws IOException когда произошли ошибки/прервались I/O operations
+     */
+    public void run(BufferedReader reader) throws IOException {
+        long start = System.nanoTime();
+        long flushStart;
+        int lineNumber = 0;
+        controller.setDeferredWrites(true);
+        try {
+            for (String line; (line = reader.readLine()) != null; ) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                execute(lineNumber, line);
+            }
+        } finally {
+            flushStart = System.nanoTime();
+            controller.setDeferredWrites(false);
+            controller.whenPersisted().join();
+        }
+        long end = System.nanoTime();
+
+        printSummary(lineNumber, end - start, end - flushStart);
+    }
+
+    private void execute(int lineNumber, String line) {
+        String[] fields = line.split(";", -1);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        String command = fields[0];
+        long start = System.nanoTime();
+        boolean done;
+        try {
+            done = execute(fields);
+        } catch (Exception e) {
+            done = false;
+            if (++errors <= MAX_REPORTED_ERRORS) {
+                System.out.println("WARNING: Line " + lineNumber + ": " + e.getMessage() + ": " + line);
+            }
+            if (!COMMANDS.contains(command)) {
+                command = "unknown";
+            }
+        }
+        stats.computeIfAbsent(command, key -> new Stats()).add(done, System.nanoTime() - start);
+    }
+
+    private boolean execute(String[] fields) throws Exception {
+        switch (fields[0]) {
+            case "addUser":
+                expect(fields, 4);
+                return controller.addUser(new User(fields[1], fields[2], fields[3]));
+            case "editUser": {
+                expect(fields, 4);
+                Optional<User> user = controller.findByLogin(fields[1]);
+                return user.isPresent()
+                        && controller.updateUser(new User(user.get().getId(), fields[1], fields[2], fields[3]));
+            }
+            case "deleteUser":
+                expect(fields, 2);
+                return controller.findByLogin(fields[1]).isPresent()
+                        && controller.deleteUser(controller.findByLogin(fields[1]).get());
+            case "addHotel":
+                expect(fields, 4);
+                return controller.addHotel(new Hotel(fields[1], fields[2], fields[3]));
+            case "editHotel": {
+                expect(fields, 4);
+                Hotel hotel = hotel(fields[1]);
+                return controller.changeHotelData(new Hotel(hotel.getId(), fields[1], fields[2], fields[3]));
+            }
+            case "deleteHotel":
+                expect(fields, 2);
+                return controller.deleteHotel(hotel(fields[1]));
+            case "addRoom":
+                expect(fields, 5);
+                return controller.addRoomToHotel(hotel(fields[1]), new Room(Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Double.parseDouble(fields[4])));
+            case "editRoom": {
+                expect(fields, 5);
+                Hotel hotel = hotel(fields[1]);
+                Room room = room(hotel, fields[2]);
+                return controller.changeRoomData(new Room(room.getId(), room.getRoomNumber(),
+                        Integer.parseInt(fields[3]), Double.parseDouble(fields[4])), hotel);
+            }
+            case "deleteRoom": {
+                expect(fields, 3);
+                Hotel hotel = hotel(fields[1]);
+                return controller.deleteRoomFromHotel(room(hotel, fields[2]), hotel);
+            }
+            case "book": {
+                expect(fields, 6);
+                Hotel hotel = hotel(fields[2]);
+                return controller.existsByLogin(fields[1])
+                        && controller.bookRoomByUser(hotel, room(hotel, fields[3]), bookingInfo(fields)) != 0;
+            }
+            case "cancel":
+                if (fields.length == 2) {
+                    return controller.bookingCancalation(Long.parseLong(fields[1]));
+                }
+                expect(fields, 6);
+                Hotel hotel = hotel(fields[2]);
+                return controller.bookingCancalation(hotel, room(hotel, fields[3]), bookingInfo(fields));
+            default:
+                throw new IllegalArgumentException("Unknown command");
+        }
+    }
+
+    private static void expect(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("Expected " + (count - 1) + " fields");
+        }
+    }
+
+    private Hotel hotel(String cityRegister) {
+        Hotel hotel = controller.getHotelByCityRegister(cityRegister);
+        if (hotel == null) {
+            throw new IllegalArgumentException("Hotel " + cityRegister + " not found");
+        }
+        return hotel;
+    }
+
+    private Room room(Hotel hotel, String roomNumber) {
+        int number = Integer.parseInt(roomNumber);
+        for (Room room : controller.getRooms(hotel)) {
+            if (room.getRoomNumber() == number) {
+                return room;
+            }
+        }
+        throw new IllegalArgumentException("Room " + roomNumber + " not found in hotel " + hotel.getCityRegister());
+    }
+
+    /**
+     * Бронь из полей login;cityRegister;room;from;to команд book и cancel.
+     */
+    private static BookingInfo bookingInfo(String[] fields) throws Exception {
+        return new BookingInfo(fields[1], parseDate(fields[4]), parseDate(fields[5]));
+    }
+
+    private static Date parseDate(String date) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy");
+        format.setLenient(false);
+        return format.parse(date);
+    }
+
+    private void printSummary(int lines, long totalNanos, long flushNanos) {
+        int done = 0;
+        int rejected = 0;
+        System.out.println();
+        System.out.printf("%-12s %8s %8s %12s%n", "command", "done", "rejected", "avg, mcs");
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats commandStats = entry.getValue();
+            done += commandStats.done;
+            rejected += commandStats.rejected;
+            System.out.printf("%-12s %8d %8d %12.1f%n", entry.getKey(), commandStats.done, commandStats.rejected,
+                    commandStats.nanos / 1e3 / (commandStats.done + commandStats.rejected));
+        }
+        if (errors > MAX_REPORTED_ERRORS) {
+            System.out.println("WARNING: " + (errors - MAX_REPORTED_ERRORS) + " more lines with errors not shown");
+        }
+        int commands = done + rejected;
+        System.out.printf("%d lines, %d commands: %d done, %d rejected (%d with errors)%n",
+                lines, commands, done, rejected, errors);
+        System.out.printf("Total %.1f ms (%.0f commands/s), final write %.1f ms%n",
+                totalNanos / 1e6, commands / (totalNanos / 1e9), flushNanos / 1e6);
+    }
+
+    /**
+     * Счетчики команд одного вида.
+     */
+    private static final class Stats {
+        private int done;
+        private int rejected;
+        private long nanos;
+
+        private void add(boolean success, long elapsed) {
+            if (success) {
+                done++;
+            } else {
+                rejected++;
+            }
+            nanos += elapsed;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package viewer;
+
+/**
+ * Двоичный протокол BookingNioServer.
+ *
+ * Каждое сообщение - кадр: int длина остальной части кадра, int номер запроса, byte операция (в запросе)
+ * или статус (в ответе), затем данные операции. Числа передаются в порядке big-endian, строки - как
+ * short длина в байтах и байты UTF-8, даты - как int номер дня от 1970-01-01 (LocalDate.toEpochDay).
+ * Клиент может отправлять запросы, не дожидаясь ответов; ответ содержит номер запроса, и ответы на
+ * бронирование и отмену могут прийти позже ответов на запросы, отправленные после них.
+ *
+ * SEARCH:  string город (пустая строка - все города), int с, int по, byte мест, double макс. цена,
+ *          short сколько комнат вернуть (0 - только количество)
+ *          ответ: int количество свободных комнат, short n, n раз: string отель (cityRegister),
+ *          int номер комнаты, byte мест, double цена
+ * BOOK:    string логин, string отель (cityRegister), int номер комнаты, int с, int по
+ *          ответ: long номер брони; CONFLICT, если комната занята
+ * CANCEL:  long номер брони
+ *          ответ: без данных; NOT_FOUND, если брони нет
+ * При статусе, отличном от OK, ответ содержит string с описанием ошибки.
+ */
+public final class BinaryProtocol {
+
+    public static final byte SEARCH = 1;
+    public static final byte BOOK = 2;
+    public static final byte CANCEL = 3;
+
+    public static final byte OK = 0;
+    public static final byte BAD_REQUEST = 1;
+    public static final byte NOT_FOUND = 2;
+    public static final byte CONFLICT = 3;
+    public static final byte SERVER_ERROR = 4;
+
+    /**
+     * Наибольшая длина кадра без поля длины; соединение с более длинным кадром закрывается.
+     */
+    public static final int MAX_FRAME = 64 * 1024;
+
+    /**
+     * Размер заголовка кадра: длина, номер запроса и операция (статус).
+     */
+    public static final int HEADER = 9;
+
+    private BinaryProtocol() {
+    }
+}
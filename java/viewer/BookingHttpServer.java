@@ -0,0 +1,543 @@
+package viewer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import controller.Controller;
+import domain.AvailableRoom;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+import domain.User;
+import domain.UserBooking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP API системы бронирования (JSON) на com.sun.net.httpserver.HttpServer.
+ * Все запросы выполняются через один Controller, то есть с одной базой данных в памяти процесса;
+ * обработчики запросов работают в пуле потоков, размер которого задается свойством 'booking.http.threads'
+ * (по умолчанию 256), поэтому запросы, которые ждут записи в файл, не задерживают остальные.
+ *
+ * Даты передаются в формате ISO (2027-04-01), тела запросов и ответов - объекты JSON,
+ * параметры поиска - в строке запроса. Ошибки возвращаются как {"error": "..."} с кодом 400, 404 или 409.
+ *
+ * Поиск:
+ * GET    /hotels[?name=|prefix=|fuzzy=|city=&limit=]    список отелей или поиск отелей
+ * GET    /hotels/{cityRegister}                         отель с комнатами
+ * GET    /rooms/free?from=&to=[&city=&persons=&maxPrice=] свободные комнаты
+ * Бронирование:
+ * POST   /bookings {login, cityRegister, roomNumber, from, to}  бронь, ответ {bookingId}
+ * DELETE /bookings/{bookingId}                          отмена брони по номеру
+ * Пользователи:
+ * POST   /users {login, name, lastName}; GET, PUT {name, lastName}, DELETE /users/{login}
+ * GET    /users/{login}/bookings                        брони пользователя
+ * Администрирование:
+ * POST   /admin/hotels {cityRegister, name, city}; PUT {name, city}, DELETE /admin/hotels/{cityRegister}
+ * POST   /admin/hotels/{cityRegister}/rooms {roomNumber, persons, price}
+ * PUT {persons, price}, DELETE /admin/hotels/{cityRegister}/rooms/{roomNumber}
+ */
+public class BookingHttpServer {
+
+    public static final String THREADS_PROPERTY = "booking.http.threads";
+    private static final int DEFAULT_THREADS = 256;
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final Controller controller;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * @param controller контроллер, через который выполняются запросы
+     * @param address    адрес и порт сервера
+     * @throws IOException если не удалось открыть порт
+     */
+    public BookingHttpServer(Controller controller, InetSocketAddress address) throws IOException {
+        this.controller = controller;
+        this.server = HttpServer.create(address, BACKLOG);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS), task -> {
+            Thread thread = new Thread(task, "http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Останавливает сервер: новые соединения не принимаются, начатые запросы дорабатывают до секунды.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        Object body;
+        try {
+            String[] path = split(exchange.getRequestURI().getRawPath());
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Response response = route(exchange.getRequestMethod(), path, query, readBody(exchange));
+            status = response.status;
+            body = response.body;
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = error(String.valueOf(e));
+        }
+
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Response route(String method, String[] path, Map<String, String> query, Map<String, Object> body)
+            throws Exception {
+        String resource = path.length > 0 ? path[0] : "";
+        switch (resource) {
+            case "hotels":
+                if (method.equals("GET") && path.length == 1) {
+                    return ok(hotelsJson(searchHotels(query), false));
+                }
+                if (method.equals("GET") && path.length == 2) {
+                    return ok(hotelJson(hotel(path[1]), true));
+                }
+                break;
+            case "rooms":
+                if (method.equals("GET") && path.length == 2 && path[1].equals("free")) {
+                    return ok(freeRooms(query));
+                }
+                break;
+            case "bookings":
+                if (method.equals("POST") && path.length == 1) {
+                    return book(body);
+                }
+                if (method.equals("DELETE") && path.length == 2) {
+                    if (!controller.bookingCancalation(number(path[1], "bookingId"))) {
+                        throw new ApiException(404, "Booking " + path[1] + " not found");
+                    }
+                    return ok(result(true));
+                }
+                break;
+            case "users":
+                return users(method, path, body);
+            case "admin":
+                if (path.length > 1 && path[1].equals("hotels")) {
+                    return admin(method, path, body);
+                }
+                break;
+            default:
+        }
+        throw new ApiException(404, "Unknown request " + method + " /" + String.join("/", path));
+    }
+
+    private List<Hotel> searchHotels(Map<String, String> query) {
+        int limit = query.containsKey("limit") ? (int) number(query.get("limit"), "limit") : DEFAULT_LIMIT;
+        if (query.containsKey("name")) {
+            return controller.searchHotelByName(query.get("name"));
+        }
+        if (query.containsKey("prefix")) {
+            return controller.searchHotelByNamePrefix(query.get("prefix"), limit);
+        }
+        if (query.containsKey("fuzzy")) {
+            return controller.searchHotelByNameFuzzy(query.get("fuzzy"), limit);
+        }
+        if (query.containsKey("city")) {
+            return controller.searchHotelByCity(query.get("city"));
+        }
+        return controller.getHotels();
+    }
+
+    private List<Object> freeRooms(Map<String, String> query) {
+        Date from = date(required(query, "from"), "from");
+        Date to = date(required(query, "to"), "to");
+        int persons = query.containsKey("persons") ? (int) number(query.get("persons"), "persons") : 1;
+        double maxPrice = query.containsKey("maxPrice") ? decimal(query.get("maxPrice"), "maxPrice") : Double.MAX_VALUE;
+
+        List<Object> result = new ArrayList<>();
+        for (AvailableRoom availableRoom : controller.searchFreeRooms(query.get("city"), from, to, persons, maxPrice)) {
+            Map<String, Object> json = roomJson(availableRoom.getRoom());
+            json.put("cityRegister", availableRoom.getHotel().getCityRegister());
+            json.put("hotel", availableRoom.getHotel().getName());
+            json.put("city", availableRoom.getHotel().getCity());
+            result.add(json);
+        }
+        return result;
+    }
+
+    private Response book(Map<String, Object> body) throws Exception {
+        String login = string(body, "login");
+        if (!controller.existsByLogin(login)) {
+            throw new ApiException(404, "User " + login + " is not registered");
+        }
+        Hotel hotel = hotel(string(body, "cityRegister"));
+        Room room = room(hotel, (int) number(body, "roomNumber"));
+        BookingInfo bookingInfo;
+        try {
+            bookingInfo = new BookingInfo(login, date(string(body, "from"), "from"), date(string(body, "to"), "to"));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+
+        long bookingId = controller.bookRoomByUser(hotel, room, bookingInfo);
+        if (bookingId == 0) {
+            throw new ApiException(409, "Room is busy on this dates");
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("bookingId", bookingId);
+        return new Response(201, json);
+    }
+
+    private Response users(String method, String[] path, Map<String, Object> body) throws IOException {
+        if (method.equals("POST") && path.length == 1) {
+            User user = new User(string(body, "login"), string(body, "name"), string(body, "lastName"));
+            if (!controller.addUser(user)) {
+                throw new ApiException(409, "User " + user.getUserLogin() + " already exists");
+            }
+            return new Response(201, userJson(user));
+        }
+        if (path.length == 3 && method.equals("GET") && path[2].equals("bookings")) {
+            List<Object> result = new ArrayList<>();
+            for (UserBooking userBooking : controller.getUserBookings(path[1])) {
+                Map<String, Object> json = bookingJson(userBooking.getBookingInfo());
+                json.put("cityRegister", userBooking.getHotel().getCityRegister());
+                json.put("hotel", userBooking.getHotel().getName());
+                json.put("roomNumber", userBooking.getRoom().getRoomNumber());
+                result.add(json);
+            }
+            return ok(result);
+        }
+        if (path.length != 2) {
+            throw new ApiException(404, "Unknown request " + method + " /" + String.join("/", path));
+        }
+
+        String login = path[1];
+        switch (method) {
+            case "GET":
+                return ok(userJson(user(login)));
+            case "PUT":
+                User user = new User(user(login).getId(), login, string(body, "name"), string(body, "lastName"));
+                if (!controller.updateUser(user)) {
+                    throw new ApiException(404, "User " + login + " is not registered");
+                }
+                return ok(userJson(user));
+            case "DELETE":
+                if (!controller.deleteUser(user(login))) {
+                    throw new ApiException(404, "User " + login + " is not registered");
+                }
+                return ok(result(true));
+            default:
+                throw new ApiException(404, "Unknown request " + method + " /" + String.join("/", path));
+        }
+    }
+
+    /**
+     * Запросы /admin/hotels/... - изменение отелей и комнат.
+     */
+    private Response admin(String method, String[] path, Map<String, Object> body) throws IOException {
+        if (path.length == 2 && method.equals("POST")) {
+            String cityRegister = string(body, "cityRegister");
+            if (controller.getHotelByCityRegister(cityRegister) != null) {
+                throw new ApiException(409, "Hotel " + cityRegister + " already exists");
+            }
+            Hotel hotel = new Hotel(cityRegister, string(body, "name"), string(body, "city"));
+            if (!controller.addHotel(hotel)) {
+                throw new ApiException(409, "Hotel " + cityRegister + " already exists");
+            }
+            return new Response(201, hotelJson(hotel, true));
+        }
+        if (path.length == 3) {
+            Hotel hotel = hotel(path[2]);
+            switch (method) {
+                case "PUT":
+                    Hotel changed = new Hotel(hotel.getId(), hotel.getCityRegister(), string(body, "name"),
+                            string(body, "city"));
+                    if (!controller.changeHotelData(changed)) {
+                        throw new ApiException(404, "Hotel " + path[2] + " not found");
+                    }
+                    return ok(hotelJson(hotel(path[2]), false));
+                case "DELETE":
+                    return ok(result(controller.deleteHotel(hotel)));
+                default:
+            }
+        }
+        if (path.length == 4 && path[3].equals("rooms") && method.equals("POST")) {
+            Hotel hotel = hotel(path[2]);
+            Room room = new Room((int) number(body, "roomNumber"), (int) number(body, "persons"), decimal(body, "price"));
+            if (!controller.addRoomToHotel(hotel, room)) {
+                throw new ApiException(409, "Room " + room.getRoomNumber() + " already exists");
+            }
+            return new Response(201, roomJson(room));
+        }
+        if (path.length == 5 && path[3].equals("rooms")) {
+            Hotel hotel = hotel(path[2]);
+            Room room = room(hotel, (int) number(path[4], "roomNumber"));
+            switch (method) {
+                case "PUT":
+                    Room changed = new Room(room.getId(), room.getRoomNumber(), (int) number(body, "persons"),
+                            decimal(body, "price"));
+                    if (!controller.changeRoomData(changed, hotel)) {
+                        throw new ApiException(404, "Room " + path[4] + " not found in hotel " + path[2]);
+                    }
+                    return ok(roomJson(changed));
+                case "DELETE":
+                    return ok(result(controller.deleteRoomFromHotel(room, hotel)));
+                default:
+            }
+        }
+        throw new ApiException(404, "Unknown request " + method + " /" + String.join("/", path));
+    }
+
+    private Hotel hotel(String cityRegister) {
+        Hotel hotel = controller.getHotelByCityRegister(cityRegister);
+        if (hotel == null) {
+            throw new ApiException(404, "Hotel " + cityRegister + " not found");
+        }
+        return hotel;
+    }
+
+    private Room room(Hotel hotel, int roomNumber) {
+        for (Room room : controller.getRooms(hotel)) {
+            if (room.getRoomNumber() == roomNumber) {
+                return room;
+            }
+        }
+        throw new ApiException(404, "Room " + roomNumber + " not found in hotel " + hotel.getCityRegister());
+    }
+
+    private User user(String login) {
+        Optional<User> user = controller.findByLogin(login);
+        if (!user.isPresent()) {
+            throw new ApiException(404, "User " + login + " is not registered");
+        }
+        return user.get();
+    }
+
+    private List<Object> hotelsJson(List<Hotel> hotels, boolean withRooms) {
+        List<Object> result = new ArrayList<>(hotels.size());
+        for (Hotel hotel : hotels) {
+            result.add(hotelJson(hotel, withRooms));
+        }
+        return result;
+    }
+
+    private Map<String, Object> hotelJson(Hotel hotel, boolean withRooms) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        List<Room> rooms = controller.getRooms(hotel);
+        json.put("cityRegister", hotel.getCityRegister());
+        json.put("name", hotel.getName());
+        json.put("city", hotel.getCity());
+        json.put("rooms", rooms.size());
+        if (withRooms) {
+            List<Object> roomList = new ArrayList<>(rooms.size());
+            for (Room room : rooms) {
+                roomList.add(roomJson(room));
+            }
+            json.put("roomList", roomList);
+        }
+        return json;
+    }
+
+    private static Map<String, Object> roomJson(Room room) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("roomNumber", room.getRoomNumber());
+        json.put("persons", room.getPersons());
+        json.put("price", room.getPrice());
+        return json;
+    }
+
+    private static Map<String, Object> bookingJson(BookingInfo bookingInfo) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("bookingId", bookingInfo.getId());
+        json.put("login", bookingInfo.getUserLogin());
+        json.put("from", toLocalDate(bookingInfo.getFromDate()).toString());
+        json.put("to", toLocalDate(bookingInfo.getToDate()).toString());
+        return json;
+    }
+
+    private static Map<String, Object> userJson(User user) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("login", user.getUserLogin());
+        json.put("name", user.getUserName());
+        json.put("lastName", user.getUserLastName());
+        return json;
+    }
+
+    private static Map<String, Object> result(boolean result) {
+        return Collections.singletonMap("result", result);
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Collections.singletonMap("error", message);
+    }
+
+    private static Response ok(Object body) {
+        return new Response(200, body);
+    }
+
+    private static String[] split(String rawPath) throws UnsupportedEncodingException {
+        List<String> segments = new ArrayList<>();
+        for (String segment : rawPath.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, "UTF-8"));
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            query.put(key, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return query;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        String text = new String(bytes.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Object body = Json.parse(text);
+        if (!(body instanceof Map)) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        return (Map<String, Object>) body;
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Parameter '" + name + "' is required");
+        }
+        return value;
+    }
+
+    private static String string(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Field '" + name + "' is required");
+        }
+        return value.toString();
+    }
+
+    private static long number(Map<String, Object> body, String name) {
+        return number(string(body, name), name);
+    }
+
+    private static long number(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong number in '" + name + "': " + value);
+        }
+    }
+
+    private static double decimal(Map<String, Object> body, String name) {
+        return decimal(string(body, name), name);
+    }
+
+    private static double decimal(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong number in '" + name + "': " + value);
+        }
+    }
+
+    private static Date date(String value, String name) {
+        try {
+            return Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Wrong date in '" + name + "': " + value);
+        }
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static final class Response {
+        private final int status;
+        private final Object body;
+
+        private Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Ошибка запроса с HTTP кодом ответа.
+     */
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package viewer;
+
+import controller.Controller;
+import domain.AvailableRoom;
+import domain.BookingInfo;
+import domain.Hotel;
+import domain.Room;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static viewer.BinaryProtocol.*;
+
+/**
+ * Неблокирующий сервер двоичного протокола BinaryProtocol перед Controller.
+ *
+ * Соединения распределяются по циклам обработки, каждый со своим Selector и потоком
+ * (количество задается свойством 'booking.nio.threads', по умолчанию - по количеству ядер).
+ * Поиск свободных комнат работает со снимком списка отелей без блокировок, поэтому выполняется прямо
+ * в цикле: запрос читается из буфера чтения соединения, ответ пишется в его буфер записи, оба буфера
+ * переиспользуются, а строки ответа (cityRegister) кодируются один раз. Бронирование и отмена ждут
+ * блокировок и записи в файлы, поэтому выполняются в пуле потоков ('booking.nio.workers', по умолчанию 16),
+ * и готовый ответ передается обратно в цикл соединения.
+ *
+ * Пока у соединения больше 1 Мб неотправленных ответов, запросы из него не читаются.
+ */
+public class BookingNioServer {
+
+    public static final String THREADS_PROPERTY = "booking.nio.threads";
+    public static final String WORKERS_PROPERTY = "booking.nio.workers";
+    private static final int DEFAULT_WORKERS = 16;
+    private static final int BACKLOG = 1024;
+    private static final int OUT_BUFFER = 64 * 1024;
+    private static final int HIGH_WATER = 1024 * 1024;
+    private static final int DATE_CACHE = 1024;
+
+    private final Controller controller;
+    private final ServerSocketChannel serverChannel;
+    private final InetSocketAddress address;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+    private final Thread acceptor;
+    private final ConcurrentHashMap<String, byte[]> encoded = new ConcurrentHashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile boolean running;
+
+    /**
+     * @param controller контроллер, через который выполняются запросы
+     * @param address    адрес и порт сервера
+     * @throws IOException если не удалось открыть порт
+     */
+    public BookingNioServer(Controller controller, InetSocketAddress address) throws IOException {
+        this.controller = controller;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, BACKLOG);
+        this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+
+        int threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        this.loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS), task -> {
+            Thread thread = new Thread(task, "nio-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::accept, "nio-acceptor");
+    }
+
+    public void start() {
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        acceptor.start();
+    }
+
+    /**
+     * Останавливает сервер: закрывает порт и все соединения, начатые бронирования дорабатывают до секунды.
+     */
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        workers.shutdown();
+        try {
+            acceptor.join();
+            for (EventLoop loop : loops) {
+                loop.thread.join();
+            }
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next++ % loops.length].register(channel);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Ответ на бронирование, выполняется в пуле потоков.
+     */
+    private byte[] book(int requestId, String login, String cityRegister, int roomNumber, int fromDay, int toDay) {
+        try {
+            if (!controller.existsByLogin(login)) {
+                return error(requestId, NOT_FOUND, "User " + login + " is not registered");
+            }
+            Hotel hotel = controller.getHotelByCityRegister(cityRegister);
+            if (hotel == null) {
+                return error(requestId, NOT_FOUND, "Hotel " + cityRegister + " not found");
+            }
+            Room room = null;
+            for (Room hotelRoom : controller.getRooms(hotel)) {
+                if (hotelRoom.getRoomNumber() == roomNumber) {
+                    room = hotelRoom;
+                }
+            }
+            if (room == null) {
+                return error(requestId, NOT_FOUND, "Room " + roomNumber + " not found in hotel " + cityRegister);
+            }
+
+            BookingInfo bookingInfo;
+            try {
+                bookingInfo = new BookingInfo(login, toDate(fromDay), toDate(toDay));
+            } catch (Exception e) {
+                return error(requestId, BAD_REQUEST, e.getMessage());
+            }
+            long bookingId = controller.bookRoomByUser(hotel, room, bookingInfo);
+            if (bookingId == 0) {
+                return error(requestId, CONFLICT, "Room is busy on this dates");
+            }
+            ByteBuffer frame = frame(requestId, OK, 8);
+            frame.putLong(bookingId);
+            return frame.array();
+        } catch (IOException | RuntimeException e) {
+            return error(requestId, SERVER_ERROR, String.valueOf(e));
+        }
+    }
+
+    /**
+     * Ответ на отмену брони, выполняется в пуле потоков.
+     */
+    private byte[] cancel(int requestId, long bookingId) {
+        try {
+            if (!controller.bookingCancalation(bookingId)) {
+                return error(requestId, NOT_FOUND, "Booking " + bookingId + " not found");
+            }
+            return frame(requestId, OK, 0).array();
+        } catch (IOException | RuntimeException e) {
+            return error(requestId, SERVER_ERROR, String.valueOf(e));
+        }
+    }
+
+    private Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant());
+    }
+
+    private byte[] encode(String value) {
+        byte[] bytes = encoded.get(value);
+        if (bytes == null) {
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+            encoded.putIfAbsent(value, bytes);
+        }
+        return bytes;
+    }
+
+    private static ByteBuffer frame(int requestId, byte status, int bodyLength) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER + bodyLength);
+        frame.putInt(HEADER - 4 + bodyLength).putInt(requestId).put(status);
+        return frame;
+    }
+
+    private static byte[] error(int requestId, byte status, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, Short.MAX_VALUE);
+        ByteBuffer frame = frame(requestId, status, 2 + length);
+        frame.putShort((short) length).put(bytes, 0, length);
+        return frame.array();
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Цикл обработки соединений: один Selector и один поток.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        /**
+         * Даты поиска по номеру дня. Используются только в этом потоке и только для поиска,
+         * который даты не меняет и не сохраняет.
+         */
+        private final int[] cachedDays = new int[DATE_CACHE];
+        private final Date[] cachedDates = new Date[DATE_CACHE];
+
+        private EventLoop(int number) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-loop-" + number);
+        }
+
+        private void register(SocketChannel channel) {
+            tasks.add(() -> {
+                try {
+                    Connection connection = new Connection(channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            });
+            selector.wakeup();
+        }
+
+        /**
+         * Передает в цикл готовый ответ из пула потоков.
+         */
+        private void post(Connection connection, byte[] frame) {
+            tasks.add(() -> {
+                if (connection.key.isValid()) {
+                    connection.ensure(frame.length).put(frame);
+                    try {
+                        flush(connection);
+                    } catch (IOException e) {
+                        close(connection);
+                    }
+                }
+            });
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    for (Runnable task; (task = tasks.poll()) != null; ) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush(connection);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            close(connection);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        /**
+         * Читает из соединения и обрабатывает все полностью полученные кадры.
+         */
+        private void read(Connection connection) throws IOException {
+            ByteBuffer in = connection.in;
+            if (connection.channel.read(in) < 0) {
+                close(connection);
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < HEADER - 4 || length > MAX_FRAME) {
+                    throw new IOException("Wrong frame length " + length);
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                int end = in.position() + 4 + length;
+                int limit = in.limit();
+                in.position(in.position() + 4);
+                in.limit(end);
+                int requestId = in.getInt();
+                byte operation = in.get();
+                handle(connection, requestId, operation);
+                in.limit(limit);
+                in.position(end);
+            }
+            in.compact();
+            flush(connection);
+        }
+
+        private void handle(Connection connection, int requestId, byte operation) {
+            int start = connection.out.position();
+            try {
+                switch (operation) {
+                    case SEARCH:
+                        search(connection, requestId);
+                        break;
+                    case BOOK:
+                        ByteBuffer in = connection.in;
+                        String login = readString(in);
+                        String cityRegister = readString(in);
+                        int roomNumber = in.getInt();
+                        int fromDay = in.getInt();
+                        int toDay = in.getInt();
+                        workers.execute(() -> post(connection,
+                                book(requestId, login, cityRegister, roomNumber, fromDay, toDay)));
+                        break;
+                    case CANCEL:
+                        long bookingId = connection.in.getLong();
+                        workers.execute(() -> post(connection, cancel(requestId, bookingId)));
+                        break;
+                    default:
+                        reply(connection, error(requestId, BAD_REQUEST, "Unknown operation " + operation));
+                }
+            } catch (BufferUnderflowException e) {
+                connection.out.position(start);
+                reply(connection, error(requestId, BAD_REQUEST, "Truncated request"));
+            } catch (RuntimeException e) {
+                connection.out.position(start);
+                reply(connection, error(requestId, SERVER_ERROR, String.valueOf(e)));
+            }
+        }
+
+        /**
+         * Поиск свободных комнат: ответ пишется прямо в буфер записи соединения.
+         */
+        private void search(Connection connection, int requestId) {
+            ByteBuffer in = connection.in;
+            String city = connection.readCity();
+            int fromDay = in.getInt();
+            int toDay = in.getInt();
+            int persons = in.get();
+            double maxPrice = in.getDouble();
+            int limit = in.getShort();
+            if (fromDay >= toDay) {
+                reply(connection, error(requestId, BAD_REQUEST, "Wrong dates"));
+                return;
+            }
+
+            List<AvailableRoom> rooms = controller.searchFreeRooms(city, date(fromDay), date(toDay), persons, maxPrice);
+            int count = Math.min(Math.max(limit, 0), rooms.size());
+            ByteBuffer out = connection.ensure(HEADER + 6);
+            int start = out.position();
+            out.putInt(0).putInt(requestId).put(OK).putInt(rooms.size()).putShort((short) count);
+            for (int i = 0; i < count; i++) {
+                AvailableRoom availableRoom = rooms.get(i);
+                Room room = availableRoom.getRoom();
+                byte[] cityRegister = encode(availableRoom.getHotel().getCityRegister());
+                out = connection.ensure(2 + cityRegister.length + 13);
+                out.putShort((short) cityRegister.length).put(cityRegister)
+                        .putInt(room.getRoomNumber()).put((byte) room.getPersons()).putDouble(room.getPrice());
+            }
+            out.putInt(start, out.position() - start - 4);
+        }
+
+        private Date date(int epochDay) {
+            int slot = epochDay & (DATE_CACHE - 1);
+            Date date = cachedDates[slot];
+            if (date == null || cachedDays[slot] != epochDay) {
+                date = toDate(epochDay);
+                cachedDates[slot] = date;
+                cachedDays[slot] = epochDay;
+            }
+            return date;
+        }
+
+        private void reply(Connection connection, byte[] frame) {
+            connection.ensure(frame.length).put(frame);
+        }
+
+        /**
+         * Отправляет накопленные ответы; то, что не ушло, отправится, когда соединение будет готово к записи.
+         */
+        private void flush(Connection connection) throws IOException {
+            ByteBuffer out = connection.out;
+            if (out.position() > 0) {
+                out.flip();
+                connection.channel.write(out);
+                out.compact();
+            }
+            int interest = out.position() > HIGH_WATER ? 0 : SelectionKey.OP_READ;
+            if (out.position() > 0) {
+                interest |= SelectionKey.OP_WRITE;
+            }
+            if (connection.key.interestOps() != interest) {
+                connection.key.interestOps(interest);
+            }
+        }
+
+        private void close(Connection connection) {
+            connection.key.cancel();
+            closeQuietly(connection.channel);
+        }
+    }
+
+    /**
+     * Состояние соединения; используется только в потоке его цикла.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(4 + MAX_FRAME);
+        private ByteBuffer out = ByteBuffer.allocate(OUT_BUFFER);
+        private SelectionKey key;
+        /**
+         * Последний город поиска: повторный поиск в том же городе не создает новую строку.
+         */
+        private final byte[] cityBytes = new byte[256];
+        private int cityLength = -1;
+        private String city;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Буфер записи, в котором есть место для bytes байт.
+         */
+        private ByteBuffer ensure(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            return out;
+        }
+
+        private String readCity() {
+            int length = in.getShort() & 0xFFFF;
+            if (length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            if (length == 0) {
+                return null;
+            }
+            if (length != cityLength || !sameCity(length)) {
+                String value = new String(in.array(), in.arrayOffset() + in.position(), length,
+                        StandardCharsets.UTF_8);
+                cityLength = length <= cityBytes.length ? length : -1;
+                if (cityLength > 0) {
+                    in.get(cityBytes, 0, length);
+                } else {
+                    in.position(in.position() + length);
+                }
+                city = value;
+                return value;
+            }
+            in.position(in.position() + length);
+            return city;
+        }
+
+        private boolean sameCity(int length) {
+            int offset = in.arrayOffset() + in.position();
+            byte[] array = in.array();
+            for (int i = 0; i < length; i++) {
+                if (array[offset + i] != cityBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // соединение уже закрыто
+        }
+    }
+}
@@ -1,32 +1,53 @@
 package viewer;
 
 import controller.Controller;
+import domain.AvailableRoom;
 import domain.BookingInfo;
 import domain.Hotel;
 import domain.Room;
 import domain.User;
+import domain.UserBooking;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Класс-меню для работы с программой для системы бронирования отелей через консоль.
+ * Все ответы читаются через один BufferedReader, поэтому ответы можно передать и через
+ * перенаправленный ввод: меню завершается, когда ввод закончился.
  *
  */
 public class Menu {
+    private static final int SIMILAR_HOTELS = 5;
+
     private Controller controller;
+    private final BufferedReader reader;
 
     public Menu(Controller controller) {
+        this(controller, new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    public Menu(Controller controller, BufferedReader reader) {
         this.controller = controller;
+        this.reader = reader;
     }
 
     public void run(){
-        generalMenu();
+        try {
+            generalMenu();
+        } catch (EndOfInputException e) {
+            System.out.println("INFO: End of input");
+        }
     }
 
 
@@ -77,6 +98,7 @@ public class Menu {
             System.out.println("1 Add User");
             System.out.println("2 Edit User");
             System.out.println("3 Delete User");
+            System.out.println("4 User bookings");
             System.out.println("0 Exit");
 
             String choise = readData();
@@ -94,6 +116,10 @@ public class Menu {
                     deleteUser();
                     break;
 
+                case "4":
+                    printUserBookings();
+                    break;
+
                 case "0":
                     return;
 
@@ -121,9 +147,9 @@ public class Menu {
             return;
         }
 
-        User user = new User(userLogin, "", "");
         try {
-            if (controller.deleteUser(user)) {
+            Optional<User> user = controller.findByLogin(userLogin);
+            if (user.isPresent() && controller.deleteUser(user.get())) {
                 System.out.println("INFO: User is deleted");
             } else {
                 System.out.println("INFO: User " + userLogin + " is not registered");
@@ -204,6 +230,32 @@ public class Menu {
 
     }
 
+    private void printUserBookings() {
+        System.out.print("Enter user login :");
+        String userLogin = readData();
+
+        if (!controller.existsByLogin(userLogin)) {
+            System.out.println("WARNING: The User is not registered");
+            return;
+        }
+
+        List<UserBooking> bookingList = controller.getUserBookings(userLogin);
+        if (bookingList.size() == 0) {
+            System.out.println("INFO: The User has no bookings");
+            return;
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy");
+        for (UserBooking booking : bookingList) {
+            System.out.print("Booking number-" + booking.getBookingInfo().getId() + " ");
+            System.out.print(" Hotel-" + booking.getHotel().getName() + " ");
+            System.out.print(" City-" + booking.getHotel().getCity() + " ");
+            System.out.print(" Room number-" + booking.getRoom().getRoomNumber() + " ");
+            System.out.print(" from-" + format.format(booking.getBookingInfo().getFromDate()) + " ");
+            System.out.println(" to-" + format.format(booking.getBookingInfo().getToDate()));
+        }
+    }
+
     private void printAllUsers () {
         controller.getUsers().forEach(user -> {
             System.out.println("User login: " + user.getUserLogin()
@@ -338,6 +390,8 @@ public class Menu {
                     try {
                         Room room = roomList.get(Integer.parseInt(choice) - 1);
                         editRoomMenu (hotel, room);
+                    } catch (EndOfInputException e) {
+                        throw e;
                     } catch (Exception e) {
                         e.printStackTrace();
                         System.out.println("INFO: Wrong choice");
@@ -513,6 +567,8 @@ public class Menu {
             System.out.println();
             System.out.println("1 Search hotel by name");
             System.out.println("2 Search hotel by city");
+            System.out.println("3 Search free rooms");
+            System.out.println("4 Cancel booking by number");
             System.out.println("0 Exit");
 
             String choise = readData();
@@ -526,6 +582,14 @@ public class Menu {
                     searchHotelByCity();
                     break;
 
+                case "3":
+                    searchFreeRooms();
+                    break;
+
+                case "4":
+                    cancelBookingByNumber();
+                    break;
+
                 case "0":
                     return;
 
@@ -583,8 +647,12 @@ public class Menu {
         List<Hotel> hotelList = controller.searchHotelByName(hotelName);
 
         if (hotelList.size() == 0) {
-            System.out.println("INFO: No hotels founded");
-            return;
+            hotelList = controller.searchHotelByNameFuzzy(hotelName, SIMILAR_HOTELS);
+            if (hotelList.size() == 0) {
+                System.out.println("INFO: No hotels founded");
+                return;
+            }
+            System.out.println("INFO: No exact matches, hotels with similar names:");
         }
 
         chooseHotelMenu(hotelList);
@@ -595,6 +663,81 @@ public class Menu {
         }
     }
 
+    private void cancelBookingByNumber() {
+        System.out.print("Enter booking number :");
+        try {
+            if (controller.bookingCancalation(Long.parseLong(readData()))) {
+                System.out.println("INFO: Booking is canceled");
+            } else {
+                System.out.println("INFO: This order is not founded");
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("WARNING: Wrong number format");
+        } catch (IOException e) {
+            System.out.println("ERROR: Data Base IO problem");
+        }
+    }
+
+    private void searchFreeRooms() {
+        System.out.println();
+        System.out.println("INFO: Enter exit for exit");
+
+        System.out.print("Enter city name (empty for all cities): ");
+        String cityName = readData();
+        if (cityName.equalsIgnoreCase("exit")) return;
+
+        List<AvailableRoom> roomList;
+        try {
+            System.out.print("Enter date of begin (DD.MM.YYYY):");
+            Date dateFrom = new SimpleDateFormat("dd.MM.yyyy").parse(readData());
+            System.out.print("Enter date of end (DD.MM.YYYY):");
+            Date dateTo = new SimpleDateFormat("dd.MM.yyyy").parse(readData());
+            System.out.print("Enter persons amount: ");
+            int persons = Integer.parseInt(readData());
+            System.out.print("Enter max price: ");
+            double maxPrice = Double.parseDouble(readData());
+
+            roomList = controller.searchFreeRooms(cityName, dateFrom, dateTo, persons, maxPrice);
+        } catch (ParseException e) {
+            System.out.println("WARNING: Wrong date format");
+            return;
+        } catch (NumberFormatException e) {
+            System.out.println("WARNING: Wrong number format");
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println("WARNING: Begin date cannot be after finish date");
+            return;
+        }
+
+        if (roomList.size() == 0) {
+            System.out.println("INFO: No free rooms founded");
+            return;
+        }
+
+        while (true) {
+            for (int i = 0; i < roomList.size(); i++) {
+                AvailableRoom found = roomList.get(i);
+                System.out.print((i+1) + " Hotel-" + found.getHotel().getName() + " ");
+                System.out.print(" City-" + found.getHotel().getCity() + " ");
+                System.out.print(" Room number-" + found.getRoom().getRoomNumber() + " ");
+                System.out.print(" persons-" + found.getRoom().getPersons() + " ");
+                System.out.println(" price-" + found.getRoom().getPrice());
+            }
+            System.out.println("0 Exit");
+            String choise = readData();
+            if ("0".equalsIgnoreCase(choise)) return;
+
+            try {
+                AvailableRoom found = roomList.get(Integer.parseInt(choise) - 1);
+                orderRoomMenu(found.getHotel(), found.getRoom());
+            } catch (EndOfInputException e) {
+                throw e;
+            } catch (Exception e) {
+                System.out.println("INFO: Wrong choice");
+            }
+        }
+    }
+
     private void chooseHotelMenu(List<Hotel> hotelList) {
         while (true) {
             for (int i = 0; i < hotelList.size(); i++) {
@@ -611,6 +754,8 @@ public class Menu {
             try {
                 Hotel hotel = hotelList.get(Integer.parseInt(choise) - 1);
                 chooseRoomMenu(hotel);
+            } catch (EndOfInputException e) {
+                throw e;
             } catch (Exception e) {
                 e.printStackTrace();
                 System.out.println("INFO: Wrong choice");
@@ -636,6 +781,8 @@ public class Menu {
             try {
                 Room room = roomList.get(Integer.parseInt(choise) - 1);
                 orderRoomMenu(hotel, room);
+            } catch (EndOfInputException e) {
+                throw e;
             } catch (Exception e) {
                 System.out.println("INFO: Wrong choice");
             }
@@ -658,7 +805,7 @@ public class Menu {
                     System.out.print("Enter user login :");
                     String userLogin = readData();
 
-                    if (!controller.containsUser(new User(userLogin, "", ""))) {
+                    if (!controller.existsByLogin(userLogin)) {
                         System.out.println("WARNING: The User is not registered");
                         break;
                     }
@@ -681,10 +828,12 @@ public class Menu {
                         System.out.println("WARNING: Wrong date format");
                     }
                     try {
-                        if (controller.bookRoomByUser(hotel, room, new BookingInfo(userLogin, dateFrom, dateTo))) {
-                            System.out.println("INFO: Room is booked");
+                        long bookingId = controller.bookRoomByUser(hotel, room, new BookingInfo(userLogin, dateFrom, dateTo));
+                        if (bookingId != 0) {
+                            System.out.println("INFO: Room is booked, booking number " + bookingId);
                         } else {
                             System.out.println("INFO: Room is busy on this dates");
+                            printNearestFreeDates(room, dateFrom, dateTo);
                         }
                     } catch (Exception e) {
                         System.out.println("WARNING: Begin date cannot be after finish date");
@@ -695,7 +844,7 @@ public class Menu {
                     System.out.print("Enter user login :");
                     userLogin = readData();
 
-                    if (!controller.containsUser(new User(userLogin, "", ""))) {
+                    if (!controller.existsByLogin(userLogin)) {
                         System.out.println("WARNING: The User is not registered");
                         break;
                     }
@@ -740,15 +889,38 @@ public class Menu {
         }
     }
 
+    /**
+     * Подсказывает ближайшие даты, на которые комната свободна столько же ночей, сколько было запрошено.
+     */
+    private void printNearestFreeDates(Room room, Date dateFrom, Date dateTo) {
+        long nights = ChronoUnit.DAYS.between(toLocalDate(dateFrom), toLocalDate(dateTo));
+        LocalDate from = toLocalDate(room.firstFreeWindow(dateFrom, (int) nights));
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+        System.out.println("INFO: Nearest free dates: " + from.format(format) + " - " + from.plusDays(nights).format(format));
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
     private String readData(){
         String answer = null;
         try {
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in));
-            answer = bufferedReader.readLine();
+            answer = reader.readLine();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
+        if (answer == null) {
+            throw new EndOfInputException();
+        }
         return answer;
     }
+
+    /**
+     * Ввод закончился: выход из всех меню.
+     */
+    private static final class EndOfInputException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
 }